@@ -0,0 +1,71 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * a gateway burst of adds over a few instruments followed by a burst of
+ * deletes of the same orders, as two batches against the same calls made one
+ * at a time
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+  private static final int INSTRUMENTS = 4;
+
+  @Param({ "16", "256" })
+  int batchSize;
+
+  private OrderBookManagerImpl orderBookManager;
+  private OrderCommand[] adds;
+  private OrderCommand[] deletes;
+  private BatchResults results;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    orderBookManager = new OrderBookManagerImpl();
+    adds = new OrderCommand[batchSize];
+    deletes = new OrderCommand[batchSize];
+    for (int i = 0; i < batchSize; i++) {
+      Order order = new Order.Builder().build("order" + i, "instrument" + i % INSTRUMENTS, Side.BUY, 100 + i % 10, 5);
+      adds[i] = new OrderCommand().add(order);
+      deletes[i] = new OrderCommand().delete(order.getOrderId());
+    }
+    results = new BatchResults(batchSize);
+  }
+
+  @Benchmark
+  public int batched() {
+    orderBookManager.applyBatch(adds, batchSize, results);
+    orderBookManager.applyBatch(deletes, batchSize, results);
+    return results.size() / (2 * batchSize);
+  }
+
+  @Benchmark
+  public int oneByOne() {
+    for (OrderCommand add : adds) {
+      orderBookManager.addOrder(add.order);
+    }
+    for (OrderCommand delete : deletes) {
+      orderBookManager.deleteOrder(delete.orderId);
+    }
+    return 1;
+  }
+}
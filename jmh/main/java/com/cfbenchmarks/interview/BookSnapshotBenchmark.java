@@ -0,0 +1,113 @@
+package com.cfbenchmarks.interview;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * the writer's cost of publishing snapshots, and what readers walking the
+ * full depth do to it. write is a modify alone, contended is the same modify
+ * with three readers walking every order, through the snapshot when there
+ * are snapshots and level by level under the book's read lock when not
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class BookSnapshotBenchmark {
+
+  private static final long BASE_PRICE = 10000;
+  private static final int LEVELS = 20;
+  private static final int ORDERS = 1000;
+
+  @Param({ "false", "true" })
+  boolean snapshots;
+
+  private OrderBookManagerImpl orderBookManager;
+  private Order[] orders;
+  private int[] picks;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    orderBookManager = new OrderBookManagerImpl.Builder().setSnapshots(snapshots).build();
+    SplittableRandom random = new SplittableRandom(42);
+    orders = new Order[ORDERS];
+    for (int i = 0; i < ORDERS; i++) {
+      orders[i] = new Order.Builder().build("order" + i, "VOD.L", Side.BUY, BASE_PRICE - random.nextInt(LEVELS), 5);
+      orderBookManager.addOrder(orders[i]);
+    }
+    picks = new int[1 << 12];
+    for (int i = 0; i < picks.length; i++) {
+      picks[i] = random.nextInt(ORDERS);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Reader {
+    DepthBuffer depth = new DepthBuffer(LEVELS);
+    long quantity;
+    OrderVisitor visitor = this::visit;
+
+    boolean visit(Order order) {
+      quantity += order.getQuantity();
+      return true;
+    }
+  }
+
+  @Benchmark
+  @Group("write")
+  @GroupThreads(1)
+  public boolean write() {
+    return modify();
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(1)
+  public boolean writer() {
+    return modify();
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(3)
+  public long reader(Reader reader) {
+    reader.quantity = 0;
+    if (snapshots) {
+      orderBookManager.getSnapshot("VOD.L", Side.BUY).forEachOrder(reader.visitor);
+      return reader.quantity;
+    }
+    int levels = orderBookManager.getDepth("VOD.L", Side.BUY, LEVELS, reader.depth);
+    for (int level = 0; level < levels; level++) {
+      orderBookManager.forEachOrderAtLevel("VOD.L", Side.BUY, reader.depth.getPrice(level), reader.visitor);
+    }
+    return reader.quantity;
+  }
+
+  /*
+   * down keeps its place, up to the back, the book stays the same size
+   */
+  private boolean modify() {
+    int i = picks[next++ & (picks.length - 1)];
+    long quantity = orders[i].getQuantity() == 5 ? 4 : 5;
+    orders[i] = orders[i].withQuantity(quantity);
+    return orderBookManager.modifyOrder(orders[i].getOrderId(), quantity);
+  }
+}
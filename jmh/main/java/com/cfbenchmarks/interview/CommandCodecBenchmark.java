@@ -0,0 +1,92 @@
+package com.cfbenchmarks.interview;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * encoding and decoding an add with the flyweight codec against the obvious
+ * DataOutputStream / DataInputStream serialization. decodeFields reads only
+ * the fixed fields, what a router or risk check looking at price and
+ * quantity would need
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandCodecBenchmark {
+
+  private Order order;
+  private ByteBuffer buffer;
+  private CommandCodec encoder;
+  private CommandCodec decoder;
+  private byte[] naive;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    order = new Order.Builder().build("3f2c9e1a-order-000042", "VOD.L", Side.BUY, 20015, 500);
+    buffer = ByteBuffer.allocateDirect(256);
+    encoder = new CommandCodec();
+    decoder = new CommandCodec();
+    encoder.wrap(buffer, 0).encodeAdd(order);
+    naive = naiveEncode();
+  }
+
+  @Benchmark
+  public int encode() {
+    return encoder.wrap(buffer, 0).encodeAdd(order);
+  }
+
+  @Benchmark
+  public Order decode() {
+    return decoder.wrap(buffer, 0).toOrder();
+  }
+
+  @Benchmark
+  public long decodeFields() {
+    decoder.wrap(buffer, 0);
+    return decoder.price() * decoder.quantity();
+  }
+
+  @Benchmark
+  public byte[] naiveEncode() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(CommandCodec.ADD);
+    out.writeUTF(order.getOrderId());
+    out.writeUTF(order.getInstrument());
+    out.writeByte(order.getSide().ordinal());
+    out.writeLong(order.getPrice());
+    out.writeLong(order.getQuantity());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  @Benchmark
+  public Order naiveDecode() throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(naive));
+    in.readByte();
+    String orderId = in.readUTF();
+    String instrument = in.readUTF();
+    Side side = Side.values()[in.readByte()];
+    return new Order.Builder().build(orderId, instrument, side, in.readLong(), in.readLong());
+  }
+}
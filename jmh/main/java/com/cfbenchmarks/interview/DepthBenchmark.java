@@ -0,0 +1,69 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * a top of book depth snapshot for a market data publisher, one getDepth
+ * against a query per level and statistic as before. The per level variant
+ * is given the prices, which a real consumer had no way to find. Run with
+ * -prof gc, getDepth into a reused buffer allocates nothing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DepthBenchmark {
+
+  @Param({ "5", "20" })
+  int n;
+
+  private OrderBookManagerImpl orderBookManager;
+  private DepthBuffer depth;
+  private long[] prices;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    orderBookManager = new OrderBookManagerImpl();
+    prices = new long[n];
+    for (int i = 0; i < 100; i++) {
+      for (int j = 0; j < 3; j++) {
+        orderBookManager.addOrder(new Order.Builder().build("order" + i + "-" + j, "VOD.L", Side.SELL, 100 + i, 5));
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      prices[i] = 100 + i;
+    }
+    depth = new DepthBuffer(n);
+  }
+
+  @Benchmark
+  public int getDepth() {
+    return orderBookManager.getDepth("VOD.L", Side.SELL, n, depth);
+  }
+
+  @Benchmark
+  public long perLevel() {
+    long sum = 0;
+    for (long price : prices) {
+      sum += orderBookManager.getOrderNumAtLevel("VOD.L", Side.SELL, price);
+      sum += orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.SELL, price);
+      sum += orderBookManager.getTotalVolumeAtLevel("VOD.L", Side.SELL, price);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,107 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/*
+ * add / modify / delete throughput on one manager as threads and instruments
+ * grow, for the locked manager and the sharded single writer one. Each thread
+ * works on instrument (thread index % instruments) so with as many
+ * instruments as threads no two threads share a book
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentScalingBenchmark {
+
+  /** orders kept resting per thread, the oldest is deleted on every add **/
+  private static final int DEPTH = 64;
+  private static final int ORDERS = 1024;
+
+  @State(Scope.Benchmark)
+  public static class Manager {
+    @Param({ "1", "4", "16" })
+    int instruments;
+
+    /** locked books or one writer thread per shard, a shard per core **/
+    @Param({ "locked", "sharded" })
+    String manager;
+
+    OrderBookManager orderBookManager;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      orderBookManager = "locked".equals(manager) ? new OrderBookManagerImpl() : new ShardedOrderBookManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      if (orderBookManager instanceof ShardedOrderBookManager) {
+        ((ShardedOrderBookManager) orderBookManager).close();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Flow {
+    Order[] orders = new Order[ORDERS];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup(Manager manager, ThreadParams threadParams) {
+      int thread = threadParams.getThreadIndex();
+      String instrument = "instrument" + (thread % manager.instruments);
+      for (int i = 0; i < ORDERS; i++) {
+        orders[i] = new Order.Builder().build("t" + thread + "-" + i, instrument, Side.SELL, 100 + i % 10, 5);
+      }
+      for (int i = 0; i < DEPTH; i++) {
+        manager.orderBookManager.addOrder(orders[i]);
+      }
+      next = DEPTH;
+    }
+
+    void step(OrderBookManager orderBookManager) {
+      Order toAdd = orders[next % ORDERS];
+      Order toDelete = orders[(next - DEPTH) % ORDERS];
+      orderBookManager.addOrder(toAdd);
+      orderBookManager.modifyOrder(toAdd.getOrderId(), 4);
+      orderBookManager.deleteOrder(toDelete.getOrderId());
+      next++;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void threads1(Manager manager, Flow flow) {
+    flow.step(manager.orderBookManager);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void threads4(Manager manager, Flow flow) {
+    flow.step(manager.orderBookManager);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void threads16(Manager manager, Flow flow) {
+    flow.step(manager.orderBookManager);
+  }
+}
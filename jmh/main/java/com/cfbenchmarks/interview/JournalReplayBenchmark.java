@@ -0,0 +1,124 @@
+package com.cfbenchmarks.interview;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * recovery speed, reported in records replayed per second. The journal holds
+ * about a million records of add, modify and delete over a few instruments,
+ * the books never holding more than a few hundred orders. decode replays into
+ * a manager that does nothing so it is the cost of reading the journal alone
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalReplayBenchmark {
+
+  private static final int ROUNDS = 1 << 18;
+  private static final int RESTING = 256;
+  /** an add, a modify and a delete per round **/
+  private static final int RECORDS = 3 * ROUNDS;
+
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("journal");
+    try (Journal journal = new Journal.Builder(directory).open()) {
+      OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+      for (int i = 0; i < ROUNDS + RESTING; i++) {
+        if (i < ROUNDS) {
+          orderBookManager.addOrder(
+              new Order.Builder().build("order" + i, "instrument" + i % 4, Side.values()[i % 2], 100 + i % 10, 5));
+          orderBookManager.modifyOrder("order" + i, 1 + i % 3);
+        }
+        if (i >= RESTING) {
+          orderBookManager.deleteOrder("order" + (i - RESTING));
+        }
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public long replay() throws IOException {
+    return Journal.replay(directory, new OrderBookManagerImpl(true));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public long decode() throws IOException {
+    return Journal.replay(directory, NO_OP);
+  }
+
+  private static final OrderBookManager NO_OP = new OrderBookManager() {
+    @Override
+    public void addOrder(Order order) {
+    }
+
+    @Override
+    public boolean modifyOrder(String orderId, long newQuantity) {
+      return true;
+    }
+
+    @Override
+    public boolean deleteOrder(String orderId) {
+      return true;
+    }
+
+    @Override
+    public Optional<Long> getBestPrice(String instrument, Side side) {
+      return Optional.empty();
+    }
+
+    @Override
+    public long getOrderNumAtLevel(String instrument, Side side, long price) {
+      return 0;
+    }
+
+    @Override
+    public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+      return 0;
+    }
+
+    @Override
+    public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+      return 0;
+    }
+
+    @Override
+    public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+      return null;
+    }
+  };
+}
@@ -0,0 +1,68 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * prices near the touch flickering in and out. The book rests on every other
+ * tick and each add lands on an empty tick between them, so every add creates
+ * a level and its delete removes it again
+ *
+ * run with -prof gc, gc.alloc.rate.norm is the garbage per add and delete
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelChurnBenchmark {
+
+  private static final long BASE_PRICE = 100000;
+  private static final int LEVELS = 100;
+  private static final int FLICKERING = 64;
+
+  /** levels in a tick ladder rather than the skip list **/
+  @Param({ "false", "true" })
+  boolean ladder;
+
+  private OrderBookManagerImpl orderBookManager;
+  private Order[] flickering;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    orderBookManager = new OrderBookManagerImpl();
+    if (ladder) {
+      orderBookManager.useTickLadder("VOD.L", 1, 4 * LEVELS);
+    }
+    for (int level = 0; level < LEVELS; level++) {
+      orderBookManager.addOrder(new Order.Builder().build("resting" + level, "VOD.L", Side.BUY,
+          BASE_PRICE - 2 * level, 10));
+    }
+    flickering = new Order[FLICKERING];
+    for (int i = 0; i < FLICKERING; i++) {
+      flickering[i] = new Order.Builder().build("flicker" + i, "VOD.L", Side.BUY, BASE_PRICE - 2 * i - 1, 10);
+    }
+  }
+
+  @Benchmark
+  public boolean addDelete() {
+    Order order = flickering[next];
+    next = (next + 1) & (FLICKERING - 1);
+    orderBookManager.addOrder(order);
+    return orderBookManager.deleteOrder(order.getOrderId());
+  }
+}
@@ -0,0 +1,73 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * what publishing level changes costs the writer, an add / modify / delete
+ * cycle with and without a publisher. Each cycle publishes three changes to a
+ * listener that only counts them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelDeltaBenchmark {
+
+  private static final int ORDERS = 1024;
+
+  @Param({ "none", "deltas" })
+  String publish;
+
+  private LevelDeltaPublisher levelDeltas;
+  private OrderBookManager orderBookManager;
+  private Order[] orders;
+  private int next;
+  private long changes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    OrderBookManagerImpl.Builder builder = new OrderBookManagerImpl.Builder();
+    if ("deltas".equals(publish)) {
+      levelDeltas = new LevelDeltaPublisher();
+      levelDeltas.addListener((sequence, instrument, side, price, quantity, orderNum) -> changes++);
+      builder.setLevelDeltas(levelDeltas);
+    }
+    orderBookManager = builder.build();
+    orders = new Order[ORDERS];
+    for (int i = 0; i < ORDERS; i++) {
+      orders[i] = new Order.Builder().build("order" + i, "VOD.L", Side.BUY, 100 + i % 20, 5);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (levelDeltas != null) {
+      levelDeltas.close();
+    }
+  }
+
+  @Benchmark
+  public int cycle() {
+    Order order = orders[next++ & (ORDERS - 1)];
+    orderBookManager.addOrder(order);
+    orderBookManager.modifyOrder(order.getOrderId(), 4);
+    orderBookManager.deleteOrder(order.getOrderId());
+    return next;
+  }
+}
@@ -0,0 +1,96 @@
+package com.cfbenchmarks.interview;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * finding an existing level by price, for the get*AtLevel queries and for
+ * adds / deletes that neither create nor empty a level. Every level holds two
+ * orders so the churn only ever touches the second one. touchChurn empties
+ * and refills the best level, the case the tick ladder's bitset is for
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelLookupBenchmark {
+
+  @Param({ "10", "1000", "100000" })
+  int levels;
+
+  /** sparse levels or a tick ladder whose band covers the first 1024 levels **/
+  @Param({ "sparse", "ladder" })
+  String mode;
+
+  private ConcurrentMap<String, RestingOrder> ordersById;
+  private OrderBook book;
+  private Order[] orders;
+  private Order[] firsts;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ordersById = new ConcurrentHashMap<String, RestingOrder>();
+    book = "sparse".equals(mode) ? new OrderBook(Side.BUY, ordersById)
+        : new OrderBook(Side.BUY, ordersById, false, 5, 2048);
+    orders = new Order[levels];
+    firsts = new Order[levels];
+    for (int i = 0; i < levels; i++) {
+      firsts[i] = new Order.Builder().build("first" + i, "microscope", Side.BUY, 100 + i * 5, 5);
+      book.add(firsts[i]);
+      orders[i] = new Order.Builder().build("order" + i, "microscope", Side.BUY, 100 + i * 5, 5);
+      book.add(orders[i]);
+    }
+  }
+
+  @Benchmark
+  public long levelQuery() {
+    return book.getTotalQuantityAtLevel(nextOrder().getPrice());
+  }
+
+  @Benchmark
+  public boolean levelChurn() {
+    Order order = nextOrder();
+    book.delete(order.getOrderId(), ordersById.get(order.getOrderId()));
+    book.add(order);
+    return ordersById.isEmpty();
+  }
+
+  @Benchmark
+  public Optional<Long> touchChurn() {
+    Order first = firsts[levels - 1];
+    Order second = orders[levels - 1];
+    book.delete(first.getOrderId(), ordersById.get(first.getOrderId()));
+    book.delete(second.getOrderId(), ordersById.get(second.getOrderId()));
+    Optional<Long> behind = book.getBestPrice();
+    book.add(first);
+    book.add(second);
+    return behind;
+  }
+
+  /*
+   * stride through the levels nearest the touch so neighbouring calls don't
+   * share cache lines
+   */
+  private Order nextOrder() {
+    next = (next + 7919) % Math.min(levels, 1024);
+    return orders[levels - 1 - next];
+  }
+}
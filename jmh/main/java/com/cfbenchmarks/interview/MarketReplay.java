@@ -0,0 +1,238 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+
+/*
+ * drives a stream of adds, modifies and deletes through an OrderBookManager at
+ * a fixed rate and records how long each took in HdrHistograms, one per
+ * operation
+ *
+ * every message has an intended send time, start + i / rate. Latency is
+ * measured from that time rather than from when the call was actually made,
+ * so when the engine stalls the messages queued up behind the stall are
+ * charged for the wait, as a real client's would be, correcting for
+ * coordinated omission. The service time, from call to return, is recorded
+ * too, the gap between the two is time spent queued
+ *
+ * the messages are generated by MessageMix or read from a file, either a
+ * journal directory or a flat file of records, an int length then a
+ * CommandCodec message, as written by --save
+ *
+ *   --engine=impl|single|sequenced|sharded|offheap|<class> default impl
+ *   --rate=messages per second                             default 100000
+ *   --messages=how many to generate                        default 1000000
+ *   --warmup=messages sent first and not recorded          default 200000
+ *   --instruments=n --live=live orders per instrument      default 16, 256
+ *   --seed=n
+ *   --load=file or journal directory, instead of generating
+ *   --save=file, write the generated messages out and stop
+ */
+public class MarketReplay {
+
+  private static final long HIGHEST_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  private final OrderBookManager manager;
+  private final long intervalNanos;
+  private final Map<OrderCommand.Type, Histogram> latencies = new EnumMap<OrderCommand.Type, Histogram>(
+      OrderCommand.Type.class);
+  private final Map<OrderCommand.Type, Histogram> serviceTimes = new EnumMap<OrderCommand.Type, Histogram>(
+      OrderCommand.Type.class);
+  private long rejected;
+
+  MarketReplay(OrderBookManager manager, long ratePerSecond) {
+    checkArgument(ratePerSecond > 0, "rate must be positive");
+    this.manager = manager;
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+    for (OrderCommand.Type type : new OrderCommand.Type[] { OrderCommand.Type.ADD, OrderCommand.Type.MODIFY,
+        OrderCommand.Type.DELETE }) {
+      latencies.put(type, new Histogram(HIGHEST_NANOS, 3));
+      serviceTimes.put(type, new Histogram(HIGHEST_NANOS, 3));
+    }
+  }
+
+  /**
+   * send the messages at the fixed rate, recording from the warmup'th on
+   */
+  void run(OrderCommand[] messages, int warmup) {
+    long start = System.nanoTime();
+    for (int i = 0; i < messages.length; i++) {
+      long intended = start + i * intervalNanos;
+      long now;
+      while ((now = System.nanoTime()) < intended) {
+        Thread.onSpinWait();
+      }
+      OrderCommand message = messages[i];
+      try {
+        message.applyTo(manager);
+      } catch (RuntimeException e) {
+        // e.g. a loaded stream that doesn't start from an empty book
+        rejected++;
+      }
+      long end = System.nanoTime();
+      if (i >= warmup) {
+        latencies.get(message.type).recordValue(Math.min(end - intended, HIGHEST_NANOS));
+        serviceTimes.get(message.type).recordValue(Math.min(end - now, HIGHEST_NANOS));
+      }
+    }
+  }
+
+  void report(PrintStream out) {
+    out.printf("%-8s %-8s %10s %10s %10s %10s %10s%n", "op", "", "count", "p50 us", "p99 us", "p99.9 us", "max us");
+    for (OrderCommand.Type type : latencies.keySet()) {
+      print(out, type, "latency", latencies.get(type));
+      print(out, type, "service", serviceTimes.get(type));
+    }
+    Histogram all = new Histogram(HIGHEST_NANOS, 3);
+    latencies.values().forEach(all::add);
+    print(out, null, "latency", all);
+    if (rejected > 0) {
+      out.println(rejected + " messages were rejected by the engine");
+    }
+  }
+
+  private static void print(PrintStream out, OrderCommand.Type type, String kind, Histogram histogram) {
+    out.printf("%-8s %-8s %10d %10.1f %10.1f %10.1f %10.1f%n", type == null ? "ALL" : type.name(), kind,
+        histogram.getTotalCount(), micros(histogram.getValueAtPercentile(50)),
+        micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+        micros(histogram.getMaxValue()));
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<String, String>();
+    for (String arg : args) {
+      checkArgument(arg.startsWith("--") && arg.contains("="), "expected --option=value, not " + arg);
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+
+    OrderCommand[] messages;
+    if (options.containsKey("load")) {
+      messages = load(Paths.get(options.get("load")));
+    } else {
+      messages = generate(Integer.parseInt(options.getOrDefault("messages", "1000000")),
+          Integer.parseInt(options.getOrDefault("instruments", "16")),
+          Integer.parseInt(options.getOrDefault("live", "256")), Long.parseLong(options.getOrDefault("seed", "42")));
+    }
+    if (options.containsKey("save")) {
+      save(messages, Paths.get(options.get("save")));
+      return;
+    }
+
+    String engine = options.getOrDefault("engine", "impl");
+    OrderBookManager manager = engine(engine);
+    long rate = Long.parseLong(options.getOrDefault("rate", "100000"));
+    int warmup = Math.min(Integer.parseInt(options.getOrDefault("warmup", "200000")), messages.length);
+    MarketReplay replay = new MarketReplay(manager, rate);
+    replay.run(messages, warmup);
+    if (manager instanceof AutoCloseable) {
+      ((AutoCloseable) manager).close();
+    }
+
+    System.out.printf("%s, %d messages at %d/s after %d warmup%n", engine, messages.length - warmup, rate, warmup);
+    replay.report(System.out);
+  }
+
+  static OrderBookManager engine(String engine) throws ReflectiveOperationException {
+    switch (engine) {
+    case "impl":
+      return new OrderBookManagerImpl();
+    case "single":
+      // we are the only thread calling it
+      return new OrderBookManagerImpl(true);
+    case "sequenced":
+      return new SequencedOrderBookManager();
+    case "sharded":
+      return new ShardedOrderBookManager();
+    case "offheap":
+      return new OffHeapOrderBookManager();
+    default:
+      return (OrderBookManager) Class.forName(engine).getDeclaredConstructor().newInstance();
+    }
+  }
+
+  static OrderCommand[] generate(int count, int instruments, int live, long seed) {
+    MessageMix mix = new MessageMix(instruments, live, seed);
+    OrderCommand[] messages = new OrderCommand[count];
+    for (int i = 0; i < count; i++) {
+      messages[i] = mix.next(new OrderCommand());
+    }
+    return messages;
+  }
+
+  /*
+   * a flat file of records, or every segment of a journal directory
+   */
+  static OrderCommand[] load(Path path) throws IOException {
+    List<OrderCommand> messages = new ArrayList<OrderCommand>();
+    CommandCodec codec = new CommandCodec();
+    if (Files.isDirectory(path)) {
+      List<Path> segments;
+      try (Stream<Path> files = Files.list(path)) {
+        segments = files.filter(file -> file.toString().endsWith(".journal")).sorted().collect(Collectors.toList());
+      }
+      for (Path segment : segments) {
+        // skip the segment's first sequence number
+        read(segment, 8, codec, messages);
+      }
+    } else {
+      read(path, 0, codec, messages);
+    }
+    return messages.toArray(new OrderCommand[0]);
+  }
+
+  private static void read(Path file, int position, CommandCodec codec, List<OrderCommand> messages)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      int length;
+      while (position + 4 <= buffer.limit() && (length = buffer.getInt(position)) != 0) {
+        messages.add(codec.wrap(buffer, position + 4).decodeInto(new OrderCommand()));
+        position += 4 + length;
+      }
+    }
+  }
+
+  static void save(OrderCommand[] messages, Path file) throws IOException {
+    CommandCodec codec = new CommandCodec();
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (OrderCommand message : messages) {
+        if (buffer.remaining() < 4 + CommandCodec.HEADER_LENGTH + 2 * CommandCodec.MAX_STRING_LENGTH) {
+          buffer.flip();
+          channel.write(buffer);
+          buffer.clear();
+        }
+        int position = buffer.position();
+        int length = codec.wrap(buffer, position + 4).encode(message);
+        buffer.putInt(position, length);
+        buffer.position(position + 4 + length);
+      }
+      buffer.flip();
+      channel.write(buffer);
+    }
+  }
+}
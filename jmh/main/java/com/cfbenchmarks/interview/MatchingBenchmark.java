@@ -0,0 +1,74 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * an aggressive buy sweeping every level of the sell side, which is then
+ * refilled. refill does the same delete and re-add of the sell orders without
+ * any matching, the difference is the cost of matching. Run with -prof gc,
+ * the fills themselves allocate nothing so both allocate the same per op
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchingBenchmark {
+
+  @Param({ "1", "10", "100" })
+  int levels;
+
+  @Param({ "1", "4" })
+  int ordersPerLevel;
+
+  private OrderBookManager orderBookManager;
+  private Order[] sells;
+  private Order sweep;
+  private long filled;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    orderBookManager = new OrderBookManagerImpl(
+        (instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> filled += quantity);
+    sells = new Order[levels * ordersPerLevel];
+    for (int i = 0; i < sells.length; i++) {
+      sells[i] = new Order.Builder().build("sell" + i, "VOD.L", Side.SELL, 100 + i / ordersPerLevel, 10);
+      orderBookManager.addOrder(sells[i]);
+    }
+    sweep = new Order.Builder().build("sweep", "VOD.L", Side.BUY, 100 + levels, 10L * sells.length);
+  }
+
+  @Benchmark
+  public long sweep() {
+    orderBookManager.addOrder(sweep);
+    for (Order sell : sells) {
+      orderBookManager.addOrder(sell);
+    }
+    return filled;
+  }
+
+  @Benchmark
+  public long refill() {
+    for (Order sell : sells) {
+      orderBookManager.deleteOrder(sell.getOrderId());
+    }
+    for (Order sell : sells) {
+      orderBookManager.addOrder(sell);
+    }
+    return filled;
+  }
+}
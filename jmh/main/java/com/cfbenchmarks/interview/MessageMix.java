@@ -0,0 +1,125 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.SplittableRandom;
+
+/*
+ * generates order flow shaped like a real feed rather than a micro-benchmark
+ *
+ *   prices cluster at the touch, the distance behind it in ticks is geometric
+ *     so each tick further back is less likely than the last
+ *   most orders are cancelled, a few hundred live orders per instrument at
+ *     most and adds and deletes roughly balance
+ *   modifies come in bursts, a modify is usually followed by more modifies of
+ *     the same order, as an algo re-sizes its quote
+ *   each instrument's touch wanders a tick at a time
+ *
+ * the same seed always gives the same messages
+ */
+class MessageMix {
+
+  /** chance a message is a modify, when not already in a burst **/
+  private static final double MODIFY_SHARE = 0.1;
+  /** chance a burst of modifies carries on to the next message **/
+  private static final double BURST_CONTINUES = 0.8;
+  /** chance each tick further from the touch, geometric **/
+  private static final double DEEPER = 0.35;
+  /** chance a touch moves a tick after each add **/
+  private static final double TOUCH_MOVES = 0.02;
+  private static final long TICK = 5;
+
+  private final SplittableRandom random;
+  private final String[] instruments;
+  private final long[] touches;
+  private final int maxLive;
+  /** ids and quantities of the live orders, unordered **/
+  private final String[] live;
+  private final long[] liveQuantities;
+  private int liveCount;
+  private long nextOrderId;
+  /** the order being modified in a burst, -1 if none **/
+  private int burst = -1;
+
+  /**
+   * @param instruments             how many instruments
+   * @param liveOrdersPerInstrument about how many live orders each has at most
+   * @param seed                    the same seed gives the same messages
+   */
+  MessageMix(int instruments, int liveOrdersPerInstrument, long seed) {
+    checkArgument(instruments > 0, "instruments must be positive");
+    checkArgument(liveOrdersPerInstrument > 0, "liveOrdersPerInstrument must be positive");
+    this.random = new SplittableRandom(seed);
+    this.instruments = new String[instruments];
+    this.touches = new long[instruments];
+    for (int i = 0; i < instruments; i++) {
+      this.instruments[i] = "instrument" + i;
+      this.touches[i] = 10000 * TICK;
+    }
+    this.maxLive = instruments * liveOrdersPerInstrument;
+    this.live = new String[maxLive];
+    this.liveQuantities = new long[maxLive];
+  }
+
+  /**
+   * fill in the next message
+   *
+   * @return the command
+   */
+  OrderCommand next(OrderCommand command) {
+    if (burst >= 0 && random.nextDouble() < BURST_CONTINUES) {
+      return modify(command, burst);
+    }
+    burst = -1;
+    if (liveCount > 0 && random.nextDouble() < MODIFY_SHARE) {
+      burst = random.nextInt(liveCount);
+      return modify(command, burst);
+    }
+    // fill up to half the live orders then add and delete in equal measure,
+    // deleting whenever we are at the most
+    double fill = (double) liveCount / maxLive;
+    if (liveCount == maxLive || (fill > 0.5 && random.nextBoolean())) {
+      return delete(command, random.nextInt(liveCount));
+    }
+    return add(command);
+  }
+
+  private OrderCommand add(OrderCommand command) {
+    int instrument = random.nextInt(instruments.length);
+    if (random.nextDouble() < TOUCH_MOVES) {
+      touches[instrument] += random.nextBoolean() ? TICK : -TICK;
+    }
+    int ticksBack = 0;
+    while (random.nextDouble() < DEEPER) {
+      ticksBack++;
+    }
+    Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+    long price = side == Side.BUY ? touches[instrument] - ticksBack * TICK
+        : touches[instrument] + TICK + ticksBack * TICK;
+    long quantity = 1 + random.nextInt(100);
+
+    String orderId = Long.toString(nextOrderId++);
+    live[liveCount] = orderId;
+    liveQuantities[liveCount] = quantity;
+    liveCount++;
+    return command.add(new Order.Builder().build(orderId, instruments[instrument], side, price, quantity));
+  }
+
+  private OrderCommand modify(OrderCommand command, int index) {
+    long quantity = liveQuantities[index];
+    // mostly smaller, keeping the order's place, sometimes larger
+    quantity = quantity > 1 && random.nextDouble() < 0.7 ? quantity - 1 - random.nextLong(quantity - 1)
+        : quantity + 1 + random.nextInt(50);
+    liveQuantities[index] = quantity;
+    return command.modify(live[index], quantity);
+  }
+
+  private OrderCommand delete(OrderCommand command, int index) {
+    String orderId = live[index];
+    liveCount--;
+    live[index] = live[liveCount];
+    liveQuantities[index] = liveQuantities[liveCount];
+    live[liveCount] = null;
+    return command.delete(orderId);
+  }
+}
@@ -0,0 +1,68 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * quantity changes on resting orders, run with -prof gc and check
+ * gc.alloc.rate.norm, the book modify should allocate nothing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModifyBenchmark {
+
+  private static final int ORDERS = 64;
+
+  private ConcurrentMap<String, RestingOrder> ordersById = new ConcurrentHashMap<String, RestingOrder>();
+  private OrderBook book = new OrderBook(Side.SELL, ordersById);
+  private OrderBookManager orderBookManager = new OrderBookManagerImpl();
+  private RestingOrder[] resting = new RestingOrder[ORDERS];
+  private String[] orderIds = new String[ORDERS];
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    for (int i = 0; i < ORDERS; i++) {
+      Order order = new Order.Builder().build("order" + i, "microscope", Side.SELL, 100 + i % 4, 5);
+      book.add(order);
+      orderBookManager.addOrder(order);
+      resting[i] = ordersById.get(order.getOrderId());
+      orderIds[i] = order.getOrderId();
+    }
+  }
+
+  /*
+   * reduce in place then move to the back
+   */
+  @Benchmark
+  public int bookModify() {
+    int i = next++ & (ORDERS - 1);
+    RestingOrder order = resting[i];
+    book.modify(orderIds[i], order, 4);
+    return book.modify(orderIds[i], order, 5);
+  }
+
+  @Benchmark
+  public boolean managerModify() {
+    String orderId = orderIds[next++ & (ORDERS - 1)];
+    orderBookManager.modifyOrder(orderId, 4);
+    return orderBookManager.modifyOrder(orderId, 5);
+  }
+}
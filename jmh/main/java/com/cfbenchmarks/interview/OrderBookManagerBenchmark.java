@@ -0,0 +1,195 @@
+package com.cfbenchmarks.interview;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * every OrderBookManager operation against one shared manager, the regression
+ * suite for the public API. Both sides of every instrument are filled with
+ * levels price levels of ordersPerLevel orders each, and every thread has its
+ * own resting orders spread over the levels to modify
+ *
+ * the book stays the same size throughout, so an add is measured together
+ * with the delete of the same order and modifies move a quantity by one,
+ * which up loses its place and down keeps it. Queries stride through the
+ * levels nearest the touch and round robin over the instruments
+ *
+ * run through main, or gradle :jmh:jmhThreads, for each thread count
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OrderBookManagerBenchmark {
+
+  private static final long BASE_PRICE = 10000;
+  /** levels near the touch that the operations land on **/
+  private static final int HOT_LEVELS = 64;
+  /** orders per thread to modify **/
+  private static final int OWN_ORDERS = 256;
+
+  @State(Scope.Benchmark)
+  public static class Book {
+    /** depth of each side of each book **/
+    @Param({ "10", "1000" })
+    int levels;
+
+    /** orders queued at each level **/
+    @Param({ "1", "32" })
+    int ordersPerLevel;
+
+    @Param({ "1", "16" })
+    int instruments;
+
+    /** -p sampleEvery=0,1,16 for the cost of Metrics, 0 for none **/
+    @Param({ "0" })
+    int sampleEvery;
+
+    OrderBookManagerImpl orderBookManager;
+    String[] instrumentNames;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      orderBookManager = sampleEvery == 0 ? new OrderBookManagerImpl()
+          : new OrderBookManagerImpl.Builder().setMetrics(new Metrics(sampleEvery)).build();
+      instrumentNames = new String[instruments];
+      for (int i = 0; i < instruments; i++) {
+        instrumentNames[i] = "instrument" + i;
+        for (int level = 0; level < levels; level++) {
+          for (int n = 0; n < ordersPerLevel; n++) {
+            orderBookManager.addOrder(new Order.Builder().build("buy" + i + "/" + level + "/" + n,
+                instrumentNames[i], Side.BUY, BASE_PRICE - level, 5));
+            orderBookManager.addOrder(new Order.Builder().build("sell" + i + "/" + level + "/" + n,
+                instrumentNames[i], Side.SELL, BASE_PRICE + 1 + level, 5));
+          }
+        }
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Caller {
+    Order[] adds;
+    String[] own;
+    long[] quantities;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup(Book book, ThreadParams threadParams) {
+      int hotLevels = Math.min(book.levels, HOT_LEVELS);
+      adds = new Order[OWN_ORDERS];
+      own = new String[OWN_ORDERS];
+      quantities = new long[OWN_ORDERS];
+      for (int i = 0; i < OWN_ORDERS; i++) {
+        String instrument = book.instrumentNames[i % book.instruments];
+        long price = BASE_PRICE - (i * 7) % hotLevels;
+        adds[i] = new Order.Builder().build("add" + threadParams.getThreadIndex() + "/" + i, instrument, Side.BUY,
+            price, 5);
+        own[i] = "own" + threadParams.getThreadIndex() + "/" + i;
+        // plenty of room to move down by one per call
+        quantities[i] = 1L << 40;
+        book.orderBookManager.addOrder(new Order.Builder().build(own[i], instrument, Side.BUY, price, quantities[i]));
+      }
+    }
+
+    int next() {
+      next = (next + 1) & (OWN_ORDERS - 1);
+      return next;
+    }
+  }
+
+  @Benchmark
+  public boolean addDelete(Book book, Caller caller) {
+    Order order = caller.adds[caller.next()];
+    book.orderBookManager.addOrder(order);
+    return book.orderBookManager.deleteOrder(order.getOrderId());
+  }
+
+  @Benchmark
+  public boolean modifyUp(Book book, Caller caller) {
+    int i = caller.next();
+    return book.orderBookManager.modifyOrder(caller.own[i], ++caller.quantities[i]);
+  }
+
+  @Benchmark
+  public boolean modifyDown(Book book, Caller caller) {
+    int i = caller.next();
+    return book.orderBookManager.modifyOrder(caller.own[i], --caller.quantities[i]);
+  }
+
+  @Benchmark
+  public Optional<Long> getBestPrice(Book book, Caller caller) {
+    int i = caller.next();
+    return book.orderBookManager.getBestPrice(caller.adds[i].getInstrument(), Side.BUY);
+  }
+
+  @Benchmark
+  public long getOrderNumAtLevel(Book book, Caller caller) {
+    Order at = caller.adds[caller.next()];
+    return book.orderBookManager.getOrderNumAtLevel(at.getInstrument(), Side.BUY, at.getPrice());
+  }
+
+  @Benchmark
+  public long getTotalQuantityAtLevel(Book book, Caller caller) {
+    Order at = caller.adds[caller.next()];
+    return book.orderBookManager.getTotalQuantityAtLevel(at.getInstrument(), Side.BUY, at.getPrice());
+  }
+
+  @Benchmark
+  public long getTotalVolumeAtLevel(Book book, Caller caller) {
+    Order at = caller.adds[caller.next()];
+    return book.orderBookManager.getTotalVolumeAtLevel(at.getInstrument(), Side.BUY, at.getPrice());
+  }
+
+  @Benchmark
+  public List<Order> getOrdersAtLevel(Book book, Caller caller) {
+    Order at = caller.adds[caller.next()];
+    return book.orderBookManager.getOrdersAtLevel(at.getInstrument(), Side.BUY, at.getPrice());
+  }
+
+  /**
+   * run this benchmark once per thread count, JMH only takes one per run
+   *
+   * @param args thread counts, comma separated, then a directory for the JSON
+   *             results, then any other JMH options
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    String[] threadCounts = args.length > 0 ? args[0].split(",") : new String[] { "1", "2", "4" };
+    File results = new File(args.length > 1 ? args[1] : ".");
+    String[] options = new String[Math.max(0, args.length - 2)];
+    System.arraycopy(args, args.length - options.length, options, 0, options.length);
+
+    for (String threadCount : threadCounts) {
+      int threads = Integer.parseInt(threadCount.trim());
+      new Runner(new OptionsBuilder().parent(new CommandLineOptions(options))
+          .include(OrderBookManagerBenchmark.class.getSimpleName())
+          .threads(threads)
+          .resultFormat(ResultFormatType.JSON)
+          .result(new File(results, "orderbookmanager-" + threads + "-threads.json").getPath())
+          .build()).run();
+    }
+  }
+}
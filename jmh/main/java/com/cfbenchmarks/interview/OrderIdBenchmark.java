@@ -0,0 +1,107 @@
+package com.cfbenchmarks.interview;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * the modify and cancel path by UUID string id against by long id. The book
+ * holds resting orders spread over a few hundred levels, each op picks one at
+ * random so the id lookup misses the cache as it would in a big book
+ *
+ * a String id arrives as bytes and is decoded for every call, as from the
+ * wire, so its hash is never cached and equals compares every char. A long
+ * id arrives as a long
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class OrderIdBenchmark {
+
+  private static final long BASE_PRICE = 10000;
+  private static final int LEVELS = 500;
+  private static final int PICKS = 1 << 16;
+
+  @Param({ "uuid", "long" })
+  String ids;
+
+  @Param({ "10000", "1000000" })
+  int resting;
+
+  private OrderBookManagerImpl orderBookManager;
+  private Order[] orders;
+  private byte[][] wireIds;
+  private int[] picks;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    boolean longIds = ids.equals("long");
+    orderBookManager = new OrderBookManagerImpl.Builder().setLongOrderIds(longIds).build();
+    SplittableRandom random = new SplittableRandom(42);
+    orders = new Order[resting];
+    wireIds = new byte[resting][];
+    for (int i = 0; i < resting; i++) {
+      long price = BASE_PRICE - random.nextInt(LEVELS);
+      if (longIds) {
+        orders[i] = new Order.Builder().build(random.nextLong(), "VOD.L", Side.BUY, price, 5);
+      } else {
+        String orderId = new UUID(random.nextLong(), random.nextLong()).toString();
+        orders[i] = new Order.Builder().build(orderId, "VOD.L", Side.BUY, price, 5);
+        wireIds[i] = orderId.getBytes(StandardCharsets.ISO_8859_1);
+      }
+      orderBookManager.addOrder(orders[i]);
+    }
+    picks = new int[PICKS];
+    for (int i = 0; i < PICKS; i++) {
+      picks[i] = random.nextInt(resting);
+    }
+  }
+
+  /*
+   * down keeps its place, up to the back, the book stays the same size
+   */
+  @Benchmark
+  public boolean modify() {
+    int i = picks[next++ & (PICKS - 1)];
+    long quantity = orders[i].getQuantity() == 5 ? 4 : 5;
+    orders[i] = orders[i].withQuantity(quantity);
+    if (wireIds[i] == null) {
+      return orderBookManager.modifyOrder(orders[i].getLongOrderId(), quantity);
+    }
+    return orderBookManager.modifyOrder(new String(wireIds[i], StandardCharsets.ISO_8859_1), quantity);
+  }
+
+  /*
+   * cancel one order and add it back
+   */
+  @Benchmark
+  public boolean cancel() {
+    int i = picks[next++ & (PICKS - 1)];
+    boolean deleted;
+    if (wireIds[i] == null) {
+      deleted = orderBookManager.deleteOrder(orders[i].getLongOrderId());
+    } else {
+      deleted = orderBookManager.deleteOrder(new String(wireIds[i], StandardCharsets.ISO_8859_1));
+    }
+    orderBookManager.addOrder(orders[i]);
+    return deleted;
+  }
+}
@@ -0,0 +1,89 @@
+package com.cfbenchmarks.interview;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * the first few orders of a deep level, e.g. the queue ahead of our own order,
+ * as a copied list, through a visitor that stops early and into a reused
+ * cursor. Run with -prof gc, the visitor and the cursor allocate nothing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrdersAtLevelBenchmark {
+
+  private static final long PRICE = 100;
+
+  @Param({ "1000" })
+  int ordersAtLevel;
+
+  /** orders the caller looks at **/
+  @Param({ "5" })
+  int n;
+
+  private OrderBookManagerImpl orderBookManager;
+  private OrderCursor cursor;
+  /** made once, a method reference to this would be a new object per call **/
+  private final OrderVisitor visitor = this::visit;
+  private long quantity;
+  private int seen;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    orderBookManager = new OrderBookManagerImpl();
+    for (int i = 0; i < ordersAtLevel; i++) {
+      orderBookManager.addOrder(new Order.Builder().build("order" + i, "VOD.L", Side.SELL, PRICE, 5));
+    }
+    cursor = new OrderCursor(n);
+  }
+
+  @Benchmark
+  public long list() {
+    List<Order> orders = orderBookManager.getOrdersAtLevel("VOD.L", Side.SELL, PRICE);
+    long sum = 0;
+    for (int i = 0; i < n; i++) {
+      sum += orders.get(i).getQuantity();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long visitor() {
+    quantity = 0;
+    seen = 0;
+    orderBookManager.forEachOrderAtLevel("VOD.L", Side.SELL, PRICE, visitor);
+    return quantity;
+  }
+
+  @Benchmark
+  public long cursor() {
+    orderBookManager.getOrdersAtLevel("VOD.L", Side.SELL, PRICE, n, cursor);
+    long sum = 0;
+    while (cursor.next()) {
+      sum += cursor.getQuantity();
+    }
+    return sum;
+  }
+
+  private boolean visit(Order order) {
+    quantity += order.getQuantity();
+    return ++seen < n;
+  }
+}
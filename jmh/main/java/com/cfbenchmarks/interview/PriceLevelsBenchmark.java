@@ -0,0 +1,102 @@
+package com.cfbenchmarks.interview;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * cancel and re-add of an order away from the touch, the common case for our
+ * flow, against books of increasing depth. The rescan variant keeps the old
+ * HashMap + walk every key approach as a baseline
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceLevelsBenchmark {
+
+  @Param({ "10", "1000", "100000" })
+  int levels;
+
+  private ConcurrentMap<String, RestingOrder> ordersById;
+  private OrderBook book;
+  private RescanLevels rescan;
+  private Order[] orders;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ordersById = new ConcurrentHashMap<String, RestingOrder>();
+    book = new OrderBook(Side.SELL, ordersById);
+    rescan = new RescanLevels();
+    orders = new Order[levels];
+    for (int i = 0; i < levels; i++) {
+      orders[i] = new Order.Builder().build("order" + i, "microscope", Side.SELL, 100 + i, 5);
+      book.add(orders[i]);
+      rescan.add(orders[i].getPrice());
+    }
+  }
+
+  @Benchmark
+  public Optional<Long> cancelAndReAdd() {
+    Order order = nextOrder();
+    book.delete(order.getOrderId(), ordersById.get(order.getOrderId()));
+    book.add(order);
+    return book.getBestPrice();
+  }
+
+  @Benchmark
+  public long cancelAndReAddRescan() {
+    Order order = nextOrder();
+    rescan.remove(order.getPrice());
+    rescan.add(order.getPrice());
+    return rescan.minPrice;
+  }
+
+  /*
+   * cycle through every level but the best one
+   */
+  private Order nextOrder() {
+    next = next + 1 < levels ? next + 1 : 1;
+    return orders[next];
+  }
+
+  /*
+   * the previous sell side level bookkeeping, reset and rescan on every remove
+   */
+  static class RescanLevels {
+    private Map<Long, Long> countByLevel = new HashMap<Long, Long>();
+    long minPrice = Long.MAX_VALUE;
+
+    void add(long price) {
+      countByLevel.merge(price, 1L, Long::sum);
+      minPrice = Math.min(minPrice, price);
+    }
+
+    void remove(long price) {
+      if (countByLevel.merge(price, -1L, Long::sum) == 0) {
+        countByLevel.remove(price);
+      }
+      minPrice = Long.MAX_VALUE;
+      countByLevel.keySet().forEach(key -> minPrice = Math.min(minPrice, key));
+    }
+  }
+}
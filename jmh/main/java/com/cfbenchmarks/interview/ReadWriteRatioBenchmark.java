@@ -0,0 +1,106 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/*
+ * threads sharing one book, each op is one write (a modify that flips the
+ * quantity of one of the thread's own orders) followed by readsPerWrite
+ * market data queries. The monitor variant wraps every call in the book's
+ * monitor, as books were locked before they read optimistically
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ReadWriteRatioBenchmark {
+
+  private static final int LEVELS = 100;
+
+  @State(Scope.Benchmark)
+  public static class Book {
+    @Param({ "1", "10", "100" })
+    int readsPerWrite;
+
+    @Param({ "stamped", "monitor" })
+    String locking;
+
+    ConcurrentMap<String, RestingOrder> ordersById = new ConcurrentHashMap<String, RestingOrder>();
+    OrderBook book = new OrderBook(Side.BUY, ordersById);
+    boolean monitor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      monitor = "monitor".equals(locking);
+      for (int i = 0; i < LEVELS; i++) {
+        book.add(new Order.Builder().build("resting" + i, "microscope", Side.BUY, 100 + i, 5));
+      }
+    }
+
+    long read(int i) {
+      long priceLevel = 100 + i % LEVELS;
+      if (monitor) {
+        synchronized (this) {
+          return book.getBestPrice().get() + book.getTotalQuantityAtLevel(priceLevel);
+        }
+      }
+      return book.getBestPrice().get() + book.getTotalQuantityAtLevel(priceLevel);
+    }
+
+    void write(String orderId, RestingOrder resting, long quantity) {
+      if (monitor) {
+        synchronized (this) {
+          book.modify(orderId, resting, quantity);
+        }
+      } else {
+        book.modify(orderId, resting, quantity);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Writer {
+    String orderId;
+    RestingOrder resting;
+    long quantity = 5;
+    int reads;
+
+    @Setup(Level.Trial)
+    public void setup(Book book, ThreadParams threadParams) {
+      orderId = "writer" + threadParams.getThreadIndex();
+      book.book.add(new Order.Builder().build(orderId, "microscope", Side.BUY, 150, quantity));
+      resting = book.ordersById.get(orderId);
+    }
+  }
+
+  @Benchmark
+  public long readAndWrite(Book book, Writer writer) {
+    // flip between reducing in place and moving to the back
+    writer.quantity = writer.quantity == 5 ? 4 : 5;
+    book.write(writer.orderId, writer.resting, writer.quantity);
+
+    long sum = 0;
+    for (int i = 0; i < book.readsPerWrite; i++) {
+      sum += book.read(writer.reads++);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,106 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/*
+ * what it costs the heap and the collector to hold a large book. Fills an
+ * engine with resting orders with UUID ids, then reports the heap used after
+ * a full collection, what the engine holds off the heap, how long a full
+ * collection takes with the book live, and the collections while orders are
+ * added and deleted on top of it
+ *
+ *   --engine=impl|offheap   default impl
+ *   --orders=resting orders default 10000000
+ *   --churn=adds and deletes once full, default 2000000
+ *
+ * run each engine in its own JVM, gradle :jmh:footprint -PfootprintArgs=...
+ */
+public class RestingOrdersFootprint {
+
+  private static final int INSTRUMENTS = 64;
+  private static final int LEVELS = 500;
+  private static final int FULL_COLLECTIONS = 3;
+
+  public static void main(String[] args) {
+    Map<String, String> options = new HashMap<String, String>();
+    for (String arg : args) {
+      checkArgument(arg.startsWith("--") && arg.contains("="), "expected --option=value, not " + arg);
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+    String engine = options.getOrDefault("engine", "impl");
+    int orders = Integer.parseInt(options.getOrDefault("orders", "10000000"));
+    int churn = Integer.parseInt(options.getOrDefault("churn", "2000000"));
+    OrderBookManager manager = engine.equals("offheap") ? new OffHeapOrderBookManager(36, orders)
+        : new OrderBookManagerImpl();
+    SplittableRandom random = new SplittableRandom(42);
+
+    String[] instruments = new String[INSTRUMENTS];
+    for (int i = 0; i < INSTRUMENTS; i++) {
+      instruments[i] = "instrument" + i;
+    }
+    long started = System.nanoTime();
+    for (int i = 0; i < orders; i++) {
+      manager.addOrder(order(random, instruments));
+    }
+    System.out.printf("%s, %d resting orders added in %.1fs%n", engine, orders, (System.nanoTime() - started) / 1e9);
+
+    long pauseNanos = 0;
+    for (int i = 0; i < FULL_COLLECTIONS; i++) {
+      long start = System.nanoTime();
+      System.gc();
+      pauseNanos += System.nanoTime() - start;
+    }
+    Runtime runtime = Runtime.getRuntime();
+    long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+    System.out.printf("heap used %dMB, %d bytes per order%n", heapUsed >> 20, heapUsed / orders);
+    if (manager instanceof OffHeapOrderBookManager) {
+      long offHeap = ((OffHeapOrderBookManager) manager).offHeapBytes();
+      System.out.printf("off heap %dMB, %d bytes per order%n", offHeap >> 20, offHeap / orders);
+    }
+    System.out.printf("full collection %.0fms%n", pauseNanos / 1e6 / FULL_COLLECTIONS);
+
+    // replace orders one for one, the book stays the same size
+    long[] before = collections();
+    String[] live = new String[1024];
+    started = System.nanoTime();
+    for (int i = 0; i < churn; i++) {
+      int index = i & (live.length - 1);
+      if (live[index] != null) {
+        manager.deleteOrder(live[index]);
+      }
+      Order order = order(random, instruments);
+      manager.addOrder(order);
+      live[index] = order.getOrderId();
+    }
+    long[] after = collections();
+    System.out.printf("churn of %d adds and deletes %.1fs, %d collections taking %dms%n", churn,
+        (System.nanoTime() - started) / 1e9, after[0] - before[0], after[1] - before[1]);
+  }
+
+  private static Order order(SplittableRandom random, String[] instruments) {
+    String orderId = new UUID(random.nextLong(), random.nextLong()).toString();
+    Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+    long price = side == Side.BUY ? 10000 - random.nextInt(LEVELS) : 10001 + random.nextInt(LEVELS);
+    return new Order.Builder().build(orderId, instruments[random.nextInt(instruments.length)], side, price,
+        1 + random.nextInt(100));
+  }
+
+  /*
+   * count and total time of every collection so far
+   */
+  private static long[] collections() {
+    long[] totals = new long[2];
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      totals[0] += Math.max(0, collector.getCollectionCount());
+      totals[1] += Math.max(0, collector.getCollectionTime());
+    }
+    return totals;
+  }
+}
@@ -0,0 +1,90 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/*
+ * many gateway threads submitting to one book, the locked manager against
+ * the single writer sequenced one. Throughput and sampled latency, look at
+ * the p0.99 line of the SampleTime results for p99
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SequencedManagerBenchmark {
+
+  private static final int DEPTH = 64;
+  private static final int ORDERS = 1024;
+
+  @State(Scope.Benchmark)
+  public static class Manager {
+    @Param({ "locked", "sequenced" })
+    String manager;
+
+    OrderBookManager orderBookManager;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      orderBookManager = "locked".equals(manager) ? new OrderBookManagerImpl() : new SequencedOrderBookManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      if (orderBookManager instanceof SequencedOrderBookManager) {
+        ((SequencedOrderBookManager) orderBookManager).close();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Gateway {
+    Order[] orders = new Order[ORDERS];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup(Manager manager, ThreadParams threadParams) {
+      int thread = threadParams.getThreadIndex();
+      for (int i = 0; i < ORDERS; i++) {
+        orders[i] = new Order.Builder().build("g" + thread + "-" + i, "microscope", Side.SELL, 100 + i % 10, 5);
+      }
+      for (int i = 0; i < DEPTH; i++) {
+        manager.orderBookManager.addOrder(orders[i]);
+      }
+      next = DEPTH;
+    }
+  }
+
+  @Benchmark
+  public void addOrder(Manager manager, Gateway gateway) {
+    manager.orderBookManager.addOrder(gateway.orders[gateway.next % ORDERS]);
+    manager.orderBookManager.deleteOrder(gateway.orders[(gateway.next - DEPTH) % ORDERS].getOrderId());
+    gateway.next++;
+  }
+
+  @Benchmark
+  public long modifyOrder(Manager manager, Gateway gateway) {
+    // alternate a reduce in place and a move to the back
+    Order order = gateway.orders[gateway.next++ % DEPTH];
+    manager.orderBookManager.modifyOrder(order.getOrderId(), 4);
+    manager.orderBookManager.modifyOrder(order.getOrderId(), 5);
+    return manager.orderBookManager.getOrderNumAtLevel("microscope", Side.SELL, order.getPrice());
+  }
+}
@@ -0,0 +1,90 @@
+package com.cfbenchmarks.interview;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * copy is how long a snapshot takes to copy the books, with book snapshots
+ * writers are only held up while their references are taken, without each
+ * instrument is held up while its orders are copied. snapshot is the copy plus
+ * writing the file and load is a restart reading it back
+ * into a fresh manager
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+  @Param({ "100000", "1000000" })
+  int orders;
+
+  @Param({ "false", "true" })
+  boolean snapshots;
+
+  private Path directory;
+  private OrderBookManagerImpl orderBookManager;
+  private Snapshotter snapshotter;
+  private Path snapshot;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    directory = Files.createTempDirectory("snapshots");
+    orderBookManager = new OrderBookManagerImpl.Builder().setSnapshots(snapshots).build();
+    for (int i = 0; i < orders; i++) {
+      orderBookManager.addOrder(new Order.Builder().build("order" + i, "instrument" + i % 16, Side.values()[i % 2],
+          100 + i % 1000, 5));
+    }
+    snapshotter = new Snapshotter.Builder(orderBookManager, directory).open();
+    snapshot = snapshotter.snapshot().get();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    snapshotter.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public List<Order> copy() {
+    List<Order> copy = new ArrayList<Order>();
+    orderBookManager.copyOrders(copy);
+    return copy;
+  }
+
+  @Benchmark
+  public Path snapshot() throws Exception {
+    return snapshotter.snapshot().get();
+  }
+
+  @Benchmark
+  public OrderBookManager load() throws IOException {
+    OrderBookManagerImpl loaded = new OrderBookManagerImpl();
+    Snapshotter.load(snapshot, loaded);
+    return loaded;
+  }
+}
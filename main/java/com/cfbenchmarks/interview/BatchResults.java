@@ -0,0 +1,111 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of each command of a batch, see
+ * {@link OrderBookManagerImpl#applyBatch(OrderCommand[], int, BatchResults)}.
+ * Meant to be reused, a batch with no rejections allocates nothing
+ *
+ * <p>
+ * Not thread safe, give each gateway thread its own
+ */
+public class BatchResults {
+
+  public enum Outcome {
+    /** added, deleted or modified **/
+    APPLIED,
+    /** a modify to the quantity the order already had **/
+    UNCHANGED,
+    /** nothing changed, see {@link BatchResults#getError(int)} **/
+    REJECTED
+  }
+
+  private final Outcome[] outcomes;
+  private final RuntimeException[] errors;
+  /** scratch, the book each command was resolved to **/
+  final OrderBook[] books;
+  /** scratch, the order each modify or delete was resolved to **/
+  final RestingOrder[] resting;
+  private int size;
+
+  /**
+   * @param capacity the largest batch these results can hold
+   */
+  public BatchResults(int capacity) {
+    checkArgument(capacity > 0, "capacity must be positive");
+    outcomes = new Outcome[capacity];
+    errors = new RuntimeException[capacity];
+    books = new OrderBook[capacity];
+    resting = new RestingOrder[capacity];
+  }
+
+  public int capacity() {
+    return outcomes.length;
+  }
+
+  /**
+   * @return the number of commands in the last batch
+   */
+  public int size() {
+    return size;
+  }
+
+  public Outcome getOutcome(int index) {
+    return outcomes[checkElementIndex(index, size)];
+  }
+
+  /**
+   * @return why the command was rejected, or null
+   */
+  public RuntimeException getError(int index) {
+    return errors[checkElementIndex(index, size)];
+  }
+
+  /**
+   * @return the number of rejected commands in the last batch
+   */
+  public int rejections() {
+    int rejections = 0;
+    for (int i = 0; i < size; i++) {
+      if (outcomes[i] == Outcome.REJECTED) {
+        rejections++;
+      }
+    }
+    return rejections;
+  }
+
+  void reset(int size) {
+    Arrays.fill(outcomes, 0, this.size, null);
+    Arrays.fill(errors, 0, this.size, null);
+    this.size = size;
+  }
+
+  boolean isPending(int index) {
+    return outcomes[index] == null;
+  }
+
+  void applied(int index) {
+    outcomes[index] = Outcome.APPLIED;
+  }
+
+  void unchanged(int index) {
+    outcomes[index] = Outcome.UNCHANGED;
+  }
+
+  void rejected(int index, RuntimeException error) {
+    outcomes[index] = Outcome.REJECTED;
+    errors[index] = error;
+  }
+
+  /*
+   * don't keep books or orders alive between batches
+   */
+  void clearResolved() {
+    Arrays.fill(books, 0, size, null);
+    Arrays.fill(resting, 0, size, null);
+  }
+}
@@ -0,0 +1,193 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One side of an instrument's book as of one instant, immutable. A manager
+ * built with snapshots publishes a new one after every change to the book, see
+ * {@link OrderBookManagerImpl#getSnapshot(String, Side)}. Reading a snapshot
+ * takes no lock, however long it is held or walked no writer waits for it
+ *
+ * <p>
+ * Successive snapshots share every level and order that didn't change, a
+ * change costs the writer O(log levels + log orders at the level) new nodes.
+ * Old snapshots are collected once nobody holds them
+ */
+public final class BookSnapshot {
+
+  private final String instrument;
+  private final Side side;
+  /** levels by price, best last for buys and first for sells **/
+  private final PersistentLongMap<Level> levels;
+  private final int orderCount;
+
+  private BookSnapshot(String instrument, Side side, PersistentLongMap<Level> levels, int orderCount) {
+    this.instrument = instrument;
+    this.side = side;
+    this.levels = levels;
+    this.orderCount = orderCount;
+  }
+
+  static BookSnapshot empty(String instrument, Side side) {
+    return new BookSnapshot(instrument, side, PersistentLongMap.<Level> empty(), 0);
+  }
+
+  public String getInstrument() {
+    return instrument;
+  }
+
+  public Side getSide() {
+    return side;
+  }
+
+  public int getLevelCount() {
+    return levels.size();
+  }
+
+  public int getOrderCount() {
+    return orderCount;
+  }
+
+  /**
+   * @return the highest buy or lowest sell price, empty if there are no orders
+   */
+  public Optional<Long> getBestPrice() {
+    if (levels.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(side == Side.BUY ? levels.lastKey() : levels.firstKey());
+  }
+
+  public long getOrderNumAtLevel(long price) {
+    Level level = levels.get(price);
+    return level == null ? 0 : level.orders.size();
+  }
+
+  public long getTotalQuantityAtLevel(long price) {
+    Level level = levels.get(price);
+    return level == null ? 0 : level.totalQuantity;
+  }
+
+  public long getTotalVolumeAtLevel(long price) {
+    Level level = levels.get(price);
+    return level == null ? 0 : level.totalVolume;
+  }
+
+  /**
+   * @return the orders at the level, oldest first
+   */
+  public List<Order> getOrdersAtLevel(long price) {
+    Level level = levels.get(price);
+    if (level == null) {
+      return Collections.emptyList();
+    }
+    List<Order> orders = new ArrayList<Order>(level.orders.size());
+    level.orders.forEach(true, (sequence, order) -> orders.add(order));
+    return Collections.unmodifiableList(orders);
+  }
+
+  /**
+   * visit the orders at the level oldest first, stopping as soon as the
+   * visitor returns false
+   *
+   * @return the number of orders visited
+   */
+  public int forEachOrderAtLevel(long price, OrderVisitor visitor) {
+    validateArg(visitor, "visitor cannot be null");
+    Level level = levels.get(price);
+    if (level == null) {
+      return 0;
+    }
+    int[] visited = new int[1];
+    level.orders.forEach(true, (sequence, order) -> {
+      visited[0]++;
+      return visitor.visit(order);
+    });
+    return visited[0];
+  }
+
+  /**
+   * visit every order, best level first and oldest first within a level,
+   * stopping as soon as the visitor returns false
+   *
+   * @return the number of orders visited
+   */
+  public int forEachOrder(OrderVisitor visitor) {
+    validateArg(visitor, "visitor cannot be null");
+    int[] visited = new int[1];
+    levels.forEach(side == Side.SELL, (price, level) -> level.orders.forEach(true, (sequence, order) -> {
+      visited[0]++;
+      return visitor.visit(order);
+    }));
+    return visited[0];
+  }
+
+  /**
+   * @param n     the most levels to read, no more than the buffer's capacity
+   * @param depth filled with the best levels, best first, anything it held is
+   *              discarded
+   * @return the number of levels read, fewer than n if the book is shallower
+   */
+  public int getDepth(int n, DepthBuffer depth) {
+    validateArg(depth, "depth cannot be null");
+    checkArgument(n > 0 && n <= depth.capacity(), "n must be between 1 and the buffer capacity");
+    depth.clear();
+    levels.forEach(side == Side.SELL, (price, level) -> {
+      depth.add(price, level.orders.size(), level.totalQuantity, level.totalVolume);
+      return depth.levels() < n;
+    });
+    return depth.levels();
+  }
+
+  /*
+   * the writer's side, a new snapshot with one order changed. Orders are keyed
+   * by a sequence the book gives each order as it joins the back of a level,
+   * so key order is FIFO order
+   */
+
+  /**
+   * @param order the order as it is now, with its current quantity
+   * @return a snapshot with the order added at, or replaced in, its level
+   */
+  BookSnapshot withOrder(long price, long sequence, Order order) {
+    Level level = levels.get(price);
+    Order replaced = level == null ? null : level.orders.get(sequence);
+    long quantity = order.getQuantity() - (replaced == null ? 0 : replaced.getQuantity());
+    Level changed = level == null ? new Level(PersistentLongMap.<Order> empty().put(sequence, order), quantity,
+        quantity * price) : new Level(level.orders.put(sequence, order), level.totalQuantity + quantity,
+            level.totalVolume + quantity * price);
+    return new BookSnapshot(instrument, side, levels.put(price, changed), orderCount + (replaced == null ? 1 : 0));
+  }
+
+  /**
+   * @return a snapshot without the order, or its level if it was the last
+   */
+  BookSnapshot withoutOrder(long price, long sequence) {
+    Level level = levels.get(price);
+    Order removed = level.orders.get(sequence);
+    PersistentLongMap<Order> orders = level.orders.remove(sequence);
+    PersistentLongMap<Level> changed = orders.isEmpty() ? levels.remove(price)
+        : levels.put(price, new Level(orders, level.totalQuantity - removed.getQuantity(), level.totalVolume
+            - removed.getQuantity() * price));
+    return new BookSnapshot(instrument, side, changed, orderCount - 1);
+  }
+
+  private static final class Level {
+    /** by sequence, oldest first **/
+    private final PersistentLongMap<Order> orders;
+    private final long totalQuantity;
+    private final long totalVolume;
+
+    Level(PersistentLongMap<Order> orders, long totalQuantity, long totalVolume) {
+      this.orders = orders;
+      this.totalQuantity = totalQuantity;
+      this.totalVolume = totalVolume;
+    }
+  }
+}
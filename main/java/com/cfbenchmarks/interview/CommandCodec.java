@@ -0,0 +1,335 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * flyweight binary codec for add, modify and delete commands, read and written
+ * in place in a ByteBuffer. wrap() points the codec at a message and the
+ * accessors read its fields straight from the buffer, nothing is copied or
+ * allocated except the Strings an Order needs. Ingress, the journal and
+ * replication can all use the one encoding
+ *
+ * every message has the same fixed 24 byte header, then the strings
+ *   0   type byte, ADD, MODIFY or DELETE
+ *   1   side byte, Side.ordinal(), adds only
+ *   2   order id length, unsigned short
+ *   4   instrument length, unsigned short, adds only
+ *   6   unused
+ *   8   price long, adds only
+ *   16  quantity long, adds and modifies
+ *   24  order id then instrument, UTF-8
+ * in the buffer's byte order, big endian unless the caller changes it
+ *
+ * one codec per thread, it remembers the buffer it is wrapped around
+ */
+public class CommandCodec {
+
+  public static final byte ADD = 1;
+  public static final byte MODIFY = 2;
+  public static final byte DELETE = 3;
+
+  static final int TYPE_OFFSET = 0;
+  static final int SIDE_OFFSET = 1;
+  static final int ORDER_ID_LENGTH_OFFSET = 2;
+  static final int INSTRUMENT_LENGTH_OFFSET = 4;
+  static final int PRICE_OFFSET = 8;
+  static final int QUANTITY_OFFSET = 16;
+  public static final int HEADER_LENGTH = 24;
+  /** longest order id or instrument, in UTF-8 bytes **/
+  public static final int MAX_STRING_LENGTH = 0xffff;
+
+  private static final Side[] SIDES = Side.values();
+
+  private ByteBuffer buffer;
+  private int offset;
+  private final Order.Builder orders = new Order.Builder();
+  private byte[] scratch = new byte[64];
+  /** the last instrument decoded, most streams have few instruments **/
+  private byte[] lastInstrumentBytes = new byte[0];
+  private String lastInstrument;
+
+  /**
+   * point the codec at the message starting at offset, to read it or to
+   * encode over it
+   */
+  public CommandCodec wrap(ByteBuffer buffer, int offset) {
+    validateArg(buffer, "buffer cannot be null");
+    checkArgument(offset >= 0 && offset <= buffer.limit(), "offset must be within the buffer");
+    this.buffer = buffer;
+    this.offset = offset;
+    return this;
+  }
+
+  /*
+   * encoding, each returns the encoded length
+   */
+
+  /**
+   * @throws IllegalArgumentException if the message doesn't fit between the
+   *                                  offset and the buffer's limit
+   */
+  public int encodeAdd(Order order) {
+    validateArg(order, "order cannot be null");
+    int orderIdLength = checkLength(order.getOrderId());
+    int instrumentLength = checkLength(order.getInstrument());
+    int length = HEADER_LENGTH + orderIdLength + instrumentLength;
+    checkRoom(length);
+    buffer.put(offset + TYPE_OFFSET, ADD);
+    buffer.put(offset + SIDE_OFFSET, (byte) order.getSide().ordinal());
+    buffer.putShort(offset + ORDER_ID_LENGTH_OFFSET, (short) orderIdLength);
+    buffer.putShort(offset + INSTRUMENT_LENGTH_OFFSET, (short) instrumentLength);
+    buffer.putLong(offset + PRICE_OFFSET, order.getPrice());
+    buffer.putLong(offset + QUANTITY_OFFSET, order.getQuantity());
+    putString(buffer, offset + HEADER_LENGTH, order.getOrderId());
+    putString(buffer, offset + HEADER_LENGTH + orderIdLength, order.getInstrument());
+    return length;
+  }
+
+  public int encodeModify(String orderId, long quantity) {
+    validateArg(orderId, "orderId cannot be null");
+    return encodeOrderId(MODIFY, orderId, quantity);
+  }
+
+  public int encodeDelete(String orderId) {
+    validateArg(orderId, "orderId cannot be null");
+    return encodeOrderId(DELETE, orderId, 0);
+  }
+
+  /**
+   * encode an add, modify or delete command, queries can't be encoded
+   */
+  public int encode(OrderCommand command) {
+    validateArg(command, "command cannot be null");
+    validateArg(command.type, "command is empty");
+    switch (command.type) {
+    case ADD:
+      return encodeAdd(command.order);
+    case MODIFY:
+      return encodeModify(command.orderId, command.quantity);
+    case DELETE:
+      return encodeDelete(command.orderId);
+    default:
+      throw new IllegalArgumentException("cannot encode " + command.type);
+    }
+  }
+
+  /*
+   * encoded lengths, to size a buffer before encoding
+   */
+
+  public static int lengthOfAdd(Order order) {
+    return HEADER_LENGTH + lengthOf(order.getOrderId()) + lengthOf(order.getInstrument());
+  }
+
+  public static int lengthOfModify(String orderId) {
+    return HEADER_LENGTH + lengthOf(orderId);
+  }
+
+  public static int lengthOfDelete(String orderId) {
+    return HEADER_LENGTH + lengthOf(orderId);
+  }
+
+  /*
+   * decoding, the fields of the wrapped message
+   */
+
+  public byte type() {
+    return buffer.get(offset + TYPE_OFFSET);
+  }
+
+  public Side side() {
+    return SIDES[buffer.get(offset + SIDE_OFFSET)];
+  }
+
+  public long price() {
+    return buffer.getLong(offset + PRICE_OFFSET);
+  }
+
+  public long quantity() {
+    return buffer.getLong(offset + QUANTITY_OFFSET);
+  }
+
+  public int orderIdLength() {
+    return buffer.getShort(offset + ORDER_ID_LENGTH_OFFSET) & 0xffff;
+  }
+
+  public int instrumentLength() {
+    return buffer.getShort(offset + INSTRUMENT_LENGTH_OFFSET) & 0xffff;
+  }
+
+  /**
+   * @return the length of the wrapped message
+   */
+  public int length() {
+    return HEADER_LENGTH + orderIdLength() + instrumentLength();
+  }
+
+  public String orderId() {
+    int length = orderIdLength();
+    readBytes(offset + HEADER_LENGTH, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the instrument, the same String as last time if it hasn't changed
+   */
+  public String instrument() {
+    int length = instrumentLength();
+    readBytes(offset + HEADER_LENGTH + orderIdLength(), length);
+    if (length != lastInstrumentBytes.length || !sameBytes(length)) {
+      lastInstrumentBytes = Arrays.copyOf(scratch, length);
+      lastInstrument = new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+    return lastInstrument;
+  }
+
+  /**
+   * @return the order of a wrapped add
+   */
+  public Order toOrder() {
+    checkState(type() == ADD, "not an add");
+    return orders.build(orderId(), instrument(), side(), price(), quantity());
+  }
+
+  /**
+   * fill a command from the wrapped message, e.g. for applyBatch
+   *
+   * @return the command
+   */
+  public OrderCommand decodeInto(OrderCommand command) {
+    validateArg(command, "command cannot be null");
+    byte type = type();
+    switch (type) {
+    case ADD:
+      return command.add(toOrder());
+    case MODIFY:
+      return command.modify(orderId(), quantity());
+    case DELETE:
+      return command.delete(orderId());
+    default:
+      throw new IllegalStateException("unknown command type " + type);
+    }
+  }
+
+  /**
+   * apply the wrapped message to a manager
+   *
+   * @return what modifyOrder or deleteOrder returned, true for an add
+   */
+  public boolean applyTo(OrderBookManager manager) {
+    byte type = type();
+    switch (type) {
+    case ADD:
+      manager.addOrder(toOrder());
+      return true;
+    case MODIFY:
+      return manager.modifyOrder(orderId(), quantity());
+    case DELETE:
+      return manager.deleteOrder(orderId());
+    default:
+      throw new IllegalStateException("unknown command type " + type);
+    }
+  }
+
+  /*
+   * strings as UTF-8, ASCII copied a char at a time without a byte[]. Also
+   * used for the length prefixed strings of snapshots
+   */
+
+  static int lengthOf(String s) {
+    return isAscii(s) ? s.length() : s.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  /**
+   * @return the number of bytes written
+   */
+  static int putString(ByteBuffer buffer, int index, String s) {
+    if (isAscii(s)) {
+      for (int i = 0; i < s.length(); i++) {
+        buffer.put(index + i, (byte) s.charAt(i));
+      }
+      return s.length();
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < bytes.length; i++) {
+      buffer.put(index + i, bytes[i]);
+    }
+    return bytes.length;
+  }
+
+  /**
+   * an int length then the string, at the buffer's position
+   */
+  static void putPrefixedString(ByteBuffer buffer, String s) {
+    int position = buffer.position();
+    int length = putString(buffer, position + 4, s);
+    buffer.putInt(position, length);
+    buffer.position(position + 4 + length);
+  }
+
+  static int lengthOfPrefixed(String s) {
+    return 4 + lengthOf(s);
+  }
+
+  /*
+   * private methods
+   */
+
+  private int encodeOrderId(byte type, String orderId, long quantity) {
+    int orderIdLength = checkLength(orderId);
+    int length = HEADER_LENGTH + orderIdLength;
+    checkRoom(length);
+    buffer.put(offset + TYPE_OFFSET, type);
+    buffer.put(offset + SIDE_OFFSET, (byte) 0);
+    buffer.putShort(offset + ORDER_ID_LENGTH_OFFSET, (short) orderIdLength);
+    buffer.putShort(offset + INSTRUMENT_LENGTH_OFFSET, (short) 0);
+    buffer.putLong(offset + PRICE_OFFSET, 0);
+    buffer.putLong(offset + QUANTITY_OFFSET, quantity);
+    putString(buffer, offset + HEADER_LENGTH, orderId);
+    return length;
+  }
+
+  private static int checkLength(String s) {
+    int length = lengthOf(s);
+    checkArgument(length <= MAX_STRING_LENGTH, "order id or instrument is too long");
+    return length;
+  }
+
+  private void checkRoom(int length) {
+    checkState(buffer != null, "wrap a buffer first");
+    checkArgument(offset + length <= buffer.limit(), "no room for the message");
+  }
+
+  private void readBytes(int index, int length) {
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      scratch[i] = buffer.get(index + i);
+    }
+  }
+
+  private boolean sameBytes(int length) {
+    for (int i = 0; i < length; i++) {
+      if (scratch[i] != lastInstrumentBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAscii(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
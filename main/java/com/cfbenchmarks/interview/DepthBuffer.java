@@ -0,0 +1,74 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Market by price depth of one side of a book, best level first. Filled by
+ * {@link OrderBookManagerImpl#getDepth(String, Side, int, DepthBuffer)} and
+ * meant to be reused, refilling it allocates nothing
+ *
+ * <p>
+ * Not thread safe, give each reader its own buffer
+ */
+public class DepthBuffer {
+
+  private final long[] prices;
+  private final long[] orderNums;
+  private final long[] totalQuantities;
+  private final long[] totalVolumes;
+  private int levels;
+
+  /**
+   * @param capacity the most levels this buffer can hold
+   */
+  public DepthBuffer(int capacity) {
+    checkArgument(capacity > 0, "capacity must be positive");
+    prices = new long[capacity];
+    orderNums = new long[capacity];
+    totalQuantities = new long[capacity];
+    totalVolumes = new long[capacity];
+  }
+
+  public int capacity() {
+    return prices.length;
+  }
+
+  /**
+   * @return the number of levels filled, at most the number asked for
+   */
+  public int levels() {
+    return levels;
+  }
+
+  /**
+   * @param level 0 for the best level
+   */
+  public long getPrice(int level) {
+    return prices[checkElementIndex(level, levels)];
+  }
+
+  public long getOrderNum(int level) {
+    return orderNums[checkElementIndex(level, levels)];
+  }
+
+  public long getTotalQuantity(int level) {
+    return totalQuantities[checkElementIndex(level, levels)];
+  }
+
+  public long getTotalVolume(int level) {
+    return totalVolumes[checkElementIndex(level, levels)];
+  }
+
+  void clear() {
+    levels = 0;
+  }
+
+  void add(long price, long orderNum, long totalQuantity, long totalVolume) {
+    prices[levels] = price;
+    orderNums[levels] = orderNum;
+    totalQuantities[levels] = totalQuantity;
+    totalVolumes[levels] = totalVolume;
+    levels++;
+  }
+}
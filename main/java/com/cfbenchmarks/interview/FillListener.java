@@ -0,0 +1,37 @@
+package com.cfbenchmarks.interview;
+
+/**
+ * Receives the fills of a matching {@link OrderBookManagerImpl}
+ *
+ * <p>
+ * Called on the thread adding the aggressive order while it holds the locks of
+ * both sides of the instrument's book, so implementations must be quick and
+ * must not call back into the manager. Every argument is an existing object
+ * or a primitive, nothing is allocated per fill. A manager with long order ids
+ * calls the long id overload instead, override it too to keep it so
+ */
+@FunctionalInterface
+public interface FillListener {
+
+  /**
+   * @param instrument       identifier of the instrument
+   * @param aggressorSide    side of the incoming order
+   * @param aggressorOrderId id of the incoming order
+   * @param restingOrderId   id of the resting order it traded with
+   * @param price            the resting order's price, trades happen at the
+   *                         resting price
+   * @param quantity         quantity traded, always positive
+   */
+  void onFill(String instrument, Side aggressorSide, String aggressorOrderId, String restingOrderId, long price,
+      long quantity);
+
+  /**
+   * the same for a manager with long order ids, by default passed on with the
+   * ids as decimal strings
+   */
+  default void onFill(String instrument, Side aggressorSide, long aggressorOrderId, long restingOrderId,
+      long price, long quantity) {
+    onFill(instrument, aggressorSide, Long.toString(aggressorOrderId), Long.toString(restingOrderId), price,
+        quantity);
+  }
+}
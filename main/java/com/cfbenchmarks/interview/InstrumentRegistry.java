@@ -0,0 +1,48 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * maps instrument names to dense int ids, 0, 1, 2... in order of first sight
+ * an id is assigned once and never changes, so hot paths can index arrays by
+ * id rather than build and hash a key per call
+ */
+class InstrumentRegistry {
+
+  private final ConcurrentMap<String, Integer> idsByName = new ConcurrentHashMap<String, Integer>();
+  private final AtomicInteger nextId = new AtomicInteger();
+
+  /**
+   * @param instrument identifier of an instrument
+   * @return its id, assigning the next one if we have not seen it before
+   */
+  int register(String instrument) {
+    validateArg(instrument, "instrument cannot be null");
+    Integer id = idsByName.get(instrument);
+    if (id == null) {
+      id = idsByName.computeIfAbsent(instrument, name -> nextId.getAndIncrement());
+    }
+    return id;
+  }
+
+  /**
+   * @param instrument identifier of an instrument
+   * @return its id, or -1 if it has never been registered
+   */
+  int idOf(String instrument) {
+    validateArg(instrument, "instrument cannot be null");
+    Integer id = idsByName.get(instrument);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * @return the number of instruments, ids are always below this
+   */
+  int size() {
+    return nextId.get();
+  }
+}
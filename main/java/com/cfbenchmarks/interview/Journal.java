@@ -0,0 +1,542 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+ * write ahead journal of every accepted add, modify and delete, replayed into
+ * a fresh manager after a restart
+ *
+ * a book hands each change to a preallocated ring buffer while it holds its
+ * lock, so changes to one order are journaled in the order they happened and
+ * the book never waits on the disk. One writer thread encodes the records into
+ * memory mapped segment files, rolling to a new one when the current is full,
+ * and forces them to disk according to the flush policy
+ *
+ * once the writer fails nothing more is journaled, and books check first and
+ * refuse changes rather than make ones that can't be journaled
+ *
+ * a segment starts with the sequence number of its first record, a long,
+ * then a run of records, each an int length then a CommandCodec message of
+ * that many bytes. A zero length ends the segment, new segments are zero
+ * filled. Records are numbered from 0 in the order they were journaled,
+ * across segments and reopens, so a snapshot can say where replay should
+ * pick up
+ */
+public class Journal implements AutoCloseable {
+
+  public enum FlushPolicy {
+    /** force every record to disk before the next, slowest and safest **/
+    PER_MESSAGE,
+    /** force once per batch drained from the ring **/
+    PER_BATCH,
+    /** force at most once per flush interval **/
+    TIMED
+  }
+
+  static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+  static final int DEFAULT_RING_SIZE = 1 << 14;
+  private static final String SUFFIX = ".journal";
+  /** the first record's sequence number **/
+  private static final int HEADER = 8;
+  /** most records written before checking for a flush **/
+  private static final int BATCH_LIMIT = 1024;
+  private static final int SPIN_TRIES = 1000;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Path m_directory;
+  private final int m_segmentSize;
+  private final FlushPolicy m_flushPolicy;
+  private final long m_flushIntervalNanos;
+  private final RingBuffer<JournalEntry> m_ring;
+  private final Consumer<JournalEntry> m_write = this::write;
+  /** only used by the writer thread **/
+  private final CommandCodec m_codec = new CommandCodec();
+  private final Thread m_writer;
+  private volatile boolean m_running = true;
+  /** set while replay applies records, they are already journaled **/
+  private volatile boolean m_replaying;
+  /** the first error the writer hit, nothing is journaled after it **/
+  private volatile Throwable m_failure;
+  /** sequence number of the first record journaled since we opened **/
+  private long m_firstSequence;
+
+  /** only touched by the writer thread once started **/
+  private long m_segmentIndex;
+  private FileChannel m_channel;
+  private MappedByteBuffer m_segment;
+  private boolean m_dirty;
+  private long m_lastFlush;
+
+  private Journal(Builder builder) throws IOException {
+    m_directory = builder.directory;
+    m_segmentSize = builder.segmentSize;
+    m_flushPolicy = builder.flushPolicy;
+    m_flushIntervalNanos = builder.flushIntervalNanos;
+    m_ring = new RingBuffer<JournalEntry>(builder.ringSize, JournalEntry::new);
+
+    Files.createDirectories(m_directory);
+    List<Path> segments = segments(m_directory);
+    if (segments.isEmpty()) {
+      openSegment(1, 0);
+    } else {
+      // carry on after the last record of the last segment
+      Path last = segments.get(segments.size() - 1);
+      openSegment(indexOf(last), -1);
+      m_firstSequence = m_segment.getLong(0);
+      int position = HEADER;
+      for (int length; position + 4 <= m_segment.limit() && (length = m_segment.getInt(position)) != 0;) {
+        position += 4 + length;
+        m_firstSequence++;
+      }
+      m_segment.position(position);
+    }
+
+    m_writer = new Thread(this::run, "journal-writer");
+    m_writer.setDaemon(true);
+    m_writer.start();
+  }
+
+  /**
+   * apply every record journaled so far to a manager, normally a fresh one
+   * built with this journal. What is replayed is not journaled again
+   *
+   * @return the number of records applied
+   */
+  public long replay(OrderBookManager manager) throws IOException {
+    return replay(manager, 0);
+  }
+
+  /**
+   * apply the records from a sequence number on, e.g. the sequence of the
+   * snapshot the manager was loaded from. What is replayed is not journaled
+   * again
+   *
+   * @return the number of records applied
+   */
+  public long replay(OrderBookManager manager, long fromSequence) throws IOException {
+    validateArg(manager, "manager cannot be null");
+    m_replaying = true;
+    try {
+      return replay(m_directory, manager, fromSequence);
+    } finally {
+      m_replaying = false;
+    }
+  }
+
+  /**
+   * restart from a snapshot, loading it into a fresh manager and then
+   * replaying the records journaled since it was taken. Nothing is journaled
+   * again
+   *
+   * @param snapshot a snapshot of a manager journaling here, null to replay
+   *                 every record
+   * @return the number of records replayed after the snapshot
+   */
+  public long recover(Path snapshot, OrderBookManager manager) throws IOException {
+    validateArg(manager, "manager cannot be null");
+    m_replaying = true;
+    try {
+      long fromSequence = snapshot == null ? 0 : Snapshotter.load(snapshot, manager);
+      return replay(m_directory, manager, fromSequence);
+    } finally {
+      m_replaying = false;
+    }
+  }
+
+  /**
+   * apply every record in a journal directory to a manager, the manager must
+   * not journal to the same directory
+   *
+   * @return the number of records applied
+   */
+  public static long replay(Path directory, OrderBookManager manager) throws IOException {
+    return replay(directory, manager, 0);
+  }
+
+  /**
+   * apply the records in a journal directory from a sequence number on
+   *
+   * @return the number of records applied
+   */
+  public static long replay(Path directory, OrderBookManager manager, long fromSequence) throws IOException {
+    validateArg(directory, "directory cannot be null");
+    validateArg(manager, "manager cannot be null");
+    checkArgument(fromSequence >= 0, "fromSequence cannot be negative");
+    Reader reader = new Reader(manager, fromSequence);
+    List<Path> segments = segments(directory);
+    for (int i = 0; i < segments.size(); i++) {
+      if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+        // every record in this segment is before where we start
+        continue;
+      }
+      try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+        reader.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+    }
+    return reader.records;
+  }
+
+  /**
+   * stop the writer once every change already journaled is written and
+   * forced to disk. Later changes are dropped
+   */
+  @Override
+  public void close() {
+    // once the ring is closed every change claimed is published, the
+    // writer's last drain picks them all up
+    m_ring.close();
+    m_running = false;
+    try {
+      m_writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the sequence number the next record will get, only stable while
+   *         every book journaling here is locked
+   */
+  long nextSequence() {
+    return m_firstSequence + m_ring.lastClaimed() + 1;
+  }
+
+  /**
+   * called by a book holding its write lock before it makes a change
+   *
+   * @throws IllegalStateException if the writer has failed
+   */
+  void checkHealthy() {
+    if (m_failure != null) {
+      throw new IllegalStateException("journal has failed, changes are no longer journaled", m_failure);
+    }
+  }
+
+  /*
+   * called by a book holding its write lock once the change is made, never
+   * fail, a change that can't be journaled any more is dropped
+   */
+
+  void add(Order order) {
+    JournalEntry entry = claim();
+    if (entry != null) {
+      entry.type = CommandCodec.ADD;
+      entry.order = order;
+      m_ring.publish(entry.sequence);
+    }
+  }
+
+  /*
+   * modify and delete take the order, its id is only made a String, if it is
+   * a long id, on the writer thread
+   */
+
+  void modify(Order order, long quantity) {
+    JournalEntry entry = claim();
+    if (entry != null) {
+      entry.type = CommandCodec.MODIFY;
+      entry.order = order;
+      entry.quantity = quantity;
+      m_ring.publish(entry.sequence);
+    }
+  }
+
+  void delete(Order order) {
+    JournalEntry entry = claim();
+    if (entry != null) {
+      entry.type = CommandCodec.DELETE;
+      entry.order = order;
+      m_ring.publish(entry.sequence);
+    }
+  }
+
+  /*
+   * private methods
+   */
+
+  private JournalEntry claim() {
+    if (m_replaying || m_failure != null) {
+      return null;
+    }
+    long sequence = m_ring.claim();
+    if (sequence < 0) {
+      // closed
+      return null;
+    }
+    JournalEntry entry = m_ring.get(sequence);
+    entry.sequence = sequence;
+    return entry;
+  }
+
+  private void run() {
+    try {
+      m_lastFlush = System.nanoTime();
+      int idle = 0;
+      while (m_running) {
+        if (m_ring.drain(m_write, BATCH_LIMIT) > 0) {
+          idle = 0;
+          if (m_flushPolicy == FlushPolicy.PER_BATCH) {
+            flush();
+          }
+        } else if (++idle > SPIN_TRIES) {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        } else {
+          Thread.yield();
+        }
+        if (m_flushPolicy == FlushPolicy.TIMED && System.nanoTime() - m_lastFlush >= m_flushIntervalNanos) {
+          flush();
+        }
+      }
+      // whatever was queued before we stopped
+      while (m_ring.drain(m_write, BATCH_LIMIT) > 0) {
+      }
+      flush();
+      m_channel.close();
+    } catch (Throwable e) {
+      fail(e);
+    } finally {
+      // a book must never wait on a writer that is gone
+      m_ring.close(JournalEntry::clear);
+    }
+  }
+
+  private void write(JournalEntry entry) {
+    try {
+      if (m_failure == null) {
+        encode(entry);
+        if (m_flushPolicy == FlushPolicy.PER_MESSAGE) {
+          flush();
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      fail(e);
+    } finally {
+      entry.clear();
+    }
+  }
+
+  private void encode(JournalEntry entry) throws IOException {
+    String orderId = entry.order.getOrderId();
+    int length;
+    switch (entry.type) {
+    case CommandCodec.ADD:
+      length = CommandCodec.lengthOfAdd(entry.order);
+      break;
+    case CommandCodec.MODIFY:
+      length = CommandCodec.lengthOfModify(orderId);
+      break;
+    default:
+      length = CommandCodec.lengthOfDelete(orderId);
+    }
+    // room for the record and the zero length that ends the segment
+    if (4 + length + 4 > m_segment.remaining()) {
+      checkArgument(HEADER + 4 + length + 4 <= m_segmentSize, "record is bigger than a segment");
+      roll(m_firstSequence + entry.sequence);
+    }
+
+    MappedByteBuffer segment = m_segment;
+    int start = segment.position();
+    m_codec.wrap(segment, start + 4);
+    switch (entry.type) {
+    case CommandCodec.ADD:
+      m_codec.encodeAdd(entry.order);
+      break;
+    case CommandCodec.MODIFY:
+      m_codec.encodeModify(orderId, entry.quantity);
+      break;
+    default:
+      m_codec.encodeDelete(orderId);
+    }
+    // the length last, a reader never sees a record before it is complete
+    segment.putInt(start, length);
+    segment.position(start + 4 + length);
+    m_dirty = true;
+  }
+
+  private void flush() {
+    if (m_dirty && m_failure == null) {
+      m_segment.force();
+      m_dirty = false;
+    }
+    m_lastFlush = System.nanoTime();
+  }
+
+  private void roll(long firstSequence) throws IOException {
+    flush();
+    m_channel.close();
+    openSegment(m_segmentIndex + 1, firstSequence);
+  }
+
+  /*
+   * map a segment, a new one starts with firstSequence, -1 to keep the one
+   * an existing segment has
+   */
+  private void openSegment(long index, long firstSequence) throws IOException {
+    Path path = m_directory.resolve(String.format("%020d%s", index, SUFFIX));
+    m_channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    m_segment = m_channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(m_segmentSize, m_channel.size()));
+    m_segmentIndex = index;
+    if (firstSequence >= 0) {
+      m_segment.putLong(0, firstSequence);
+    }
+    m_segment.position(HEADER);
+  }
+
+  private void fail(Throwable e) {
+    if (m_failure == null) {
+      m_failure = e;
+      m_writer.getUncaughtExceptionHandler().uncaughtException(m_writer, e);
+    }
+  }
+
+  private static long firstSequence(Path segment) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      channel.read(header, 0);
+      return header.getLong(0);
+    }
+  }
+
+  private static List<Path> segments(Path directory) throws IOException {
+    List<Path> segments = new ArrayList<Path>();
+    if (!Files.isDirectory(directory)) {
+      return segments;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(segments::add);
+    }
+    return segments;
+  }
+
+  private static long indexOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+  }
+
+  public static class Builder {
+    private final Path directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private FlushPolicy flushPolicy = FlushPolicy.PER_BATCH;
+    private long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private int ringSize = DEFAULT_RING_SIZE;
+
+    /**
+     * @param directory where the segment files go, created if need be
+     */
+    public Builder(Path directory) {
+      validateArg(directory, "directory cannot be null");
+      this.directory = directory;
+    }
+
+    /**
+     * @param segmentSize bytes per segment file, defaults to 64MB
+     */
+    public Builder setSegmentSize(int segmentSize) {
+      checkArgument(segmentSize >= 1024, "segmentSize must be at least 1KB");
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * @param flushPolicy when to force records to disk, defaults to PER_BATCH
+     */
+    public Builder setFlushPolicy(FlushPolicy flushPolicy) {
+      validateArg(flushPolicy, "flushPolicy cannot be null");
+      this.flushPolicy = flushPolicy;
+      return this;
+    }
+
+    /**
+     * @param interval the longest a record waits to be forced with the TIMED
+     *                 policy, defaults to 10ms
+     */
+    public Builder setFlushInterval(long interval, TimeUnit unit) {
+      checkArgument(interval > 0, "interval must be positive");
+      validateArg(unit, "unit cannot be null");
+      this.flushIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * @param ringSize the most changes waiting to be written, a power of two.
+     *                 Books wait when it is full
+     */
+    public Builder setRingSize(int ringSize) {
+      this.ringSize = ringSize;
+      return this;
+    }
+
+    /**
+     * open the journal, appending after any records already in the directory
+     */
+    public Journal open() {
+      try {
+        return new Journal(this);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /*
+   * decodes the records of one journal, segment by segment, into manager calls
+   */
+  private static class Reader {
+    private final OrderBookManager manager;
+    private final long fromSequence;
+    private final CommandCodec codec = new CommandCodec();
+    long records;
+
+    Reader(OrderBookManager manager, long fromSequence) {
+      this.manager = manager;
+      this.fromSequence = fromSequence;
+    }
+
+    void read(MappedByteBuffer segment) {
+      long sequence = segment.getLong(0);
+      int position = HEADER;
+      while (position + 4 <= segment.limit()) {
+        int length = segment.getInt(position);
+        if (length == 0) {
+          return;
+        }
+        if (sequence++ >= fromSequence) {
+          codec.wrap(segment, position + 4).applyTo(manager);
+          records++;
+        }
+        position += 4 + length;
+      }
+    }
+  }
+
+  /*
+   * a ring entry, written by one book and read by the writer thread
+   */
+  private static class JournalEntry {
+    long sequence;
+    byte type;
+    /** the order added, or the one modified or deleted **/
+    Order order;
+    long quantity;
+
+    void clear() {
+      order = null;
+    }
+  }
+}
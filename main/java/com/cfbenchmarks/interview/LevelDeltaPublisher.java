@@ -0,0 +1,165 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/*
+ * carries level changes from the books to LevelListeners. A book writes each
+ * change into a preallocated ring buffer while it holds its lock, one thread
+ * drains the ring in batches and calls the listeners, so a slow listener never
+ * holds up a writer until the ring is full
+ *
+ * pass one to OrderBookManagerImpl.Builder, every book of that manager then
+ * publishes to it
+ */
+public class LevelDeltaPublisher implements AutoCloseable {
+
+  static final int DEFAULT_RING_SIZE = 1 << 14;
+  /** most changes handed to the listeners before onEndOfBatch **/
+  private static final int BATCH_LIMIT = 256;
+  private static final int SPIN_TRIES = 1000;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final RingBuffer<LevelDelta> m_ring;
+  private final Consumer<LevelDelta> m_dispatch = this::dispatch;
+  private final Thread m_publisher;
+  /** copied on write, read without locking by the publisher thread **/
+  private volatile LevelListener[] m_listeners = new LevelListener[0];
+  private volatile boolean m_running = true;
+
+  public LevelDeltaPublisher() {
+    this(DEFAULT_RING_SIZE);
+  }
+
+  /**
+   * @param ringSize the most changes in flight, a power of two. Writers spin
+   *                 when it is full
+   */
+  public LevelDeltaPublisher(int ringSize) {
+    m_ring = new RingBuffer<LevelDelta>(ringSize, LevelDelta::new);
+    m_publisher = new Thread(this::run, "level-delta-publisher");
+    m_publisher.setDaemon(true);
+    m_publisher.start();
+  }
+
+  /**
+   * @param listener told of every change published from now on
+   */
+  public synchronized void addListener(LevelListener listener) {
+    validateArg(listener, "listener cannot be null");
+    LevelListener[] listeners = Arrays.copyOf(m_listeners, m_listeners.length + 1);
+    listeners[listeners.length - 1] = listener;
+    m_listeners = listeners;
+  }
+
+  public synchronized void removeListener(LevelListener listener) {
+    validateArg(listener, "listener cannot be null");
+    m_listeners = Arrays.stream(m_listeners).filter(l -> l != listener).toArray(LevelListener[]::new);
+  }
+
+  /**
+   * stop the publisher thread once every change already published has been
+   * handed to the listeners. Later changes are dropped
+   */
+  @Override
+  public void close() {
+    // once the ring is closed every change claimed is published, the
+    // publisher's last drain picks them all up
+    m_ring.close();
+    m_running = false;
+    try {
+      m_publisher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * called by a book holding its write lock, so changes to one book are
+   * sequenced in the order they happened. Allocation free
+   */
+  void publish(String instrument, Side side, long price, long quantity, long orderNum) {
+    long sequence = m_ring.claim();
+    if (sequence < 0) {
+      // closed
+      return;
+    }
+    LevelDelta delta = m_ring.get(sequence);
+    delta.sequence = sequence;
+    delta.instrument = instrument;
+    delta.side = side;
+    delta.price = price;
+    delta.quantity = quantity;
+    delta.orderNum = orderNum;
+    m_ring.publish(sequence);
+  }
+
+  /*
+   * private methods
+   */
+
+  private void dispatch(LevelDelta delta) {
+    for (LevelListener listener : m_listeners) {
+      try {
+        listener.onLevelChange(delta.sequence, delta.instrument, delta.side, delta.price, delta.quantity,
+            delta.orderNum);
+      } catch (RuntimeException e) {
+        // one bad listener must not stop the others or the stream
+        m_publisher.getUncaughtExceptionHandler().uncaughtException(m_publisher, e);
+      }
+    }
+  }
+
+  private void endOfBatch() {
+    for (LevelListener listener : m_listeners) {
+      try {
+        listener.onEndOfBatch();
+      } catch (RuntimeException e) {
+        m_publisher.getUncaughtExceptionHandler().uncaughtException(m_publisher, e);
+      }
+    }
+  }
+
+  private void run() {
+    try {
+      int idle = 0;
+      while (m_running) {
+        if (m_ring.drain(m_dispatch, BATCH_LIMIT) > 0) {
+          endOfBatch();
+          idle = 0;
+        } else if (++idle > SPIN_TRIES) {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        } else {
+          Thread.yield();
+        }
+      }
+      // whatever was published before we stopped
+      while (m_ring.drain(m_dispatch, BATCH_LIMIT) > 0) {
+        endOfBatch();
+      }
+    } finally {
+      // a book must never wait on a publisher that is gone, drop the rest
+      m_ring.close(LevelDelta::clear);
+    }
+  }
+
+  /*
+   * a ring entry, written by one book and read by the publisher thread
+   */
+  private static class LevelDelta {
+    long sequence;
+    String instrument;
+    Side side;
+    long price;
+    long quantity;
+    long orderNum;
+
+    void clear() {
+      instrument = null;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.cfbenchmarks.interview;
+
+/**
+ * Receives every change to a price level, published by a
+ * {@link LevelDeltaPublisher}
+ *
+ * <p>
+ * Applying the changes in sequence order to an empty replica rebuilds the
+ * market by price of every book. Called on the publisher's thread, never on
+ * the thread that changed the book
+ */
+public interface LevelListener {
+
+  /**
+   * @param sequence   increases by one with every change across all books
+   * @param instrument identifier of the instrument
+   * @param side       side of the book
+   * @param price      the level that changed
+   * @param quantity   the level's new total quantity, 0 once it is empty
+   * @param orderNum   the level's new number of orders, 0 once it is empty
+   */
+  void onLevelChange(long sequence, String instrument, Side side, long price, long quantity, long orderNum);
+
+  /**
+   * called after each batch of changes, a good point to flush
+   */
+  default void onEndOfBatch() {
+  }
+}
@@ -0,0 +1,71 @@
+package com.cfbenchmarks.interview;
+
+import java.util.NoSuchElementException;
+
+/*
+ * the price levels of one side of a book, best price first. Prices are always
+ * positive
+ *
+ * implementations are not thread safe, callers must synchronize. get and
+ * peekBestPrice must terminate and not throw for an unsynchronized reader
+ * racing a writer, the answer may then be stale or torn
+ */
+interface Levels<V> {
+
+  boolean isEmpty();
+
+  int size();
+
+  /**
+   * @return the best price, highest for buy and lowest for sell
+   * @throws NoSuchElementException if there are no levels
+   */
+  long bestPrice();
+
+  /**
+   * @return the best price, or 0 if there are no levels
+   */
+  long peekBestPrice();
+
+  /**
+   * @return the value at the best price or null if there are no levels
+   */
+  V best();
+
+  V get(long price);
+
+  /**
+   * add or replace the value at a price
+   *
+   * @return the previous value or null
+   */
+  V put(long price, V value);
+
+  /**
+   * @return the removed value or null if there was nothing at the price
+   */
+  V remove(long price);
+
+  /**
+   * visit the best levels in order, passing the context through so a
+   * non-capturing visitor allocates nothing
+   *
+   * @param limit the most levels to visit
+   * @return the number of levels visited
+   */
+  <C> int forBest(int limit, C context, Visitor<V, C> visitor);
+
+  /**
+   * visit every level, best price first
+   */
+  default <C> void forEach(C context, Visitor<V, C> visitor) {
+    forBest(Integer.MAX_VALUE, context, visitor);
+  }
+
+  /*
+   * value may be null for an unsynchronized reader racing a writer
+   */
+  interface Visitor<V, C> {
+    void visit(C context, long price, V value);
+  }
+}
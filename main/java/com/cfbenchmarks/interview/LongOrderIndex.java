@@ -0,0 +1,232 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * long order id to RestingOrder, the by id map of a manager built with long
+ * order ids. Open addressing with linear probing, the ids in a long[] beside
+ * the orders, so a lookup hashes and compares longs, no boxing and no String
+ * hashCode or equals. A remove shifts later entries back rather than leave
+ * tombstones
+ *
+ * split into segments by the high bits of the hash, each with its own
+ * StampedLock, so books adding and deleting different orders rarely contend.
+ * Lookups read optimistically and only fall back to the read lock if a writer
+ * got in. A single writer has one segment and no locks
+ */
+class LongOrderIndex {
+
+  private static final int SEGMENT_BITS = 6;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int MAX_CAPACITY = 1 << 30;
+  private static final double MAX_LOAD = 0.6;
+
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  /**
+   * @param singleWriter true if only one thread will ever touch the index
+   */
+  LongOrderIndex(boolean singleWriter) {
+    segments = new Segment[singleWriter ? 1 : 1 << SEGMENT_BITS];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(singleWriter);
+    }
+    segmentMask = segments.length - 1;
+  }
+
+  /**
+   * @return the order with this id, null if there isn't one
+   */
+  RestingOrder get(long orderId) {
+    long hash = spread(orderId);
+    Segment segment = segmentFor(hash);
+    StampedLock lock = segment.lock;
+    if (lock == null) {
+      return segment.table.find(orderId, hash);
+    }
+    long stamp = lock.tryOptimisticRead();
+    RestingOrder resting = segment.table.find(orderId, hash);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        resting = segment.table.find(orderId, hash);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return resting;
+  }
+
+  /**
+   * @return null once added, otherwise the order that already has the id
+   */
+  RestingOrder putIfAbsent(long orderId, RestingOrder resting) {
+    long hash = spread(orderId);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+    try {
+      return segment.putIfAbsent(orderId, hash, resting);
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * @return true if the id was mapped to this order and is now removed
+   */
+  boolean remove(long orderId, RestingOrder resting) {
+    long hash = spread(orderId);
+    Segment segment = segmentFor(hash);
+    long stamp = segment.writeLock();
+    try {
+      return segment.remove(orderId, hash, resting);
+    } finally {
+      segment.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * @return the number of orders, only exact if no writer is busy
+   */
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  private Segment segmentFor(long hash) {
+    return segments[(int) (hash >>> (64 - SEGMENT_BITS)) & segmentMask];
+  }
+
+  /*
+   * upstream ids are often sequential, spread them over the whole table
+   */
+  private static long spread(long orderId) {
+    long h = orderId * 0x9e3779b97f4a7c15L;
+    return h ^ (h >>> 32);
+  }
+
+  private static class Segment {
+    /** null when a single writer owns the index **/
+    private final StampedLock lock;
+    /** replaced whole when it grows, so a racing reader sees one or the other **/
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+
+    Segment(boolean singleWriter) {
+      lock = singleWriter ? null : new StampedLock();
+    }
+
+    long writeLock() {
+      return lock == null ? 0 : lock.writeLock();
+    }
+
+    void unlockWrite(long stamp) {
+      if (lock != null) {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    RestingOrder putIfAbsent(long orderId, long hash, RestingOrder resting) {
+      RestingOrder existing = table.find(orderId, hash);
+      if (existing != null) {
+        return existing;
+      }
+      if (size == table.resizeAt) {
+        checkState(table.ids.length < MAX_CAPACITY, "long order id index is full");
+        Table grown = new Table(table.ids.length * 2);
+        for (int i = 0; i < table.ids.length; i++) {
+          if (table.orders[i] != null) {
+            grown.insert(table.ids[i], spread(table.ids[i]), table.orders[i]);
+          }
+        }
+        table = grown;
+      }
+      table.insert(orderId, hash, resting);
+      size++;
+      return null;
+    }
+
+    boolean remove(long orderId, long hash, RestingOrder resting) {
+      Table current = table;
+      int i = current.indexOf(orderId, hash);
+      if (i == -1 || current.orders[i] != resting) {
+        return false;
+      }
+      current.removeAt(i);
+      size--;
+      return true;
+    }
+  }
+
+  private static class Table {
+    private final long[] ids;
+    private final RestingOrder[] orders;
+    private final int mask;
+    private final int resizeAt;
+
+    Table(int capacity) {
+      ids = new long[capacity];
+      orders = new RestingOrder[capacity];
+      mask = capacity - 1;
+      resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    /*
+     * bounded, a reader racing a writer may see a run with no end
+     */
+    RestingOrder find(long orderId, long hash) {
+      int i = (int) hash & mask;
+      for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+        RestingOrder resting = orders[i];
+        if (resting == null) {
+          return null;
+        }
+        if (ids[i] == orderId) {
+          return resting;
+        }
+      }
+      return null;
+    }
+
+    int indexOf(long orderId, long hash) {
+      for (int i = (int) hash & mask; orders[i] != null; i = (i + 1) & mask) {
+        if (ids[i] == orderId) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    void insert(long orderId, long hash, RestingOrder resting) {
+      int i = (int) hash & mask;
+      while (orders[i] != null) {
+        i = (i + 1) & mask;
+      }
+      ids[i] = orderId;
+      orders[i] = resting;
+    }
+
+    /*
+     * pull back every later entry of the run that may sit at or before the
+     * gap, so probes never stop early
+     */
+    void removeAt(int i) {
+      for (int j = (i + 1) & mask; orders[j] != null; j = (j + 1) & mask) {
+        int home = (int) spread(ids[j]) & mask;
+        if (((j - home) & mask) >= ((j - i) & mask)) {
+          ids[i] = ids[j];
+          orders[i] = orders[j];
+          i = j;
+        }
+      }
+      ids[i] = 0;
+      orders[i] = null;
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * counts and latency histograms of OrderBookManagerImpl's operations, cheap
+ * enough to leave on in production. Every count and histogram bucket is a
+ * LongAdder, so threads recording at once each update their own cell rather
+ * than contend on one word, and recording allocates nothing. Latencies go in
+ * log-linear buckets, 8 per power of two, so a percentile is within 12.5%
+ *
+ * timing an operation costs two System.nanoTime calls, as much as a query, so
+ * by default only one call in 16 is timed though every call is counted. A wait
+ * for a book's lock is only timed when the lock was already held, an
+ * uncontended acquire costs nothing extra
+ *
+ * pass one to OrderBookManagerImpl.Builder and pull a snapshot with
+ * OrderBookManagerImpl.metrics()
+ */
+public class Metrics {
+
+  public enum Operation {
+    ADD, MODIFY, DELETE,
+    /** any of the get queries **/
+    QUERY,
+    /** a whole applyBatch call **/
+    BATCH
+  }
+
+  static final int DEFAULT_SAMPLE_EVERY = 16;
+  /** the start of a call we aren't timing **/
+  static final long NOT_TIMED = Long.MIN_VALUE;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** latencies are capped just under 2^41ns, about 36 minutes **/
+  private static final int HIGHEST_EXPONENT = 40;
+  static final long HIGHEST_NANOS = (1L << (HIGHEST_EXPONENT + 1)) - 1;
+  private static final int BUCKETS = (HIGHEST_EXPONENT - SUB_BUCKET_BITS + 2) << SUB_BUCKET_BITS;
+  private static final Operation[] OPERATIONS = Operation.values();
+
+  /** 0 to time every call, otherwise sampleEvery - 1 **/
+  private final int m_sampleMask;
+  private final LongAdder[] m_counts = new LongAdder[OPERATIONS.length];
+  /** by operation then bucket **/
+  private final LongAdder[][] m_latencies = new LongAdder[OPERATIONS.length][BUCKETS];
+  private final LongAdder m_lockWaits = new LongAdder();
+  private final LongAdder m_lockWaitNanos = new LongAdder();
+
+  public Metrics() {
+    this(DEFAULT_SAMPLE_EVERY);
+  }
+
+  /**
+   * @param sampleEvery time one call in this many, a power of two, 1 to time
+   *                    every call. Every call is still counted
+   */
+  public Metrics(int sampleEvery) {
+    checkArgument(sampleEvery > 0 && Integer.bitCount(sampleEvery) == 1, "sampleEvery must be a power of two");
+    m_sampleMask = sampleEvery - 1;
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      m_counts[i] = new LongAdder();
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        m_latencies[i][bucket] = new LongAdder();
+      }
+    }
+  }
+
+  /**
+   * @return when the call started, or NOT_TIMED if it isn't sampled
+   */
+  long start() {
+    if (m_sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & m_sampleMask) != 0) {
+      return NOT_TIMED;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * count a finished call, and time it if it was sampled
+   *
+   * @param start what start() returned
+   */
+  void record(Operation operation, long start) {
+    m_counts[operation.ordinal()].increment();
+    if (start != NOT_TIMED) {
+      m_latencies[operation.ordinal()][bucket(System.nanoTime() - start)].increment();
+    }
+  }
+
+  /**
+   * a thread waited this long for a book's lock
+   */
+  void lockWaited(long nanos) {
+    m_lockWaits.increment();
+    m_lockWaitNanos.add(nanos);
+  }
+
+  /**
+   * copy the counts, each is read once but not all at the same instant
+   *
+   * @param books the size of each book, as of now
+   */
+  Snapshot snapshot(List<BookStats> books) {
+    long[] counts = new long[OPERATIONS.length];
+    long[][] latencies = new long[OPERATIONS.length][BUCKETS];
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      counts[i] = m_counts[i].sum();
+      for (int bucket = 0; bucket < BUCKETS; bucket++) {
+        latencies[i][bucket] = m_latencies[i][bucket].sum();
+      }
+    }
+    return new Snapshot(counts, latencies, m_lockWaits.sum(), m_lockWaitNanos.sum(), books);
+  }
+
+  /*
+   * values below SUB_BUCKETS get a bucket each, above that every power of two
+   * is split into SUB_BUCKETS equal buckets
+   */
+  static int bucket(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), HIGHEST_NANOS);
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS)
+        | (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * @return the highest value that goes in the bucket
+   */
+  static long highestInBucket(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    long lowest = (long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * the metrics as of one pull, see {@link OrderBookManagerImpl#metrics()}
+   */
+  public static class Snapshot {
+    private final long[] counts;
+    private final long[][] latencies;
+    private final long lockWaits;
+    private final long lockWaitNanos;
+    private final List<BookStats> books;
+
+    Snapshot(long[] counts, long[][] latencies, long lockWaits, long lockWaitNanos, List<BookStats> books) {
+      this.counts = counts;
+      this.latencies = latencies;
+      this.lockWaits = lockWaits;
+      this.lockWaitNanos = lockWaitNanos;
+      this.books = Collections.unmodifiableList(books);
+    }
+
+    /**
+     * @return the number of calls that returned, rejected calls aren't counted
+     */
+    public long count(Operation operation) {
+      return counts[operation.ordinal()];
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return nanoseconds that percentile of the timed calls took no longer
+     *         than, 0 if none were timed
+     */
+    public long latency(Operation operation, double percentile) {
+      checkArgument(percentile >= 0 && percentile <= 100, "percentile must be from 0 to 100");
+      long[] histogram = latencies[operation.ordinal()];
+      long timed = 0;
+      for (long count : histogram) {
+        timed += count;
+      }
+      if (timed == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(timed * percentile / 100));
+      long seen = 0;
+      for (int bucket = 0; bucket < histogram.length; bucket++) {
+        seen += histogram[bucket];
+        if (seen >= rank) {
+          return highestInBucket(bucket);
+        }
+      }
+      return HIGHEST_NANOS;
+    }
+
+    /**
+     * @return how many times a thread found a book's lock held and waited
+     */
+    public long lockWaits() {
+      return lockWaits;
+    }
+
+    /**
+     * @return the total time threads waited for book locks
+     */
+    public long lockWaitNanos() {
+      return lockWaitNanos;
+    }
+
+    /**
+     * @return every book that has had an order, by instrument id then side
+     */
+    public List<BookStats> books() {
+      return books;
+    }
+
+    public int bookCount() {
+      return books.size();
+    }
+
+    public long levelCount() {
+      long levels = 0;
+      for (BookStats book : books) {
+        levels += book.getLevels();
+      }
+      return levels;
+    }
+
+    public long orderCount() {
+      long orders = 0;
+      for (BookStats book : books) {
+        orders += book.getOrders();
+      }
+      return orders;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder report = new StringBuilder();
+      for (Operation operation : OPERATIONS) {
+        report.append(String.format("%-6s count %d p50 %dns p99 %dns p99.9 %dns%n", operation,
+            count(operation), latency(operation, 50), latency(operation, 99), latency(operation, 99.9)));
+      }
+      report.append(String.format("lock waits %d, %dns%n", lockWaits, lockWaitNanos));
+      report.append(String.format("books %d levels %d orders %d", bookCount(), levelCount(), orderCount()));
+      return report.toString();
+    }
+  }
+
+  /**
+   * the size of one book when the snapshot was pulled
+   */
+  public static class BookStats {
+    private final String instrument;
+    private final Side side;
+    private final int levels;
+    private final int orders;
+
+    BookStats(String instrument, Side side, int levels, int orders) {
+      this.instrument = instrument;
+      this.side = side;
+      this.levels = levels;
+      this.orders = orders;
+    }
+
+    public String getInstrument() {
+      return instrument;
+    }
+
+    public Side getSide() {
+      return side;
+    }
+
+    public int getLevels() {
+      return levels;
+    }
+
+    public int getOrders() {
+      return orders;
+    }
+
+    @Override
+    public String toString() {
+      return instrument + " " + side + " levels " + levels + " orders " + orders;
+    }
+  }
+}
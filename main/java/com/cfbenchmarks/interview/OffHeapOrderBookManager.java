@@ -0,0 +1,445 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * resting orders are kept off the heap, for books of millions of orders
+ * whose Order, RestingOrder and by id map entry objects would otherwise fill
+ * the heap and lengthen every collection
+ *
+ * each order is a fixed size record in an OrderSlab addressed by a long slot,
+ * linked into the FIFO queue of its level by slot. Order ids are found
+ * through an OrderIdIndex, also off the heap. Only the price levels, a few
+ * per book, are objects. Orders are read through an OrderView flyweight and
+ * only become Order objects when getOrdersAtLevel returns them
+ *
+ * the slab and index are shared by every book so one StampedLock guards the
+ * manager, writers take it exclusively and the O(1) queries read
+ * optimistically. A plain store, no matching, journal or level deltas
+ */
+public class OffHeapOrderBookManager implements OrderBookManager {
+
+  /** long enough for a UUID string **/
+  static final int DEFAULT_MAX_ORDER_ID_LENGTH = 36;
+
+  private final StampedLock m_lock = new StampedLock();
+  private final OrderSlab m_slab;
+  private final OrderIdIndex m_index;
+  private final InstrumentRegistry m_instruments = new InstrumentRegistry();
+  /** names by instrument id, written under the write lock **/
+  private volatile String[] m_instrumentNames = new String[16];
+  /** books by instrument id, one array per side indexed by Side.ordinal() **/
+  private volatile Book[][] m_booksBySide = { new Book[16], new Book[16] };
+
+  public OffHeapOrderBookManager() {
+    this(DEFAULT_MAX_ORDER_ID_LENGTH, 1 << 16);
+  }
+
+  /**
+   * @param maxOrderIdLength longest order id in chars, every record has room
+   *                         for one this long so keep it tight
+   * @param expectedOrders   resting orders to size the id index for, it grows
+   *                         past this
+   */
+  public OffHeapOrderBookManager(int maxOrderIdLength, int expectedOrders) {
+    checkArgument(expectedOrders > 0, "expectedOrders must be positive");
+    m_slab = new OrderSlab(maxOrderIdLength);
+    m_index = new OrderIdIndex(m_slab, (int) Math.min(Integer.MAX_VALUE, expectedOrders * 2L));
+  }
+
+  public void addOrder(Order order) {
+    validateArg(order, "order cannot be null");
+    String orderId = order.getOrderId();
+    checkArgument(orderId.length() <= m_slab.maxOrderIdLength(),
+        "%s is longer than %s chars", orderId, m_slab.maxOrderIdLength());
+
+    long stamp = m_lock.writeLock();
+    try {
+      checkArgument(m_index.get(orderId) == OrderSlab.NONE, "%s already exists", orderId);
+      int instrumentId = registerInstrument(order.getInstrument());
+      Book book = getOrCreateBook(instrumentId, order.getSide());
+      long slot = m_slab.allocate(order, instrumentId);
+      m_index.add(slot);
+      book.rest(slot);
+    } finally {
+      m_lock.unlockWrite(stamp);
+    }
+  }
+
+  public boolean modifyOrder(String orderId, long newQuantity) {
+    validateArg(orderId, "orderId cannot be null");
+    checkArgument(newQuantity > 0, "Quantity must be positive");
+
+    long stamp = m_lock.writeLock();
+    try {
+      long slot = m_index.get(orderId);
+      if (slot == OrderSlab.NONE) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      long quantity = m_slab.quantity(slot);
+      if (quantity == newQuantity) {
+        return false;
+      }
+      Book book = bookOf(slot);
+      Level level = book.levels.get(m_slab.price(slot));
+      if (newQuantity > quantity) {
+        // we lose our place and move to the end of the queue
+        book.unlink(level, slot);
+        m_slab.quantity(slot, newQuantity);
+        book.append(level, slot);
+      } else {
+        level.remove(quantity);
+        m_slab.quantity(slot, newQuantity);
+        level.add(newQuantity);
+      }
+      return true;
+    } finally {
+      m_lock.unlockWrite(stamp);
+    }
+  }
+
+  public boolean deleteOrder(String orderId) {
+    validateArg(orderId, "orderid cannot be null");
+
+    long stamp = m_lock.writeLock();
+    try {
+      long slot = m_index.get(orderId);
+      if (slot == OrderSlab.NONE) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      bookOf(slot).remove(slot);
+      m_index.remove(slot);
+      m_slab.free(slot);
+      return true;
+    } finally {
+      m_lock.unlockWrite(stamp);
+    }
+  }
+
+  public Optional<Long> getBestPrice(String instrument, Side side) {
+    validateArg(side, "side cannot be null");
+    validateArg(instrument, "instrument cannot be null");
+    long stamp = m_lock.tryOptimisticRead();
+    long bestPrice = peekBestPrice(instrument, side);
+    if (!m_lock.validate(stamp)) {
+      stamp = m_lock.readLock();
+      try {
+        bestPrice = peekBestPrice(instrument, side);
+      } finally {
+        m_lock.unlockRead(stamp);
+      }
+    }
+    return bestPrice == 0 ? Optional.empty() : Optional.of(bestPrice);
+  }
+
+  public long getOrderNumAtLevel(String instrument, Side side, long price) {
+    return readLevel(instrument, side, price, LevelStat.ORDERS);
+  }
+
+  public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+    return readLevel(instrument, side, price, LevelStat.QUANTITY);
+  }
+
+  public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+    return readLevel(instrument, side, price, LevelStat.VOLUME);
+  }
+
+  /*
+   * walks the level's queue under the read lock, building each order from
+   * its record through one flyweight
+   */
+  public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+    validateArg(side, "side cannot be null");
+    validateArg(instrument, "instrument cannot be null");
+    checkArgument(price > 0, "priceLevel must be positive");
+
+    long stamp = m_lock.readLock();
+    try {
+      Book book = getBook(instrument, side);
+      Level level = book == null ? null : book.levels.get(price);
+      if (level == null) {
+        return Collections.emptyList();
+      }
+      List<Order> orders = new ArrayList<Order>(level.orders);
+      OrderView view = new OrderView();
+      for (long slot = level.head; slot != OrderSlab.NONE; slot = m_slab.next(slot)) {
+        orders.add(view.wrap(slot).toOrder());
+      }
+      return orders;
+    } finally {
+      m_lock.unlockRead(stamp);
+    }
+  }
+
+  /*
+   * the same walk without the list, an order is only built for the visitor
+   */
+  @Override
+  public int forEachOrderAtLevel(String instrument, Side side, long price, OrderVisitor visitor) {
+    validateArg(side, "side cannot be null");
+    validateArg(instrument, "instrument cannot be null");
+    validateArg(visitor, "visitor cannot be null");
+    checkArgument(price > 0, "priceLevel must be positive");
+
+    long stamp = m_lock.readLock();
+    try {
+      Book book = getBook(instrument, side);
+      Level level = book == null ? null : book.levels.get(price);
+      if (level == null) {
+        return 0;
+      }
+      OrderView view = new OrderView();
+      int visited = 0;
+      for (long slot = level.head; slot != OrderSlab.NONE; slot = m_slab.next(slot)) {
+        visited++;
+        if (!visitor.visit(view.wrap(slot).toOrder())) {
+          break;
+        }
+      }
+      return visited;
+    } finally {
+      m_lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * @return bytes allocated off the heap for orders and the id index
+   */
+  public long offHeapBytes() {
+    long stamp = m_lock.readLock();
+    try {
+      return m_slab.allocatedBytes() + m_index.allocatedBytes();
+    } finally {
+      m_lock.unlockRead(stamp);
+    }
+  }
+
+  /*
+   * private methods
+   */
+
+  private long peekBestPrice(String instrument, Side side) {
+    Book book = getBook(instrument, side);
+    return book == null ? 0 : book.levels.peekBestPrice();
+  }
+
+  /*
+   * the level's running totals are on the heap, read them optimistically and
+   * again under the read lock if a writer got in
+   */
+  private long readLevel(String instrument, Side side, long price, LevelStat stat) {
+    validateArg(side, "side cannot be null");
+    validateArg(instrument, "instrument cannot be null");
+    checkArgument(price > 0, "priceLevel must be positive");
+    long stamp = m_lock.tryOptimisticRead();
+    long value = statAtLevel(instrument, side, price, stat);
+    if (!m_lock.validate(stamp)) {
+      stamp = m_lock.readLock();
+      try {
+        value = statAtLevel(instrument, side, price, stat);
+      } finally {
+        m_lock.unlockRead(stamp);
+      }
+    }
+    return value;
+  }
+
+  private long statAtLevel(String instrument, Side side, long price, LevelStat stat) {
+    Book book = getBook(instrument, side);
+    Level level = book == null ? null : book.levels.get(price);
+    if (level == null) {
+      return 0;
+    }
+    switch (stat) {
+    case ORDERS:
+      return level.orders;
+    case QUANTITY:
+      return level.totalQuantity;
+    default:
+      return level.totalVolume;
+    }
+  }
+
+  /*
+   * null if the book has never had an order
+   */
+  private Book getBook(String instrument, Side side) {
+    int instrumentId = m_instruments.idOf(instrument);
+    Book[] books = m_booksBySide[side.ordinal()];
+    return instrumentId == -1 || instrumentId >= books.length ? null : books[instrumentId];
+  }
+
+  private Book bookOf(long slot) {
+    return m_booksBySide[m_slab.side(slot).ordinal()][m_slab.instrumentId(slot)];
+  }
+
+  /*
+   * only call holding the write lock
+   */
+  private int registerInstrument(String instrument) {
+    int instrumentId = m_instruments.register(instrument);
+    String[] names = m_instrumentNames;
+    if (instrumentId >= names.length) {
+      names = Arrays.copyOf(names, Math.max(names.length * 2, instrumentId + 1));
+    }
+    names[instrumentId] = instrument;
+    m_instrumentNames = names;
+    return instrumentId;
+  }
+
+  /*
+   * only call holding the write lock
+   */
+  private Book getOrCreateBook(int instrumentId, Side side) {
+    Book[] books = m_booksBySide[side.ordinal()];
+    if (instrumentId >= books.length) {
+      Book[][] grown = m_booksBySide.clone();
+      books = Arrays.copyOf(books, Math.max(books.length * 2, instrumentId + 1));
+      grown[side.ordinal()] = books;
+      m_booksBySide = grown;
+    }
+    if (books[instrumentId] == null) {
+      books[instrumentId] = new Book(side);
+    }
+    return books[instrumentId];
+  }
+
+  private enum LevelStat {
+    ORDERS, QUANTITY, VOLUME
+  }
+
+  /*
+   * the levels of one side of one instrument, only touched holding the write
+   * lock or reading optimistically
+   */
+  private class Book {
+    private final Levels<Level> levels;
+
+    Book(Side side) {
+      this.levels = new PriceLevels<Level>(side);
+    }
+
+    /*
+     * queue the order at the back of its level
+     */
+    void rest(long slot) {
+      long price = m_slab.price(slot);
+      Level level = levels.get(price);
+      if (level == null) {
+        level = new Level(price);
+        levels.put(price, level);
+      }
+      append(level, slot);
+    }
+
+    void remove(long slot) {
+      long price = m_slab.price(slot);
+      Level level = levels.get(price);
+      unlink(level, slot);
+      if (level.orders == 0) {
+        levels.remove(price);
+      }
+    }
+
+    void append(Level level, long slot) {
+      m_slab.prev(slot, level.tail);
+      m_slab.next(slot, OrderSlab.NONE);
+      if (level.tail == OrderSlab.NONE) {
+        level.head = slot;
+      } else {
+        m_slab.next(level.tail, slot);
+      }
+      level.tail = slot;
+      level.add(m_slab.quantity(slot));
+    }
+
+    void unlink(Level level, long slot) {
+      long prev = m_slab.prev(slot);
+      long next = m_slab.next(slot);
+      if (prev == OrderSlab.NONE) {
+        level.head = next;
+      } else {
+        m_slab.next(prev, next);
+      }
+      if (next == OrderSlab.NONE) {
+        level.tail = prev;
+      } else {
+        m_slab.prev(next, prev);
+      }
+      level.remove(m_slab.quantity(slot));
+    }
+  }
+
+  /*
+   * one price level, its queue is linked through the slab by slot
+   */
+  private static class Level {
+    private final long price;
+    long head = OrderSlab.NONE;
+    long tail = OrderSlab.NONE;
+    int orders;
+    long totalQuantity;
+    long totalVolume;
+
+    Level(long price) {
+      this.price = price;
+    }
+
+    void add(long quantity) {
+      orders++;
+      totalQuantity += quantity;
+      totalVolume += quantity * price;
+    }
+
+    void remove(long quantity) {
+      orders--;
+      totalQuantity -= quantity;
+      totalVolume -= quantity * price;
+    }
+  }
+
+  /**
+   * a flyweight over one order's record, wrap it on a slot to read it without
+   * building an Order. Only valid while the lock it was read under is held
+   */
+  class OrderView {
+    private long slot;
+
+    OrderView wrap(long slot) {
+      this.slot = slot;
+      return this;
+    }
+
+    long getPrice() {
+      return m_slab.price(slot);
+    }
+
+    long getQuantity() {
+      return m_slab.quantity(slot);
+    }
+
+    Side getSide() {
+      return m_slab.side(slot);
+    }
+
+    String getInstrument() {
+      return m_instrumentNames[m_slab.instrumentId(slot)];
+    }
+
+    String getOrderId() {
+      return m_slab.orderId(slot);
+    }
+
+    Order toOrder() {
+      return Order.of(getOrderId(), getInstrument(), getSide(), getPrice(), getQuantity());
+    }
+  }
+}
@@ -5,35 +5,56 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 /*
  * order is an immutable class, use the Builder to create modified instances
+ *
+ * the id is either a String or, for upstreams that number their orders, a
+ * long. A long id is known by its decimal string everywhere a String id is
+ * expected
  */
 public class Order {
 
-  /** unique identifier for the order */
-  private String orderId;
+  /** unique identifier for the order, null if it has a long id */
+  private final String orderId;
+
+  /** unique identifier for the order if it has a long id */
+  private final long longOrderId;
+
+  /** true if the id is the long id */
+  private final boolean hasLongOrderId;
+
+  /**
+   * the decimal string of a long id once asked for, not part of the value. A
+   * racing reader at worst makes another equal one
+   */
+  private String decimalOrderId;
 
   /** identifier of an instrument */
-  private String instrument;
+  private final String instrument;
 
   /** either buy or sell */
-  private Side side;
+  private final Side side;
 
   /** limit price for the order, always positive */
-  private long price;
+  private final long price;
 
   /** required quantity, always positive */
-  private long quantity;
-
-  /** Hide the default ctor */
-  private Order() {
-  }
+  private final long quantity;
 
   /**
-   * Copying ctor
+   * Copying ctor, all fields are final so a copy is safely published to any
+   * thread
    *
-   * @param order an order to make copy from
+   * @param order    an order to make copy from
+   * @param quantity the copy's quantity
    */
-  private Order(Order order) {
-    this(order.orderId, order.instrument, order.side, order.price, order.quantity);
+  private Order(Order order, long quantity) {
+    this.orderId = order.orderId;
+    this.longOrderId = order.longOrderId;
+    this.hasLongOrderId = order.hasLongOrderId;
+    this.decimalOrderId = order.decimalOrderId;
+    this.instrument = order.instrument;
+    this.side = order.side;
+    this.price = order.price;
+    this.quantity = quantity;
   }
 
   /**
@@ -47,6 +68,22 @@ public class Order {
    */
   private Order(String orderId, String instrument, Side side, long price, long quantity) {
     this.orderId = orderId;
+    this.longOrderId = 0;
+    this.hasLongOrderId = false;
+    this.instrument = instrument;
+    this.side = side;
+    this.price = price;
+    this.quantity = quantity;
+    validate();
+  }
+
+  /**
+   * @param orderId unique identifier for the order, any long
+   */
+  private Order(long orderId, String instrument, Side side, long price, long quantity) {
+    this.orderId = null;
+    this.longOrderId = orderId;
+    this.hasLongOrderId = true;
     this.instrument = instrument;
     this.side = side;
     this.price = price;
@@ -54,8 +91,58 @@ public class Order {
     validate();
   }
 
+  /**
+   * an order from already validated parts, for a book rebuilding orders from
+   * its own records without a Builder per order
+   */
+  static Order of(String orderId, String instrument, Side side, long price, long quantity) {
+    return new Order(orderId, instrument, side, price, quantity);
+  }
+
+  /**
+   * @return the id, the decimal string of a long id. That is made once, on
+   *         first use
+   */
   public String getOrderId() {
-    return orderId;
+    if (!hasLongOrderId) {
+      return orderId;
+    }
+    String decimal = decimalOrderId;
+    if (decimal == null) {
+      decimal = Long.toString(longOrderId);
+      decimalOrderId = decimal;
+    }
+    return decimal;
+  }
+
+  public boolean hasLongOrderId() {
+    return hasLongOrderId;
+  }
+
+  /**
+   * @return the long id, or a String id parsed as a decimal long
+   * @throws IllegalArgumentException if the String id isn't one
+   */
+  public long getLongOrderId() {
+    return hasLongOrderId ? longOrderId : parseOrderId(orderId);
+  }
+
+  /**
+   * @param orderId a String id
+   * @return the long id it is the decimal string of
+   * @throws IllegalArgumentException if it isn't the decimal string of a long
+   */
+  static long parseOrderId(String orderId) {
+    try {
+      long parsed = Long.parseLong(orderId);
+      // "007" would otherwise be the same order as "7"
+      if (Long.toString(parsed).equals(orderId)) {
+        return parsed;
+      }
+    } catch (NumberFormatException e) {
+      // rejected below
+    }
+    throw new IllegalArgumentException(orderId + " is not a long order id");
   }
 
   public String getInstrument() {
@@ -74,8 +161,16 @@ public class Order {
     return quantity;
   }
 
-  String getOrderBookKey() {
-    return sideInstrumentKey(this.instrument, this.side);
+  /**
+   * a copy with a new quantity, everything else has already been validated so
+   * only the quantity is checked
+   *
+   * @param quantity required quantity, always positive
+   * @return a new order
+   */
+  Order withQuantity(long quantity) {
+    checkArgument(quantity > 0, "quantity must be positive");
+    return new Order(this, quantity);
   }
 
   @Override
@@ -91,6 +186,8 @@ public class Order {
       return false;
     if (quantity != order.quantity)
       return false;
+    if (hasLongOrderId != order.hasLongOrderId || longOrderId != order.longOrderId)
+      return false;
     if (orderId != null ? !orderId.equals(order.orderId) : order.orderId != null)
       return false;
     if (instrument != null ? !instrument.equals(order.instrument) : order.instrument != null)
@@ -100,7 +197,7 @@ public class Order {
 
   @Override
   public int hashCode() {
-    int result = orderId != null ? orderId.hashCode() : 0;
+    int result = orderId != null ? orderId.hashCode() : Long.hashCode(longOrderId);
     result = 31 * result + (instrument != null ? instrument.hashCode() : 0);
     result = 31 * result + (side != null ? side.hashCode() : 0);
     result = 31 * result + (int) (price ^ (price >>> 32));
@@ -110,7 +207,7 @@ public class Order {
 
   @Override
   public String toString() {
-    return "Order{" + "orderId='" + orderId + '\'' + ", instrument='" + instrument + '\'' + ", side=" + side
+    return "Order{" + "orderId='" + getOrderId() + '\'' + ", instrument='" + instrument + '\'' + ", side=" + side
         + ", price=" + price + ", quantity=" + quantity + '}';
   }
 
@@ -118,48 +215,65 @@ public class Order {
     checkArgument(price > 0, "price must be positive");
     checkArgument(quantity > 0, "quantity must be positive");
     validateArg(instrument, "instrument cannot be null");
-    validateArg(orderId, "orderId cannot be null");
+    if (!hasLongOrderId) {
+      validateArg(orderId, "orderId cannot be null");
+    }
     validateArg(side, "side cannot be null");
-    // check for special chars
-    checkArgument(instrument.indexOf("::") == -1, "instrument name cannot contain '::'");
     return this;
   }
 
-  static String sideInstrumentKey(String instrument, Side side) {
-    return instrument + "::" + side.toString();
-  }
-
   static class Builder {
-    private Order order = new Order();
+    private String orderId;
+    private long longOrderId;
+    private boolean hasLongOrderId;
+    private String instrument;
+    private Side side;
+    private long price;
+    private long quantity;
 
     public Builder clone(Order order) {
       validateArg(order, "cannot clone null");
-      this.order = new Order(order);
+      this.orderId = order.orderId;
+      this.longOrderId = order.longOrderId;
+      this.hasLongOrderId = order.hasLongOrderId;
+      this.instrument = order.instrument;
+      this.side = order.side;
+      this.price = order.price;
+      this.quantity = order.quantity;
       return this;
     }
 
     public Builder setOrderId(String orderId) {
-      this.order.orderId = orderId;
+      this.orderId = orderId;
+      this.longOrderId = 0;
+      this.hasLongOrderId = false;
+      return this;
+    }
+
+    public Builder setOrderId(long orderId) {
+      this.orderId = null;
+      this.longOrderId = orderId;
+      this.hasLongOrderId = true;
       return this;
     }
 
     public Builder setInstrument(String instrument) {
-      this.order.instrument = instrument;
+      this.instrument = instrument;
       return this;
     }
 
     public Builder setSide(Side side) {
-      this.order.side = side;
+      this.side = side;
       return this;
     }
 
     public Builder setPrice(long price) {
-      this.order.price = price;
+      this.price = price;
       return this;
     }
 
     public Builder setQuantity(long quantity) {
-      this.order.quantity = quantity;
+      this.quantity = quantity;
       return this;
     }
 
@@ -167,9 +281,16 @@ public class Order {
       return new Order(orderId, instrument, side, price, quantity);
     }
 
+    public Order build(long orderId, String instrument, Side side, long price, long quantity) {
+      return new Order(orderId, instrument, side, price, quantity);
+    }
+
     public Order get() {
-      // clone to prevent the builder affecting the order
-      return new Order(order);
+      // a new order each time so the builder never affects one it made
+      if (hasLongOrderId) {
+        return new Order(longOrderId, instrument, side, price, quantity);
+      }
+      return new Order(orderId, instrument, side, price, quantity);
     }
   }
 }
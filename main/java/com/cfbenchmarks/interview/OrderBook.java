@@ -3,204 +3,999 @@ package com.cfbenchmarks.interview;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
 
 class OrderBook {
 
+  /** most emptied levels kept for reuse **/
+  static final int LEVEL_POOL_SIZE = 64;
+  /** most removed orders kept for reuse **/
+  static final int ORDER_POOL_SIZE = 256;
+  /** what a modify or delete did, MOVED if the id is now another book's order **/
+  static final int UNCHANGED = 0;
+  static final int CHANGED = 1;
+  static final int MOVED = 2;
+
   /** which side are we, sell or buy **/
   private Side side;
-  /** group our orders by level( order price ) **/
-  private Map<Long, Orders> ordersByLevel = Collections.synchronizedMap(new HashMap<Long, Orders>());
-  /** a reference to the master map by id also used as a MUTEX **/
-  private Map<String, Order> ordersById;
-  private long minPrice = Long.MAX_VALUE;
-  private long maxPrice = 0;
-
-  OrderBook(Side side, Map<String, Order> ordersById) {
+  /** group our orders by level( order price ), best price first **/
+  private Levels<Orders> ordersByLevel;
+  /**
+   * this book's lock, books for other instruments / sides never contend.
+   * Writers take the write lock, the O(1) queries read optimistically so
+   * readers don't hold up the writer. Null when a single writer thread owns
+   * the book, it then needs no locking at all
+   **/
+  private final StampedLock lock;
+  /**
+   * a reference to the master map by id, shared by all books. Concurrent unless
+   * a single writer owns every book. Null if orders are indexed by long id
+   **/
+  private Map<String, RestingOrder> ordersById;
+  /** the master index by long id instead, null unless orders have long ids **/
+  private LongOrderIndex ordersByLongId;
+  /** where level changes go, null if nobody is listening **/
+  private LevelDeltaPublisher levelDeltas;
+  /** where accepted changes are journaled, null if they aren't **/
+  private Journal journal;
+  /** where lock waits are recorded, null if they aren't **/
+  private Metrics metrics;
+  /** our instrument, only needed to publish level changes **/
+  private String instrument;
+  /** resting orders over all our levels **/
+  private int orderCount;
+  /**
+   * the snapshot as changed by the current writer, null unless snapshots are
+   * published. Only touched holding the write lock
+   **/
+  private BookSnapshot working;
+  /** the last published snapshot, readers take it with no lock at all **/
+  private volatile BookSnapshot snapshot;
+  /** the next RestingOrder.sequence **/
+  private long nextSequence;
+  /**
+   * emptied levels and removed orders kept for reuse, so levels flickering
+   * in and out near the touch make no garbage. Owned by the book, only
+   * touched holding its write lock
+   **/
+  private final Orders[] freeLevels = new Orders[LEVEL_POOL_SIZE];
+  private int freeLevelCount;
+  private final RestingOrder[] freeOrders = new RestingOrder[ORDER_POOL_SIZE];
+  private int freeOrderCount;
+
+  OrderBook(Side side, ConcurrentMap<String, RestingOrder> ordersById) {
+    this(side, ordersById, false);
+  }
+
+  /**
+   * @param side         which side are we, sell or buy
+   * @param ordersById   the master map by id
+   * @param singleWriter true if only one thread will ever touch this book
+   */
+  OrderBook(Side side, Map<String, RestingOrder> ordersById, boolean singleWriter) {
+    this(side, requireNonNull(ordersById), singleWriter, new PriceLevels<Orders>(side));
+  }
+
+  /**
+   * a book whose levels in a band of ticks around the touch are held in an
+   * array, see TickLadder
+   *
+   * @param tickSize   prices that are a multiple of this can go in the band
+   * @param bandLevels number of ticks in the band
+   */
+  OrderBook(Side side, Map<String, RestingOrder> ordersById, boolean singleWriter, long tickSize, int bandLevels) {
+    this(side, requireNonNull(ordersById), singleWriter, new TickLadder<Orders>(side, tickSize, bandLevels));
+  }
+
+  /**
+   * a book whose orders are indexed by long id, every order's id must be a
+   * long, see Order.getLongOrderId
+   *
+   * @param ordersByLongId the master index by long id, shared by all books
+   */
+  OrderBook(Side side, LongOrderIndex ordersByLongId, boolean singleWriter) {
+    this(side, (Map<String, RestingOrder>) null, singleWriter, new PriceLevels<Orders>(side));
+    this.ordersByLongId = requireNonNull(ordersByLongId);
+  }
+
+  OrderBook(Side side, LongOrderIndex ordersByLongId, boolean singleWriter, long tickSize, int bandLevels) {
+    this(side, (Map<String, RestingOrder>) null, singleWriter, new TickLadder<Orders>(side, tickSize, bandLevels));
+    this.ordersByLongId = requireNonNull(ordersByLongId);
+  }
+
+  private OrderBook(Side side, Map<String, RestingOrder> ordersById, boolean singleWriter,
+      Levels<Orders> ordersByLevel) {
     requireNonNull(side);
-    requireNonNull(ordersById);
     this.ordersById = ordersById;
     this.side = side;
+    this.ordersByLevel = ordersByLevel;
+    this.lock = singleWriter ? null : new StampedLock();
+  }
+
+  /**
+   * call before the book is shared
+   *
+   * @param levelDeltas null, or where every level change is published
+   * @param journal     null, or where every accepted change is journaled
+   * @param metrics     null, or where waits for our lock are recorded
+   * @param snapshots   true to publish a BookSnapshot after every change
+   */
+  void attach(String instrument, LevelDeltaPublisher levelDeltas, Journal journal, Metrics metrics,
+      boolean snapshots) {
+    this.instrument = requireNonNull(instrument);
+    this.levelDeltas = levelDeltas;
+    this.journal = journal;
+    this.metrics = metrics;
+    if (snapshots) {
+      working = BookSnapshot.empty(instrument, side);
+      snapshot = working;
+    }
+  }
+
+  /**
+   * @return the book as of the last write lock released, null unless
+   *         snapshots are published
+   */
+  BookSnapshot snapshot() {
+    return snapshot;
   }
 
   void add(Order order) {
     requireNonNull(order);
-    checkArgument(order.getSide() == side, "incorrect side " + order.getSide());
+    checkArgument(order.getSide() == side, "incorrect side %s", order.getSide());
 
-    synchronized (ordersById) {
-      checkArgument(!ordersById.containsKey(order.getOrderId()), order.getOrderId() + " already exists");
+    long stamp = writeLock();
+    try {
+      addLocked(order);
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
 
-      Orders orders = ordersByLevel.get(order.getPrice());
+  /*
+   * only call holding the write lock
+   */
+  private void addLocked(Order order) {
+    checkJournal();
+    RestingOrder resting = newResting(order);
+    // claim the id across all books, we hold our lock so a delete can't see
+    // it before it is queued
+    if (!index(resting)) {
+      recycle(resting);
+      throw new IllegalArgumentException(order.getOrderId() + " already exists");
+    }
+    rest(resting);
+    if (journal != null) {
+      journal.add(order);
+    }
+  }
 
-      if (orders == null) {
-        ordersByLevel.put(order.getPrice(), new Orders(order));
-      } else {
-        orders.add(order);
+  /**
+   * apply a run of batch commands under one write lock, every pending command
+   * from the first on whose book is this one, in batch order
+   *
+   * @param commands the batch
+   * @param first    index of the first command for this book
+   * @param count    number of commands in the batch
+   * @param results  outcomes and the book each command was resolved to
+   */
+  void applyBatch(OrderCommand[] commands, int first, int count, BatchResults results) {
+    long stamp = writeLock();
+    try {
+      for (int i = first; i < count; i++) {
+        if (results.books[i] != this || !results.isPending(i)) {
+          continue;
+        }
+        try {
+          applyLocked(commands[i], i, results);
+        } catch (RuntimeException e) {
+          results.rejected(i, e);
+        }
       }
-      ordersById.put(order.getOrderId(), order);
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
+
+  private void applyLocked(OrderCommand command, int index, BatchResults results) {
+    if (command.type == OrderCommand.Type.ADD) {
+      checkArgument(command.order.getSide() == side, "incorrect side %s", command.order.getSide());
+      addLocked(command.order);
+      results.applied(index);
+      return;
+    }
 
-      minPrice = Math.min(minPrice, order.getPrice());
-      maxPrice = Math.max(maxPrice, order.getPrice());
+    // checked against the by id map as it is modified or deleted
+    RestingOrder resting = results.resting[index];
+    int result;
+    if (ordersByLongId != null) {
+      long orderId = Order.parseOrderId(command.orderId);
+      result = command.type == OrderCommand.Type.DELETE ? deleteLocked(orderId, resting)
+          : modifyLocked(orderId, command.quantity);
+    } else {
+      result = command.type == OrderCommand.Type.DELETE ? deleteLocked(command.orderId, resting)
+          : modifyLocked(command.orderId, command.quantity);
     }
+    if (result == CHANGED) {
+      results.applied(index);
+    } else if (result == UNCHANGED) {
+      results.unchanged(index);
+    }
+    // MOVED stays pending, the batch resolves it to its new book
   }
 
-  Optional<Long> getBestPrice() {
-    if (ordersByLevel.isEmpty()) {
-      return Optional.empty();
+  /**
+   * add an order, first filling it against the opposite book in price-time
+   * priority, only what is left of it rests here. Both books are write locked,
+   * buy first, so two matching adds can never deadlock
+   *
+   * @param order    the incoming order, on our side
+   * @param opposite the other side of the same instrument
+   * @param listener told of every fill, under both locks
+   */
+  void addMatching(Order order, OrderBook opposite, FillListener listener) {
+    requireNonNull(order);
+    requireNonNull(opposite);
+    requireNonNull(listener);
+    checkArgument(order.getSide() == side, "incorrect side %s", order.getSide());
+    checkArgument(opposite.side != side, "opposite book on the same side %s", side);
+
+    OrderBook buy = side == Side.BUY ? this : opposite;
+    OrderBook sell = side == Side.BUY ? opposite : this;
+    long buyStamp = buy.writeLock();
+    try {
+      long sellStamp = sell.writeLock();
+      try {
+        checkJournal();
+        // claim the id before any fill so a duplicate never trades
+        RestingOrder aggressor = newResting(order);
+        if (!index(aggressor)) {
+          recycle(aggressor);
+          throw new IllegalArgumentException(order.getOrderId() + " already exists");
+        }
+        if (journal != null) {
+          // fills are not journaled, replaying the adds in order repeats them
+          journal.add(order);
+        }
+        opposite.fill(aggressor, listener);
+        if (aggressor.quantity == 0) {
+          unindex(aggressor);
+          recycle(aggressor);
+        } else {
+          rest(aggressor);
+        }
+      } finally {
+        sell.unlockWrite(sellStamp);
+      }
+    } finally {
+      buy.unlockWrite(buyStamp);
     }
-    if (side == Side.SELL) {
-      return Optional.of(minPrice);
+  }
+
+  /*
+   * only call holding the write lock, queue the order at the back of its level
+   */
+  private void rest(RestingOrder resting) {
+    long price = resting.order.getPrice();
+    Orders orders = ordersByLevel.get(price);
+
+    if (orders == null) {
+      orders = newLevel(resting);
+      ordersByLevel.put(price, orders);
     } else {
-      return Optional.of(maxPrice);
+      orders.add(resting);
+    }
+    levelChanged(price, orders);
+    snapshotAdded(resting);
+  }
+
+  /*
+   * only call holding the write lock, so each book's changes are published in
+   * order
+   */
+  private void levelChanged(long price, Orders orders) {
+    if (levelDeltas != null) {
+      levelDeltas.publish(instrument, side, price, orders.stats.totalQuantity, orders.size);
+    }
+  }
+
+  /*
+   * only call holding the write lock. Trade the aggressor against our best
+   * levels, oldest order first, until it is filled or no longer crosses.
+   * Allocation free, filled orders are unlinked and partly filled ones reduced
+   * in place
+   */
+  private void fill(RestingOrder aggressor, FillListener listener) {
+    Order incoming = aggressor.order;
+    while (aggressor.quantity > 0) {
+      long price = ordersByLevel.peekBestPrice();
+      if (price == 0 || (side == Side.SELL ? price > incoming.getPrice() : price < incoming.getPrice())) {
+        return;
+      }
+      Orders orders = ordersByLevel.best();
+      RestingOrder resting = orders.head;
+      long quantity = Math.min(aggressor.quantity, resting.quantity);
+
+      aggressor.quantity -= quantity;
+      boolean filled = quantity == resting.quantity;
+      if (filled) {
+        unindex(resting);
+        orders.remove(resting);
+        if (orders.size == 0) {
+          ordersByLevel.remove(price);
+        }
+      } else {
+        orders.stats.remove(resting);
+        resting.quantity -= quantity;
+        orders.stats.add(resting);
+      }
+      levelChanged(price, orders);
+      if (filled) {
+        snapshotRemoved(resting);
+      } else {
+        snapshotChanged(resting);
+      }
+      if (ordersByLongId != null) {
+        listener.onFill(incoming.getInstrument(), incoming.getSide(), incoming.getLongOrderId(), resting.order
+            .getLongOrderId(), price, quantity);
+      } else {
+        listener.onFill(incoming.getInstrument(), incoming.getSide(), incoming.getOrderId(), resting.order
+            .getOrderId(), price, quantity);
+      }
+      if (filled) {
+        recycle(resting);
+        if (orders.size == 0) {
+          recycle(orders);
+        }
+      }
+    }
+  }
+
+  /*
+   * the levels are kept best first so this is O(1)
+   */
+  Optional<Long> getBestPrice() {
+    long stamp = tryOptimisticRead();
+    long bestPrice = ordersByLevel.peekBestPrice();
+    if (!validate(stamp)) {
+      stamp = readLock();
+      try {
+        bestPrice = ordersByLevel.peekBestPrice();
+      } finally {
+        unlockRead(stamp);
+      }
     }
+    return bestPrice == 0 ? Optional.empty() : Optional.of(bestPrice);
   }
 
   long getOrderNumAtLevel(long priceLevel) {
     checkArgument(priceLevel > 0, "priceLevel must be positive");
-    Orders orders = ordersByLevel.get(priceLevel);
-    return orders == null ? 0 : orders.orders.size();
+    return readLevel(priceLevel, LevelStat.ORDERS);
   }
 
   long getTotalQuantityAtLevel(long priceLevel) {
     checkArgument(priceLevel > 0, "priceLevel must be positive");
-    Orders orders = ordersByLevel.get(priceLevel);
-    return orders == null ? 0 : orders.stats.totalQuantity;
+    return readLevel(priceLevel, LevelStat.QUANTITY);
   }
 
   long getTotalVolumeAtpriceLevel(long priceLevel) {
     checkArgument(priceLevel > 0, "priceLevel must be positive");
-    Orders orders = ordersByLevel.get(priceLevel);
-    return orders == null ? 0 : orders.stats.totalVolume;
+    return readLevel(priceLevel, LevelStat.VOLUME);
   }
 
+  /*
+   * a copy of the queue in FIFO order, the queue itself is intrusive. Walking
+   * the queue is O(n) so we take the read lock rather than retry
+   */
   List<Order> getOrdersAtLevel(long priceLevel) {
     checkArgument(priceLevel > 0, "priceLevel must be positive");
+    long stamp = readLock();
+    try {
+      Orders orders = ordersByLevel.get(priceLevel);
+      if (orders == null) {
+        return Collections.emptyList();
+      }
+      return Collections.unmodifiableList(orders.toList());
+    } finally {
+      unlockRead(stamp);
+    }
+  }
+
+  /*
+   * the queue in FIFO order without copying it, under the read lock so the
+   * visitor never sees a writer's change half made. O(orders visited)
+   */
+  int forEachOrderAtLevel(long priceLevel, OrderVisitor visitor) {
+    checkArgument(priceLevel > 0, "priceLevel must be positive");
+    long stamp = readLock();
+    try {
+      Orders orders = ordersByLevel.get(priceLevel);
+      int visited = 0;
+      for (RestingOrder resting = orders == null ? null : orders.head; resting != null; resting = resting.next) {
+        visited++;
+        if (!visitor.visit(resting.toOrder())) {
+          break;
+        }
+      }
+      return visited;
+    } finally {
+      unlockRead(stamp);
+    }
+  }
+
+  /*
+   * the oldest n orders of a level from one consistent read, optimistic first
+   * as for the depth. O(n)
+   */
+  int getOrdersAtLevel(long priceLevel, int n, OrderCursor cursor) {
+    checkArgument(priceLevel > 0, "priceLevel must be positive");
+    checkArgument(n > 0 && n <= cursor.capacity(), "n must be between 1 and the cursor capacity");
+    long stamp = tryOptimisticRead();
+    readOrders(priceLevel, n, cursor);
+    if (!validate(stamp)) {
+      stamp = readLock();
+      try {
+        readOrders(priceLevel, n, cursor);
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+    return cursor.size();
+  }
+
+  private void readOrders(long priceLevel, int n, OrderCursor cursor) {
+    cursor.clear();
+    Orders orders = ordersByLevel.get(priceLevel);
+    // racing a writer we may walk into an order that has been unlinked or
+    // recycled, n bounds the walk and the read is then retried. Order is
+    // immutable so whichever one we read is whole
+    for (RestingOrder resting = orders == null ? null : orders.head; resting != null
+        && cursor.size() < n; resting = resting.next) {
+      Order order = resting.order;
+      if (order == null) {
+        return;
+      }
+      cursor.add(order, resting.quantity);
+    }
+  }
+
+  /*
+   * the best n levels from one consistent read, optimistic first as for the
+   * single level stats. O(n)
+   */
+  int getDepth(int n, DepthBuffer depth) {
+    checkArgument(n > 0 && n <= depth.capacity(), "n must be between 1 and the buffer capacity");
+    long stamp = tryOptimisticRead();
+    readDepth(n, depth);
+    if (!validate(stamp)) {
+      stamp = readLock();
+      try {
+        readDepth(n, depth);
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+    return depth.levels();
+  }
+
+  private void readDepth(int n, DepthBuffer depth) {
+    depth.clear();
+    ordersByLevel.forBest(n, depth, (buffer, price, orders) -> {
+      // null only if we raced a writer, the read is then retried
+      if (orders != null) {
+        buffer.add(price, orders.size, orders.stats.totalQuantity, orders.stats.totalVolume);
+      }
+    });
+  }
+
+  /*
+   * optimistic read of one level statistic, if a writer got in while we were
+   * reading the value may be torn so read it again under the read lock
+   */
+  private long readLevel(long priceLevel, LevelStat stat) {
+    long stamp = tryOptimisticRead();
+    long value = statAtLevel(priceLevel, stat);
+    if (!validate(stamp)) {
+      stamp = readLock();
+      try {
+        value = statAtLevel(priceLevel, stat);
+      } finally {
+        unlockRead(stamp);
+      }
+    }
+    return value;
+  }
+
+  private long statAtLevel(long priceLevel, LevelStat stat) {
     Orders orders = ordersByLevel.get(priceLevel);
     if (orders == null) {
-      return Collections.emptyList();
+      return 0;
+    }
+    switch (stat) {
+    case ORDERS:
+      return orders.size;
+    case QUANTITY:
+      return orders.stats.totalQuantity;
+    default:
+      return orders.stats.totalVolume;
     }
-    return Collections.unmodifiableList(ordersByLevel.get(priceLevel).orders);
   }
 
   /*
-   * only call from synchronized blocks
+   * only call holding the write lock, O(log levels) as the best price is
+   * always the head of ordersByLevel and needs no rescan
    */
-  private void removeAndResetMinMax(Order toDelete) {
+  private void removeFromLevel(RestingOrder toDelete) {
     // take it out
-    Orders orders = ordersByLevel.get(toDelete.getPrice());
+    long price = toDelete.order.getPrice();
+    Orders orders = ordersByLevel.get(price);
     orders.remove(toDelete);
-    if (orders.orders.size() == 0) {
+    if (orders.size == 0) {
       // clean up empty books
-      ordersByLevel.remove(toDelete.getPrice());
+      ordersByLevel.remove(price);
     }
-
-    if (side == Side.SELL) {
-      minPrice = Long.MAX_VALUE;
-    } else {
-      maxPrice = 0;
+    levelChanged(price, orders);
+    snapshotRemoved(toDelete);
+    if (orders.size == 0) {
+      recycle(orders);
     }
-    ordersByLevel.keySet().forEach(key -> {
-      if (side == Side.SELL) {
-        minPrice = Math.min(minPrice, key);
-      } else {
-        maxPrice = Math.max(maxPrice, key);
-      }
-    });
   }
 
-  Order delete(String orderId) {
-    Validation.validateArg(orderId, "orderId cannot be null");
+  /**
+   * @param orderId  the id the order was looked up by
+   * @param toDelete a resting order of this book, as found in the by id map
+   * @return CHANGED once deleted, MOVED if the id is now another book's order
+   * @throws IllegalArgumentException if the id has gone
+   */
+  int delete(String orderId, RestingOrder toDelete) {
+    requireNonNull(toDelete);
+
+    long stamp = writeLock();
+    try {
+      return deleteLocked(orderId, toDelete);
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
 
-    synchronized (ordersById) {
-      Order toDelete = ordersById.remove(orderId);
+  /**
+   * the same by long id, for a book whose orders are indexed by long id
+   */
+  int delete(long orderId, RestingOrder toDelete) {
+    requireNonNull(toDelete);
+
+    long stamp = writeLock();
+    try {
+      return deleteLocked(orderId, toDelete);
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
 
+  private int deleteLocked(String orderId, RestingOrder toDelete) {
+    checkJournal();
+    // only remove the mapping if it is still ours. Since it was looked up the
+    // order may have gone, the id been added again and the RestingOrder been
+    // reused, so check by the id it was looked up by and go by what the index
+    // holds now
+    if (!ordersById.remove(orderId, toDelete)) {
+      toDelete = ordersById.get(orderId);
       if (toDelete == null) {
         throw new IllegalArgumentException(orderId + " does not exist");
       }
+      if (toDelete.book != this) {
+        return MOVED;
+      }
+      // ours, no other book can take it from the index while we hold our lock
+      ordersById.remove(orderId, toDelete);
+    }
+    deleteUnindexed(toDelete);
+    return CHANGED;
+  }
 
-      removeAndResetMinMax(toDelete);
-      return toDelete;
+  private int deleteLocked(long orderId, RestingOrder toDelete) {
+    checkJournal();
+    if (!ordersByLongId.remove(orderId, toDelete)) {
+      toDelete = ordersByLongId.get(orderId);
+      if (toDelete == null) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      if (toDelete.book != this) {
+        return MOVED;
+      }
+      ordersByLongId.remove(orderId, toDelete);
     }
+    deleteUnindexed(toDelete);
+    return CHANGED;
   }
 
-  boolean modify(String orderId, long newQuantity) {
-    synchronized (ordersById) {
-      Order order = ordersById.get(orderId);
-      Order newOrder = new Order.Builder().clone(order).setQuantity(newQuantity).get();
+  private void deleteUnindexed(RestingOrder toDelete) {
+    removeFromLevel(toDelete);
+    if (journal != null) {
+      journal.delete(toDelete.order);
+    }
+    recycle(toDelete);
+  }
 
-      ordersById.put(newOrder.getOrderId(), newOrder);
+  /**
+   * allocation free, only the resting record changes
+   *
+   * @param orderId     the id the order was looked up by
+   * @param resting     a resting order of this book, as found in the by id map
+   * @param newQuantity the new quantity, always positive
+   * @return CHANGED or UNCHANGED, MOVED if the id is now another book's order
+   * @throws IllegalArgumentException if the id has gone
+   */
+  int modify(String orderId, RestingOrder resting, long newQuantity) {
+    requireNonNull(resting);
+
+    long stamp = writeLock();
+    try {
+      return modifyLocked(orderId, newQuantity);
+    } finally {
+      unlockWrite(stamp);
+    }
+  }
 
-      if (newQuantity > order.getQuantity()) {
-        return modifyUp(order, newOrder);
-      } else {
-        return modifyDown(order, newOrder);
-      }
+  /**
+   * the same by long id, for a book whose orders are indexed by long id
+   */
+  int modify(long orderId, RestingOrder resting, long newQuantity) {
+    requireNonNull(resting);
+
+    long stamp = writeLock();
+    try {
+      return modifyLocked(orderId, newQuantity);
+    } finally {
+      unlockWrite(stamp);
     }
   }
 
   /*
-   * in this version, we need to move to the end of the queue O(n) could be
-   * optimized?
+   * as for a delete, the RestingOrder the id was looked up to may have been
+   * reused since, so go by what the index holds now
    */
-  private boolean modifyUp(Order order, Order newOrder) {
+  private int modifyLocked(String orderId, long newQuantity) {
+    checkJournal();
+    RestingOrder current = ordersById.get(orderId);
+    if (current == null) {
+      throw new IllegalArgumentException(orderId + " does not exist");
+    }
+    return modifyCurrent(current, newQuantity);
+  }
+
+  private int modifyLocked(long orderId, long newQuantity) {
+    checkJournal();
+    RestingOrder current = ordersByLongId.get(orderId);
+    if (current == null) {
+      throw new IllegalArgumentException(orderId + " does not exist");
+    }
+    return modifyCurrent(current, newQuantity);
+  }
+
+  private int modifyCurrent(RestingOrder current, long newQuantity) {
+    if (current.book != this) {
+      return MOVED;
+    }
+    return modifyIndexed(current, newQuantity) ? CHANGED : UNCHANGED;
+  }
+
+  private boolean modifyIndexed(RestingOrder resting, long newQuantity) {
+    Order order = resting.order;
+    if (resting.quantity == newQuantity) {
+      return false;
+    }
+
     Orders orders = ordersByLevel.get(order.getPrice());
-    orders.remove(order);
-    orders.add(newOrder);
+    if (newQuantity > resting.quantity) {
+      modifyUp(orders, resting, newQuantity);
+    } else {
+      modifyDown(orders, resting, newQuantity);
+    }
+    if (journal != null) {
+      journal.modify(order, newQuantity);
+    }
     return true;
   }
 
   /*
-   * in this version we replace the order with the new order
+   * a change the journal can't take is refused before it is made, never
+   * reported as failed once it is in the book
    */
-  private boolean modifyDown(Order order, Order newOrder) {
-    Orders orders = ordersByLevel.get(order.getPrice());
-    int index = orders.orders.indexOf(order);
+  private void checkJournal() {
+    if (journal != null) {
+      journal.checkHealthy();
+    }
+  }
+
+  /*
+   * we lose our place and move to the end of the queue, O(1)
+   */
+  private void modifyUp(Orders orders, RestingOrder resting, long newQuantity) {
+    orders.remove(resting);
+    snapshotRemoved(resting);
+    resting.quantity = newQuantity;
+    orders.add(resting);
+    levelChanged(resting.order.getPrice(), orders);
+    snapshotAdded(resting);
+  }
+
+  /*
+   * we keep our place and change the quantity in situ, O(1)
+   */
+  private void modifyDown(Orders orders, RestingOrder resting, long newQuantity) {
+    orders.stats.remove(resting);
+    resting.quantity = newQuantity;
+    orders.stats.add(resting);
+    levelChanged(resting.order.getPrice(), orders);
+    snapshotChanged(resting);
+  }
 
-    if (index != -1) {
-      orders.orders.set(index, newOrder);
-      orders.stats.remove(order);
-      orders.stats.add(newOrder);
-      return true;
+  /**
+   * our size for Metrics, read like the O(1) queries
+   */
+  Metrics.BookStats stats() {
+    long stamp = tryOptimisticRead();
+    int levels = ordersByLevel.size();
+    int orders = orderCount;
+    if (!validate(stamp)) {
+      stamp = readLock();
+      try {
+        levels = ordersByLevel.size();
+        orders = orderCount;
+      } finally {
+        unlockRead(stamp);
+      }
     }
-    return false;
+    return new Metrics.BookStats(instrument, side, levels, orders);
   }
 
+  /**
+   * append every resting order to the copy, best level first and oldest first
+   * within a level. The caller holds our write lock
+   */
+  void copyTo(List<Order> copy) {
+    ordersByLevel.forEach(copy, (orders, price, level) -> {
+      for (RestingOrder resting = level.head; resting != null; resting = resting.next) {
+        orders.add(resting.toOrder());
+      }
+    });
+  }
+
+  /*
+   * the FIFO queue of orders at one price, doubly linked through RestingOrder
+   */
   class Orders {
-    OrdersStats stats = new OrdersStats();
-    LinkedList<Order> orders = new LinkedList<Order>();
+    /**
+     * final, an optimistic reader racing the level's publication must never
+     * see it null
+     **/
+    final OrdersStats stats = new OrdersStats();
+    RestingOrder head;
+    RestingOrder tail;
+    int size;
+
+
+    public void add(RestingOrder resting) {
+      resting.prev = tail;
+      resting.next = null;
+      if (tail == null) {
+        head = resting;
+      } else {
+        tail.next = resting;
+      }
+      tail = resting;
+      size++;
+      orderCount++;
+      stats.add(resting);
+    }
 
-    Orders(Order order) {
-      add(order);
+    public void remove(RestingOrder resting) {
+      if (resting.prev == null) {
+        head = resting.next;
+      } else {
+        resting.prev.next = resting.next;
+      }
+      if (resting.next == null) {
+        tail = resting.prev;
+      } else {
+        resting.next.prev = resting.prev;
+      }
+      resting.prev = null;
+      resting.next = null;
+      size--;
+      orderCount--;
+      stats.remove(resting);
     }
 
-    public void add(Order order) {
-      orders.addLast(order);
-      stats.add(order);
+    List<Order> toList() {
+      List<Order> list = new ArrayList<Order>(size);
+      for (RestingOrder resting = head; resting != null; resting = resting.next) {
+        list.add(resting.toOrder());
+      }
+      return list;
     }
+  }
 
-    public void remove(Order order) {
-      orders.removeIf(o -> o.getOrderId().equals(order.getOrderId()));
-      stats.remove(order);
+  /*
+   * keep the working snapshot in step with the levels, it is published as
+   * the write lock is released. Only call holding the write lock
+   */
+
+  private void snapshotAdded(RestingOrder resting) {
+    if (working != null) {
+      resting.sequence = nextSequence++;
+      working = working.withOrder(resting.order.getPrice(), resting.sequence, resting.refresh());
+    }
+  }
+
+  private void snapshotChanged(RestingOrder resting) {
+    if (working != null) {
+      working = working.withOrder(resting.order.getPrice(), resting.sequence, resting.refresh());
+    }
+  }
+
+  private void snapshotRemoved(RestingOrder resting) {
+    if (working != null) {
+      working = working.withoutOrder(resting.order.getPrice(), resting.sequence);
+    }
+  }
+
+  /*
+   * claim the order's id across all books, false if another order has it.
+   * Only call holding the write lock
+   */
+  private boolean index(RestingOrder resting) {
+    Order order = resting.order;
+    if (ordersByLongId != null) {
+      return ordersByLongId.putIfAbsent(order.getLongOrderId(), resting) == null;
+    }
+    return ordersById.putIfAbsent(order.getOrderId(), resting) == null;
+  }
+
+  private void unindex(RestingOrder resting) {
+    Order order = resting.order;
+    if (ordersByLongId != null) {
+      ordersByLongId.remove(order.getLongOrderId(), resting);
+    } else {
+      ordersById.remove(order.getOrderId(), resting);
+    }
+  }
+
+  /*
+   * pools, only call holding the write lock. A racing optimistic reader may
+   * still be reading a recycled level, it fails validation and reads again
+   */
+
+  private Orders newLevel(RestingOrder first) {
+    Orders orders;
+    if (freeLevelCount == 0) {
+      orders = new Orders();
+    } else {
+      orders = freeLevels[--freeLevelCount];
+      freeLevels[freeLevelCount] = null;
+    }
+    orders.add(first);
+    return orders;
+  }
+
+  /*
+   * an empty level, its totals are back to 0
+   */
+  private void recycle(Orders orders) {
+    if (freeLevelCount < LEVEL_POOL_SIZE) {
+      freeLevels[freeLevelCount++] = orders;
+    }
+  }
+
+  private RestingOrder newResting(Order order) {
+    if (freeOrderCount == 0) {
+      return new RestingOrder(order, this);
     }
+    RestingOrder resting = freeOrders[--freeOrderCount];
+    freeOrders[freeOrderCount] = null;
+    resting.order = order;
+    resting.quantity = order.getQuantity();
+    return resting;
+  }
+
+  /*
+   * an order no longer in the by id map or any level. Another thread may
+   * still hold it from a lookup, see deleteLocked
+   */
+  private void recycle(RestingOrder resting) {
+    if (freeOrderCount < ORDER_POOL_SIZE) {
+      resting.order = null;
+      freeOrders[freeOrderCount++] = resting;
+    }
+  }
+
+  /*
+   * lock helpers, all no-ops for a single writer book. The manager takes
+   * every book's write lock to copy a snapshot. Only an acquire that finds
+   * the lock held is timed
+   */
+
+  long writeLock() {
+    if (lock == null) {
+      return 0;
+    }
+    long stamp = lock.tryWriteLock();
+    if (stamp != 0) {
+      return stamp;
+    }
+    if (metrics == null) {
+      return lock.writeLock();
+    }
+    long start = System.nanoTime();
+    stamp = lock.writeLock();
+    metrics.lockWaited(System.nanoTime() - start);
+    return stamp;
+  }
+
+  void unlockWrite(long stamp) {
+    // publish everything done under the lock at once, a batch as one change
+    if (working != snapshot) {
+      snapshot = working;
+    }
+    if (lock != null) {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private long readLock() {
+    if (lock == null) {
+      return 0;
+    }
+    long stamp = lock.tryReadLock();
+    if (stamp != 0) {
+      return stamp;
+    }
+    if (metrics == null) {
+      return lock.readLock();
+    }
+    long start = System.nanoTime();
+    stamp = lock.readLock();
+    metrics.lockWaited(System.nanoTime() - start);
+    return stamp;
+  }
+
+  private void unlockRead(long stamp) {
+    if (lock != null) {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private long tryOptimisticRead() {
+    return lock == null ? 0 : lock.tryOptimisticRead();
+  }
+
+  private boolean validate(long stamp) {
+    return lock == null || lock.validate(stamp);
+  }
+
+  private enum LevelStat {
+    ORDERS, QUANTITY, VOLUME
   }
 
   class OrdersStats {
     long totalQuantity;
     long totalVolume;
 
-    public void add(Order order) {
-      totalQuantity += order.getQuantity();
-      totalVolume += order.getQuantity() * order.getPrice();
+    public void add(RestingOrder resting) {
+      totalQuantity += resting.quantity;
+      totalVolume += resting.quantity * resting.order.getPrice();
     }
 
-    public void remove(Order order) {
-      totalQuantity -= order.getQuantity();
-      totalVolume -= order.getQuantity() * order.getPrice();
+    public void remove(RestingOrder resting) {
+      totalQuantity -= resting.quantity;
+      totalVolume -= resting.quantity * resting.order.getPrice();
     }
   }
 }
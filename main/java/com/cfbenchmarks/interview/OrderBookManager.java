@@ -1,5 +1,7 @@
 package com.cfbenchmarks.interview;
 
+import static com.cfbenchmarks.interview.Validation.validateArg;
+
 import java.util.List;
 import java.util.Optional;
 
@@ -43,6 +45,29 @@ public interface OrderBookManager {
    */
   boolean deleteOrder(String orderId);
 
+  /**
+   * Modify an existing order by long id, see {@link Order#getLongOrderId()}.
+   * The same as {@link #modifyOrder(String, long)} with the id's decimal
+   * string unless the manager indexes orders by long id
+   *
+   * @param orderId     long identifier of existing order to modify
+   * @param newQuantity new quantity for the order, always positive
+   * @return True if the order was modified, false otherwise
+   */
+  default boolean modifyOrder(long orderId, long newQuantity) {
+    return modifyOrder(Long.toString(orderId), newQuantity);
+  }
+
+  /**
+   * Delete an existing order by long id, throws if no such order exists
+   *
+   * @param orderId long identifier of existing order
+   * @return True if the order was successfully deleted, false otherwise
+   */
+  default boolean deleteOrder(long orderId) {
+    return deleteOrder(Long.toString(orderId));
+  }
+
   /**
    * Get the best price for the instrument and side.
    *
@@ -105,4 +130,31 @@ public interface OrderBookManager {
    *         this side with this price
    */
   List<Order> getOrdersAtLevel(String instrument, Side side, long price);
+
+  /**
+   * Visit the orders for the instrument on given side with given price, in the
+   * same order as {@link #getOrdersAtLevel(String, Side, long)}, stopping as
+   * soon as the visitor returns false
+   *
+   * <p>
+   * The orders are those of one instant. The visitor must not call back into
+   * the manager to change it
+   *
+   * @param instrument identifier of an instrument
+   * @param side       either buy or sell
+   * @param price      requested price level
+   * @param visitor    told of each order in turn
+   * @return the number of orders visited
+   */
+  default int forEachOrderAtLevel(String instrument, Side side, long price, OrderVisitor visitor) {
+    validateArg(visitor, "visitor cannot be null");
+    int visited = 0;
+    for (Order order : getOrdersAtLevel(instrument, side, price)) {
+      visited++;
+      if (!visitor.visit(order)) {
+        break;
+      }
+    }
+    return visited;
+  }
 }
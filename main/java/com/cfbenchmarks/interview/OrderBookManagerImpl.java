@@ -2,118 +2,857 @@ package com.cfbenchmarks.interview;
 
 import static com.cfbenchmarks.interview.Validation.validateArg;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /*
- * TODO use ReadWrite locks
+ * each instrument / side book has its own StampedLock, queries read
+ * optimistically and only fall back to the read lock if a writer got in
+ *
+ * built with a FillListener we match, an add locks both sides of its
+ * instrument and trades against the other side before resting
+ *
+ * built with long order ids, orders are indexed by a primitive long id rather
+ * than a String, see Builder.setLongOrderIds
  */
 public class OrderBookManagerImpl implements OrderBookManager {
 
-  private static OrderBook EMPTY_BUY_BOOK = new OrderBook(Side.BUY, Collections.emptyMap());
-  private static OrderBook EMPTY_SELL_BOOK = new OrderBook(Side.SELL, Collections.emptyMap());
+  private static OrderBook EMPTY_BUY_BOOK = new OrderBook(Side.BUY, new ConcurrentHashMap<String, RestingOrder>());
+  private static OrderBook EMPTY_SELL_BOOK = new OrderBook(Side.SELL, new ConcurrentHashMap<String, RestingOrder>());
 
-  private Map<String, Order> m_ordersById = Collections.synchronizedMap(new HashMap<String, Order>());
-  private Map<String, OrderBook> m_ordersByInstrumentSide = Collections
-      .synchronizedMap(new HashMap<String, OrderBook>());
+  /** true if only one thread ever calls us, nothing is then locked **/
+  private boolean m_singleWriter;
+  /**
+   * every resting order, concurrent so books only need their own lock. Null
+   * if we index by long id
+   **/
+  private Map<String, RestingOrder> m_ordersById;
+  /** every resting order by long id, null unless built with long order ids **/
+  private LongOrderIndex m_ordersByLongId;
+  /** instrument names to dense ids, ids index the books **/
+  private InstrumentRegistry m_instruments = new InstrumentRegistry();
+  /** books by instrument id, one array per side indexed by Side.ordinal() **/
+  private BookArray[] m_booksBySide = { new BookArray(), new BookArray() };
+  /** null unless we match, crossing orders then trade rather than rest **/
+  private FillListener m_fillListener;
+  /** null unless level changes are published **/
+  private LevelDeltaPublisher m_levelDeltas;
+  /** null unless accepted changes are journaled **/
+  private Journal m_journal;
+  /** null unless operations are counted and timed **/
+  private Metrics m_metrics;
+  /** true if every book publishes a BookSnapshot after each change **/
+  private boolean m_snapshots;
+  /** instruments whose books use a tick ladder, see useTickLadder **/
+  private Map<String, TickBand> m_tickBands = new ConcurrentHashMap<String, TickBand>();
+
+  public OrderBookManagerImpl() {
+    this(false);
+  }
+
+  /**
+   * a matching manager, an added order first trades against the other side of
+   * its instrument's book in price-time priority and only the remainder rests
+   *
+   * @param fillListener told of every fill, see {@link FillListener}
+   */
+  public OrderBookManagerImpl(FillListener fillListener) {
+    this(false, false, fillListener, null, null, null, false);
+    validateArg(fillListener, "fillListener cannot be null");
+  }
+
+  /**
+   * @param singleWriter true if only one thread will ever call this manager,
+   *                     e.g. the writer thread of a
+   *                     {@link SequencedOrderBookManager}. Books and maps are
+   *                     then created without any locking
+   */
+  OrderBookManagerImpl(boolean singleWriter) {
+    this(singleWriter, false, null, null, null, null, false);
+  }
+
+  /**
+   * @param singleWriter true if only one thread will ever call this manager
+   * @param longOrderIds true to index orders by long id, see
+   *                     Builder.setLongOrderIds
+   * @param fillListener null to only store orders, otherwise we match
+   * @param levelDeltas  null, or where every book publishes its level changes
+   * @param journal      null, or where every book journals accepted changes
+   * @param metrics      null, or where operations and lock waits are recorded
+   * @param snapshots    true to publish a BookSnapshot of every book after each
+   *                     change, see getSnapshot
+   */
+  OrderBookManagerImpl(boolean singleWriter, boolean longOrderIds, FillListener fillListener,
+      LevelDeltaPublisher levelDeltas, Journal journal, Metrics metrics, boolean snapshots) {
+    m_singleWriter = singleWriter;
+    m_fillListener = fillListener;
+    m_levelDeltas = levelDeltas;
+    m_journal = journal;
+    m_metrics = metrics;
+    m_snapshots = snapshots;
+    if (longOrderIds) {
+      m_ordersByLongId = new LongOrderIndex(singleWriter);
+    } else if (singleWriter) {
+      m_ordersById = new HashMap<String, RestingOrder>();
+    } else {
+      m_ordersById = new ConcurrentHashMap<String, RestingOrder>();
+    }
+  }
+
+  /**
+   * look up an instrument's id once and use the int overloads from then on to
+   * skip the name lookup
+   *
+   * @param instrument identifier of an instrument
+   * @return the instrument's id, assigned now if it has never been seen
+   */
+  public int registerInstrument(String instrument) {
+    return m_instruments.register(instrument);
+  }
+
+  /**
+   * keep an instrument's levels near the touch in an array rather than a
+   * sparse map, for liquid instruments whose prices cluster within a few
+   * hundred ticks. Call before the instrument's first order
+   *
+   * @param instrument identifier of an instrument
+   * @param tickSize   the instrument's tick, prices off the tick grid are
+   *                   still accepted but kept in the sparse map
+   * @param bandLevels how many ticks around the best price to keep in the
+   *                   array
+   */
+  public void useTickLadder(String instrument, long tickSize, int bandLevels) {
+    validateArg(instrument, "instrument cannot be null");
+    checkArgument(tickSize > 0, "tickSize must be positive");
+    checkArgument(bandLevels > 0, "bandLevels must be positive");
+    int instrumentId = m_instruments.register(instrument);
+    BookArray buys = m_booksBySide[Side.BUY.ordinal()];
+    BookArray sells = m_booksBySide[Side.SELL.ordinal()];
+    // books are created holding their side's lock, so under both either a book
+    // already exists or it will be created with the ladder
+    synchronized (buys) {
+      synchronized (sells) {
+        checkState(buys.get(instrumentId) == null && sells.get(instrumentId) == null, instrument
+            + " already has orders");
+        m_tickBands.put(instrument, new TickBand(tickSize, bandLevels));
+      }
+    }
+  }
 
   public void addOrder(Order order) {
     validateArg(order, "order cannot be null");
+    long start = startTiming();
     // order objects are immutable - so can be safely added
-    getOrCreateOrderBook(order).add(order);
+    int instrumentId = m_instruments.register(order.getInstrument());
+    OrderBook book = getOrCreateOrderBook(instrumentId, order.getInstrument(), order.getSide());
+    if (m_fillListener == null) {
+      book.add(order);
+    } else {
+      Side otherSide = order.getSide() == Side.BUY ? Side.SELL : Side.BUY;
+      OrderBook opposite = getOrCreateOrderBook(instrumentId, order.getInstrument(), otherSide);
+      book.addMatching(order, opposite, m_fillListener);
+    }
+    stopTiming(Metrics.Operation.ADD, start);
   }
 
   public boolean modifyOrder(String orderId, long newQuantity) {
     validateArg(orderId, "orderId cannot be null");
+    if (m_ordersByLongId != null) {
+      return modifyOrder(Order.parseOrderId(orderId), newQuantity);
+    }
     checkArgument(newQuantity > 0, "Quantity must be positive");
+    long start = startTiming();
 
-    Order order = m_ordersById.get(orderId);
-
-    if (order == null) {
-      throw new IllegalArgumentException(orderId + " does not exist");
-    }
-    if (order.getQuantity() == newQuantity) {
-      return false;
+    // the id is looked up outside any lock, if it has since been deleted and
+    // added again to another book try again there
+    int result = OrderBook.MOVED;
+    while (result == OrderBook.MOVED) {
+      RestingOrder resting = m_ordersById.get(orderId);
+      if (resting == null) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      result = resting.book.modify(orderId, resting, newQuantity);
     }
-    return getOrderBook(order.getInstrument(), order.getSide()).modify(orderId, newQuantity);
+    stopTiming(Metrics.Operation.MODIFY, start);
+    return result == OrderBook.CHANGED;
   }
 
   public boolean deleteOrder(String orderId) {
     validateArg(orderId, "orderid cannot be null");
+    if (m_ordersByLongId != null) {
+      return deleteOrder(Order.parseOrderId(orderId));
+    }
+    long start = startTiming();
+
+    // as for a modify
+    int result = OrderBook.MOVED;
+    while (result == OrderBook.MOVED) {
+      RestingOrder resting = m_ordersById.get(orderId);
+      if (resting == null) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      result = resting.book.delete(orderId, resting);
+    }
+    stopTiming(Metrics.Operation.DELETE, start);
+    return true;
+  }
+
+  /**
+   * built with long order ids the cancel path hashes and compares only longs
+   */
+  @Override
+  public boolean modifyOrder(long orderId, long newQuantity) {
+    if (m_ordersByLongId == null) {
+      return modifyOrder(Long.toString(orderId), newQuantity);
+    }
+    checkArgument(newQuantity > 0, "Quantity must be positive");
+    long start = startTiming();
+
+    int result = OrderBook.MOVED;
+    while (result == OrderBook.MOVED) {
+      RestingOrder resting = m_ordersByLongId.get(orderId);
+      if (resting == null) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      result = resting.book.modify(orderId, resting, newQuantity);
+    }
+    stopTiming(Metrics.Operation.MODIFY, start);
+    return result == OrderBook.CHANGED;
+  }
+
+  @Override
+  public boolean deleteOrder(long orderId) {
+    if (m_ordersByLongId == null) {
+      return deleteOrder(Long.toString(orderId));
+    }
+    long start = startTiming();
+
+    int result = OrderBook.MOVED;
+    while (result == OrderBook.MOVED) {
+      RestingOrder resting = m_ordersByLongId.get(orderId);
+      if (resting == null) {
+        throw new IllegalArgumentException(orderId + " does not exist");
+      }
+      result = resting.book.delete(orderId, resting);
+    }
+    stopTiming(Metrics.Operation.DELETE, start);
+    return true;
+  }
 
-    Order order = m_ordersById.get(orderId);
-    if (order == null) {
-      throw new IllegalArgumentException(orderId + " does not exist");
+  /**
+   * apply a burst of adds, modifies and deletes, taking each book's lock once
+   * for all of its commands rather than once per command
+   *
+   * <p>
+   * Commands on the same book are applied in batch order. Commands on
+   * different books may be applied in any order relative to each other, and a
+   * modify or delete of an order added in the same batch is applied after the
+   * add. A rejected command doesn't stop the rest of the batch. A matching
+   * manager applies the commands one at a time, in order
+   *
+   * @param commands add, modify or delete commands
+   * @param count    how many of the commands to apply, from the first
+   * @param results  filled with the outcome of each command, anything it held
+   *                 is discarded
+   */
+  public void applyBatch(OrderCommand[] commands, int count, BatchResults results) {
+    validateArg(commands, "commands cannot be null");
+    validateArg(results, "results cannot be null");
+    checkArgument(count >= 0 && count <= commands.length && count <= results.capacity(),
+        "count must fit the commands and the results");
+    long start = startTiming();
+    applyCommands(commands, count, results);
+    stopTiming(Metrics.Operation.BATCH, start);
+  }
+
+  private void applyCommands(OrderCommand[] commands, int count, BatchResults results) {
+    results.reset(count);
+    int pending = 0;
+    for (int i = 0; i < count; i++) {
+      try {
+        validateCommand(commands[i]);
+        pending++;
+      } catch (RuntimeException e) {
+        results.rejected(i, e);
+      }
+    }
+
+    if (m_fillListener != null) {
+      applyOneByOne(commands, count, results);
+      return;
+    }
+    try {
+      while (pending > 0) {
+        if (!resolveBooks(commands, count, results)) {
+          break;
+        }
+        for (int i = 0; i < count; i++) {
+          if (results.isPending(i) && results.books[i] != null) {
+            results.books[i].applyBatch(commands, i, count, results);
+          }
+        }
+        int stillPending = 0;
+        for (int i = 0; i < count; i++) {
+          if (results.isPending(i)) {
+            stillPending++;
+          }
+        }
+        if (stillPending == pending) {
+          // no progress, the orders left have gone since we resolved them
+          break;
+        }
+        pending = stillPending;
+      }
+      for (int i = 0; i < count; i++) {
+        if (results.isPending(i)) {
+          results.rejected(i, new IllegalArgumentException(commands[i].orderId + " does not exist"));
+        }
+      }
+    } finally {
+      results.clearResolved();
     }
-    Order deleted = getOrderBook(order.getInstrument(), order.getSide()).delete(orderId);
-    return deleted != null;
   }
 
   public Optional<Long> getBestPrice(String instrument, Side side) {
-    return getOrderBook(instrument, side).getBestPrice();
+    long start = startTiming();
+    Optional<Long> best = getOrderBook(instrument, side).getBestPrice();
+    stopTiming(Metrics.Operation.QUERY, start);
+    return best;
   }
 
   public long getOrderNumAtLevel(String instrument, Side side, long priceLevel) {
-    return getOrderBook(instrument, side).getOrderNumAtLevel(priceLevel);
+    long start = startTiming();
+    long orders = getOrderBook(instrument, side).getOrderNumAtLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return orders;
   }
 
   public long getTotalQuantityAtLevel(String instrument, Side side, long priceLevel) {
-    return getOrderBook(instrument, side).getTotalQuantityAtLevel(priceLevel);
+    long start = startTiming();
+    long quantity = getOrderBook(instrument, side).getTotalQuantityAtLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return quantity;
   }
 
   public long getTotalVolumeAtLevel(String instrument, Side side, long priceLevel) {
-    return getOrderBook(instrument, side).getTotalVolumeAtpriceLevel(priceLevel);
+    long start = startTiming();
+    long volume = getOrderBook(instrument, side).getTotalVolumeAtpriceLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return volume;
   }
 
   public List<Order> getOrdersAtLevel(String instrument, Side side, long priceLevel) {
-    return getOrderBook(instrument, side).getOrdersAtLevel(priceLevel);
+    long start = startTiming();
+    List<Order> orders = getOrderBook(instrument, side).getOrdersAtLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return orders;
+  }
+
+  /**
+   * walks the level's queue without copying it. The book's read lock is held
+   * while the visitor runs, so it should be quick, and writers to the book
+   * wait until it returns
+   */
+  @Override
+  public int forEachOrderAtLevel(String instrument, Side side, long priceLevel, OrderVisitor visitor) {
+    validateArg(visitor, "visitor cannot be null");
+    long start = startTiming();
+    int visited = getOrderBook(instrument, side).forEachOrderAtLevel(priceLevel, visitor);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return visited;
+  }
+
+  /**
+   * the oldest orders at a level, all read at the same instant, without
+   * holding up writers while they are looked at
+   *
+   * @param instrument identifier of an instrument
+   * @param side       either buy or sell
+   * @param priceLevel requested price level
+   * @param n          the most orders to read, no more than the cursor's
+   *                   capacity
+   * @param cursor     filled with the orders, oldest first, anything it held
+   *                   is discarded
+   * @return the number of orders read, fewer than n if the level is shorter
+   */
+  public int getOrdersAtLevel(String instrument, Side side, long priceLevel, int n, OrderCursor cursor) {
+    validateArg(cursor, "cursor cannot be null");
+    long start = startTiming();
+    int orders = getOrderBook(instrument, side).getOrdersAtLevel(priceLevel, n, cursor);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return orders;
+  }
+
+  /**
+   * the best levels of one side of a book, all read at the same instant
+   *
+   * @param instrument identifier of an instrument
+   * @param side       either buy or sell
+   * @param n          the most levels to read, no more than the buffer's
+   *                   capacity
+   * @param depth      filled with the levels, best first, anything it held is
+   *                   discarded
+   * @return the number of levels read, fewer than n if the book is shallower
+   */
+  public int getDepth(String instrument, Side side, int n, DepthBuffer depth) {
+    validateArg(depth, "depth cannot be null");
+    long start = startTiming();
+    int levels = getOrderBook(instrument, side).getDepth(n, depth);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return levels;
   }
 
   /*
-   * private methods
+   * the same queries by instrument id, see registerInstrument
    */
 
-  private OrderBook getOrCreateOrderBook(Order order) {
-    return getOrderBook(order.getInstrument(), order.getSide(), true);
+  public Optional<Long> getBestPrice(int instrumentId, Side side) {
+    long start = startTiming();
+    Optional<Long> best = getOrderBook(instrumentId, side).getBestPrice();
+    stopTiming(Metrics.Operation.QUERY, start);
+    return best;
   }
 
-  private OrderBook getOrderBook(String instrument, Side side) {
-    return getOrderBook(instrument, side, false);
+  public long getOrderNumAtLevel(int instrumentId, Side side, long priceLevel) {
+    long start = startTiming();
+    long orders = getOrderBook(instrumentId, side).getOrderNumAtLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return orders;
+  }
+
+  public long getTotalQuantityAtLevel(int instrumentId, Side side, long priceLevel) {
+    long start = startTiming();
+    long quantity = getOrderBook(instrumentId, side).getTotalQuantityAtLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return quantity;
+  }
+
+  public long getTotalVolumeAtLevel(int instrumentId, Side side, long priceLevel) {
+    long start = startTiming();
+    long volume = getOrderBook(instrumentId, side).getTotalVolumeAtpriceLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return volume;
+  }
+
+  public List<Order> getOrdersAtLevel(int instrumentId, Side side, long priceLevel) {
+    long start = startTiming();
+    List<Order> orders = getOrderBook(instrumentId, side).getOrdersAtLevel(priceLevel);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return orders;
+  }
+
+  public int forEachOrderAtLevel(int instrumentId, Side side, long priceLevel, OrderVisitor visitor) {
+    validateArg(visitor, "visitor cannot be null");
+    long start = startTiming();
+    int visited = getOrderBook(instrumentId, side).forEachOrderAtLevel(priceLevel, visitor);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return visited;
+  }
+
+  public int getOrdersAtLevel(int instrumentId, Side side, long priceLevel, int n, OrderCursor cursor) {
+    validateArg(cursor, "cursor cannot be null");
+    long start = startTiming();
+    int orders = getOrderBook(instrumentId, side).getOrdersAtLevel(priceLevel, n, cursor);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return orders;
+  }
+
+  public int getDepth(int instrumentId, Side side, int n, DepthBuffer depth) {
+    validateArg(depth, "depth cannot be null");
+    long start = startTiming();
+    int levels = getOrderBook(instrumentId, side).getDepth(n, depth);
+    stopTiming(Metrics.Operation.QUERY, start);
+    return levels;
+  }
+
+  /**
+   * one side of an instrument's book as of its last change, taken with a
+   * single volatile read. Hold and walk it as long as you like, writers never
+   * wait for it. The two sides are separate snapshots, a matching add
+   * publishes each as it releases its lock
+   *
+   * @param instrument identifier of an instrument
+   * @param side       either buy or sell
+   * @return the snapshot, empty if there has never been an order
+   */
+  public BookSnapshot getSnapshot(String instrument, Side side) {
+    checkState(m_snapshots, "built without snapshots, see Builder.setSnapshots");
+    validateArg(instrument, "instrument cannot be null");
+    validateArg(side, "side cannot be null");
+    int instrumentId = m_instruments.idOf(instrument);
+    OrderBook book = instrumentId == -1 ? null : m_booksBySide[side.ordinal()].get(instrumentId);
+    return book == null ? BookSnapshot.empty(instrument, side) : book.snapshot();
+  }
+
+  /**
+   * pull the metrics, the counts and latencies so far and the size of every
+   * book now. A single writer manager must be read on its writer thread
+   *
+   * @return a copy, later operations don't change it
+   */
+  public Metrics.Snapshot metrics() {
+    checkState(m_metrics != null, "built without metrics, see Builder.setMetrics");
+    List<Metrics.BookStats> books = new ArrayList<Metrics.BookStats>();
+    for (int instrumentId = 0; instrumentId < m_instruments.size(); instrumentId++) {
+      for (BookArray side : m_booksBySide) {
+        OrderBook book = side.get(instrumentId);
+        if (book != null) {
+          books.add(book.stats());
+        }
+      }
+    }
+    return m_metrics.snapshot(books);
   }
 
   /**
-   * find an order book using the key of instrument :: side
-   * 
-   * @param instrument
-   * @param side
-   * @param create     if true we will create an empty book
-   * @return OrderBook
+   * copy every resting order, book by book, best level first and oldest first
+   * within a level. A single writer manager must be copied on its writer
+   * thread
+   *
+   * <p>
+   * With snapshots every book is locked at once, as of one instant, but only
+   * long enough to take its snapshot, the orders are copied from those after.
+   * Without, each instrument's books are locked and copied in turn, so a
+   * journaling manager, whose copy must match a journal sequence, needs
+   * snapshots, see {@link #isCopyable()}
+   *
+   * @param copy the orders are appended to it
+   * @return the sequence number of the first journal record not in the copy,
+   *         0 if we don't journal
+   */
+  long copyOrders(List<Order> copy) {
+    checkState(isCopyable(), "a journaling manager needs snapshots to be copied");
+    BookArray buys = m_booksBySide[Side.BUY.ordinal()];
+    BookArray sells = m_booksBySide[Side.SELL.ordinal()];
+    if (!m_snapshots) {
+      for (int instrumentId = 0; instrumentId < m_instruments.size(); instrumentId++) {
+        copyOrders(buys.get(instrumentId), sells.get(instrumentId), copy);
+      }
+      return 0;
+    }
+
+    // no new books while we lock, then every book in the order matching locks
+    // them, buy before sell of each instrument
+    List<BookSnapshot> snapshots = new ArrayList<BookSnapshot>();
+    long sequence;
+    synchronized (buys) {
+      synchronized (sells) {
+        List<OrderBook> books = new ArrayList<OrderBook>();
+        for (int instrumentId = 0; instrumentId < m_instruments.size(); instrumentId++) {
+          for (BookArray side : m_booksBySide) {
+            OrderBook book = side.get(instrumentId);
+            if (book != null) {
+              books.add(book);
+            }
+          }
+        }
+        long[] stamps = new long[books.size()];
+        int locked = 0;
+        try {
+          for (; locked < books.size(); locked++) {
+            stamps[locked] = books.get(locked).writeLock();
+          }
+          for (OrderBook book : books) {
+            snapshots.add(book.snapshot());
+          }
+          sequence = m_journal == null ? 0 : m_journal.nextSequence();
+        } finally {
+          while (locked-- > 0) {
+            books.get(locked).unlockWrite(stamps[locked]);
+          }
+        }
+      }
+    }
+    for (BookSnapshot snapshot : snapshots) {
+      snapshot.forEachOrder(copy::add);
+    }
+    return sequence;
+  }
+
+  /**
+   * @return true if {@link #copyOrders(List)} can copy us, a journaling manager
+   *         must be built with snapshots
+   */
+  boolean isCopyable() {
+    return m_journal == null || m_snapshots;
+  }
+
+  /*
+   * private methods
+   */
+
+  /*
+   * one instrument's books under both their locks, in the order matching
+   * locks them, so no fill is seen on one side only
    */
-  private OrderBook getOrderBook(String instrument, Side side, boolean create) {
+  private void copyOrders(OrderBook buy, OrderBook sell, List<Order> copy) {
+    long buyStamp = buy == null ? 0 : buy.writeLock();
+    try {
+      long sellStamp = sell == null ? 0 : sell.writeLock();
+      try {
+        if (buy != null) {
+          buy.copyTo(copy);
+        }
+        if (sell != null) {
+          sell.copyTo(copy);
+        }
+      } finally {
+        if (sell != null) {
+          sell.unlockWrite(sellStamp);
+        }
+      }
+    } finally {
+      if (buy != null) {
+        buy.unlockWrite(buyStamp);
+      }
+    }
+  }
+
+  private OrderBook getOrCreateOrderBook(int instrumentId, String instrument, Side side) {
+    BookArray books = m_booksBySide[side.ordinal()];
+
+    OrderBook book = books.get(instrumentId);
+    if (book != null) {
+      return book;
+    }
+    synchronized (books) {
+      book = books.get(instrumentId);
+      if (book == null) {
+        // only books that have had an order, queries don't create them
+        TickBand tickBand = m_tickBands.get(instrument);
+        if (m_ordersByLongId != null) {
+          book = tickBand == null ? new OrderBook(side, m_ordersByLongId, m_singleWriter)
+              : new OrderBook(side, m_ordersByLongId, m_singleWriter, tickBand.tickSize, tickBand.levels);
+        } else {
+          book = tickBand == null ? new OrderBook(side, m_ordersById, m_singleWriter)
+              : new OrderBook(side, m_ordersById, m_singleWriter, tickBand.tickSize, tickBand.levels);
+        }
+        book.attach(instrument, m_levelDeltas, m_journal, m_metrics, m_snapshots);
+        books.set(instrumentId, book);
+      }
+      return book;
+    }
+  }
+
+  /*
+   * metrics helpers, no-ops without metrics
+   */
+
+  private long startTiming() {
+    return m_metrics == null ? Metrics.NOT_TIMED : m_metrics.start();
+  }
+
+  private void stopTiming(Metrics.Operation operation, long start) {
+    if (m_metrics != null) {
+      m_metrics.record(operation, start);
+    }
+  }
+
+  private OrderBook getOrderBook(String instrument, Side side) {
     validateArg(side, "side cannot be null");
     validateArg(instrument, "instrument cannot be null");
+    int instrumentId = m_instruments.idOf(instrument);
+    return instrumentId == -1 ? emptyBook(side) : getOrderBook(instrumentId, side);
+  }
 
-    String orderBookKey = Order.sideInstrumentKey(instrument, side);
+  private void validateCommand(OrderCommand command) {
+    validateArg(command, "command cannot be null");
+    validateArg(command.type, "command is empty");
+    switch (command.type) {
+    case ADD:
+      validateArg(command.order, "order cannot be null");
+      break;
+    case MODIFY:
+      validateArg(command.orderId, "orderId cannot be null");
+      checkArgument(command.quantity > 0, "Quantity must be positive");
+      break;
+    case DELETE:
+      validateArg(command.orderId, "orderid cannot be null");
+      break;
+    default:
+      throw new IllegalArgumentException("only add, modify and delete can be batched, not " + command.type);
+    }
+    if (m_ordersByLongId != null && command.type != OrderCommand.Type.ADD) {
+      // so the id parses when it is resolved and applied
+      Order.parseOrderId(command.orderId);
+    }
+  }
 
-    if (m_ordersByInstrumentSide.containsKey(orderBookKey)) {
-      return m_ordersByInstrumentSide.get(orderBookKey);
+  /*
+   * the book of every pending command, null for a modify or delete whose order
+   * isn't there (yet). False if no command has a book
+   */
+  private boolean resolveBooks(OrderCommand[] commands, int count, BatchResults results) {
+    boolean resolved = false;
+    for (int i = 0; i < count; i++) {
+      if (!results.isPending(i)) {
+        continue;
+      }
+      OrderCommand command = commands[i];
+      if (command.type == OrderCommand.Type.ADD) {
+        Order order = command.order;
+        int instrumentId = m_instruments.register(order.getInstrument());
+        results.books[i] = getOrCreateOrderBook(instrumentId, order.getInstrument(), order.getSide());
+      } else {
+        RestingOrder resting = m_ordersByLongId != null ? m_ordersByLongId.get(Order.parseOrderId(command.orderId))
+            : m_ordersById.get(command.orderId);
+        results.resting[i] = resting;
+        results.books[i] = resting == null ? null : resting.book;
+      }
+      resolved |= results.books[i] != null;
     }
+    return resolved;
+  }
 
-    if (create) {
-      synchronized (m_ordersByInstrumentSide) {
-        if (m_ordersByInstrumentSide.containsKey(orderBookKey)) {
-          return m_ordersByInstrumentSide.get(orderBookKey);
+  private void applyOneByOne(OrderCommand[] commands, int count, BatchResults results) {
+    for (int i = 0; i < count; i++) {
+      if (!results.isPending(i)) {
+        continue;
+      }
+      try {
+        Object changed = commands[i].applyTo(this);
+        if (Boolean.FALSE.equals(changed)) {
+          results.unchanged(i);
+        } else {
+          results.applied(i);
         }
-        // don't want to fill up with empty books
-        OrderBook book = new OrderBook(side, m_ordersById);
-        m_ordersByInstrumentSide.put(orderBookKey, book);
-        return book;
+      } catch (RuntimeException e) {
+        results.rejected(i, e);
       }
     }
+  }
+
+  /**
+   * find an order book by instrument id and side
+   *
+   * @param instrumentId an id from registerInstrument
+   * @param side         either buy or sell
+   * @return OrderBook, an empty book if there has never been an order
+   */
+  private OrderBook getOrderBook(int instrumentId, Side side) {
+    validateArg(side, "side cannot be null");
+    checkArgument(instrumentId >= 0, "instrumentId cannot be negative");
+
+    OrderBook book = m_booksBySide[side.ordinal()].get(instrumentId);
+    return book != null ? book : emptyBook(side);
+  }
+
+  private static OrderBook emptyBook(Side side) {
     return side == Side.BUY ? EMPTY_BUY_BOOK : EMPTY_SELL_BOOK;
   }
+
+  /**
+   * for the optional features, new OrderBookManagerImpl() is a plain store
+   */
+  public static class Builder {
+    private FillListener fillListener;
+    private LevelDeltaPublisher levelDeltas;
+    private Journal journal;
+    private Metrics metrics;
+    private boolean longOrderIds;
+    private boolean snapshots;
+
+    /**
+     * match crossing orders, see {@link FillListener}
+     */
+    public Builder setFillListener(FillListener fillListener) {
+      this.fillListener = fillListener;
+      return this;
+    }
+
+    /**
+     * publish every level change, see {@link LevelListener}. The publisher
+     * is not closed by the manager
+     */
+    public Builder setLevelDeltas(LevelDeltaPublisher levelDeltas) {
+      this.levelDeltas = levelDeltas;
+      return this;
+    }
+
+    /**
+     * journal every accepted add, modify and delete, see {@link Journal}. The
+     * journal is not closed by the manager
+     */
+    public Builder setJournal(Journal journal) {
+      this.journal = journal;
+      return this;
+    }
+
+    /**
+     * count and time every operation and every wait for a book's lock, see
+     * {@link Metrics}
+     */
+    public Builder setMetrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /**
+     * index orders by long id, so modifies and deletes by long id hash and
+     * compare no Strings. Every order's id must then be a long, either built
+     * with one or the decimal string of one, see {@link Order#getLongOrderId()}
+     */
+    public Builder setLongOrderIds(boolean longOrderIds) {
+      this.longOrderIds = longOrderIds;
+      return this;
+    }
+
+    /**
+     * publish an immutable {@link BookSnapshot} of every book after each
+     * change, for readers that need a whole book without holding up writers.
+     * Each change then allocates the new snapshot's path
+     */
+    public Builder setSnapshots(boolean snapshots) {
+      this.snapshots = snapshots;
+      return this;
+    }
+
+    public OrderBookManagerImpl build() {
+      return new OrderBookManagerImpl(false, longOrderIds, fillListener, levelDeltas, journal, metrics, snapshots);
+    }
+  }
+
+  private static class TickBand {
+    private final long tickSize;
+    private final int levels;
+
+    TickBand(long tickSize, int levels) {
+      this.tickSize = tickSize;
+      this.levels = levels;
+    }
+  }
+
+  /*
+   * books indexed by instrument id, grown by copying as instruments are added.
+   * Reads are lock free, set under the array's monitor
+   */
+  private static class BookArray {
+    private volatile AtomicReferenceArray<OrderBook> books = new AtomicReferenceArray<OrderBook>(16);
+
+    OrderBook get(int instrumentId) {
+      AtomicReferenceArray<OrderBook> current = books;
+      return instrumentId < current.length() ? current.get(instrumentId) : null;
+    }
+
+    void set(int instrumentId, OrderBook book) {
+      AtomicReferenceArray<OrderBook> current = books;
+      if (instrumentId >= current.length()) {
+        AtomicReferenceArray<OrderBook> grown = new AtomicReferenceArray<OrderBook>(
+            Math.max(current.length() * 2, instrumentId + 1));
+        for (int i = 0; i < current.length(); i++) {
+          grown.set(i, current.get(i));
+        }
+        current = grown;
+      }
+      current.set(instrumentId, book);
+      books = current;
+    }
+  }
 }
@@ -0,0 +1,120 @@
+package com.cfbenchmarks.interview;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One OrderBookManager call captured as data so it can be queued and applied
+ * later on another thread, or applied with others in a batch. Instances are
+ * mutable and meant to be re-used, e.g. as ring buffer entries
+ */
+public class OrderCommand {
+
+  enum Type {
+    ADD, MODIFY, DELETE, BEST_PRICE, ORDER_NUM, TOTAL_QUANTITY, TOTAL_VOLUME, ORDERS_AT_LEVEL
+  }
+
+  Type type;
+  /** the order to add **/
+  Order order;
+  /** the order to modify or delete **/
+  String orderId;
+  /** the new quantity for a modify **/
+  long quantity;
+  /** instrument, side and price of a query **/
+  String instrument;
+  Side side;
+  long price;
+  /** completed with the result once applied, may be null **/
+  CompletableFuture<Object> result;
+
+  public OrderCommand add(Order order) {
+    clear();
+    this.type = Type.ADD;
+    this.order = order;
+    return this;
+  }
+
+  public OrderCommand modify(String orderId, long quantity) {
+    clear();
+    this.type = Type.MODIFY;
+    this.orderId = orderId;
+    this.quantity = quantity;
+    return this;
+  }
+
+  public OrderCommand delete(String orderId) {
+    clear();
+    this.type = Type.DELETE;
+    this.orderId = orderId;
+    return this;
+  }
+
+  OrderCommand query(Type type, String instrument, Side side, long price) {
+    clear();
+    this.type = type;
+    this.instrument = instrument;
+    this.side = side;
+    this.price = price;
+    return this;
+  }
+
+  /**
+   * apply to the manager and complete the result, if any, with the outcome
+   */
+  void applyAndComplete(OrderBookManager manager) {
+    CompletableFuture<Object> future = result;
+    try {
+      Object value = applyTo(manager);
+      if (future != null) {
+        future.complete(value);
+      }
+    } catch (Throwable e) {
+      // an Error too, the caller must hear of it and the writer carry on
+      if (future == null) {
+        throw e;
+      }
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * @return the manager's return value, boxed, or null for an add
+   */
+  Object applyTo(OrderBookManager manager) {
+    switch (type) {
+    case ADD:
+      manager.addOrder(order);
+      return null;
+    case MODIFY:
+      return manager.modifyOrder(orderId, quantity);
+    case DELETE:
+      return manager.deleteOrder(orderId);
+    case BEST_PRICE:
+      return manager.getBestPrice(instrument, side);
+    case ORDER_NUM:
+      return manager.getOrderNumAtLevel(instrument, side, price);
+    case TOTAL_QUANTITY:
+      return manager.getTotalQuantityAtLevel(instrument, side, price);
+    case TOTAL_VOLUME:
+      return manager.getTotalVolumeAtLevel(instrument, side, price);
+    case ORDERS_AT_LEVEL:
+      return manager.getOrdersAtLevel(instrument, side, price);
+    default:
+      throw new IllegalStateException("unknown command " + type);
+    }
+  }
+
+  /*
+   * drop references so a re-used entry doesn't keep orders alive
+   */
+  void clear() {
+    type = null;
+    order = null;
+    orderId = null;
+    quantity = 0;
+    instrument = null;
+    side = null;
+    price = 0;
+    result = null;
+  }
+}
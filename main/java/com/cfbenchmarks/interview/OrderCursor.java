@@ -0,0 +1,107 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The oldest orders at a level, in FIFO order. Filled by
+ * {@link OrderBookManagerImpl#getOrdersAtLevel(String, Side, long, int, OrderCursor)}
+ * and meant to be reused, refilling it allocates nothing
+ *
+ * <p>
+ * Positioned before the first order, move with {@link #next()}. Not thread
+ * safe, give each reader its own cursor
+ */
+public class OrderCursor {
+
+  private final Order[] orders;
+  private final long[] quantities;
+  private int size;
+  private int position = -1;
+
+  /**
+   * @param capacity the most orders this cursor can hold
+   */
+  public OrderCursor(int capacity) {
+    checkArgument(capacity > 0, "capacity must be positive");
+    orders = new Order[capacity];
+    quantities = new long[capacity];
+  }
+
+  public int capacity() {
+    return orders.length;
+  }
+
+  /**
+   * @return the number of orders filled, at most the number asked for
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if there is another order, it is then the current one
+   */
+  public boolean next() {
+    if (position + 1 >= size) {
+      position = size;
+      return false;
+    }
+    position++;
+    return true;
+  }
+
+  /**
+   * back to before the first order
+   */
+  public void rewind() {
+    position = -1;
+  }
+
+  public String getOrderId() {
+    return current().getOrderId();
+  }
+
+  public long getLongOrderId() {
+    return current().getLongOrderId();
+  }
+
+  public long getQuantity() {
+    current();
+    return quantities[position];
+  }
+
+  /**
+   * @return the current order, only allocated if its quantity changed since
+   *         it was added
+   */
+  public Order toOrder() {
+    Order order = current();
+    long quantity = quantities[position];
+    return order.getQuantity() == quantity ? order : order.withQuantity(quantity);
+  }
+
+  private Order current() {
+    checkState(position >= 0 && position < size, "no current order, see next");
+    return orders[position];
+  }
+
+  /*
+   * the previous orders are overwritten rather than cleared, they stay
+   * reachable until then
+   */
+  void clear() {
+    size = 0;
+    position = -1;
+  }
+
+  /**
+   * @param order    the order as last read, its quantity may be stale
+   * @param quantity the current quantity
+   */
+  void add(Order order, long quantity) {
+    orders[size] = order;
+    quantities[size] = quantity;
+    size++;
+  }
+}
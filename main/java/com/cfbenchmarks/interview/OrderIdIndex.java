@@ -0,0 +1,152 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * order id to OrderSlab slot, an open addressing hash table off the heap with
+ * linear probing. Each entry is a long, 0 when empty, otherwise the slot + 1
+ * in the low SLOT_BITS and the top 24 bits of the id's spread hash above, so
+ * most probes past another id are rejected without reading its record. The
+ * ids themselves are only in the slab, a remove shifts later entries back
+ * rather than leave tombstones
+ *
+ * not thread safe, the caller synchronizes
+ */
+class OrderIdIndex {
+
+  private static final int SLOT_BITS = 40;
+  private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+  private static final int MAX_CAPACITY = 1 << 27;
+  private static final double MAX_LOAD = 0.7;
+
+  private final OrderSlab slab;
+  private ByteBuffer entries;
+  private int mask;
+  private int size;
+  private int resizeAt;
+
+  OrderIdIndex(OrderSlab slab, int initialCapacity) {
+    this.slab = slab;
+    int capacity = 16;
+    while (capacity < initialCapacity && capacity < MAX_CAPACITY) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  int size() {
+    return size;
+  }
+
+  long allocatedBytes() {
+    return entries.capacity();
+  }
+
+  /**
+   * @return the slot of the order with this id, or OrderSlab.NONE
+   */
+  long get(String orderId) {
+    int hash = spread(orderId.hashCode());
+    long tag = tag(hash);
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      long entry = entry(i);
+      if (entry == 0) {
+        return OrderSlab.NONE;
+      }
+      long slot = (entry & SLOT_MASK) - 1;
+      if ((entry & ~SLOT_MASK) == tag && slab.orderIdEquals(slot, orderId)) {
+        return slot;
+      }
+    }
+  }
+
+  /**
+   * index a record whose id isn't already indexed
+   */
+  void add(long slot) {
+    if (size == resizeAt) {
+      grow();
+    }
+    insert(slot);
+    size++;
+  }
+
+  /**
+   * @param slot an indexed record, still holding its id
+   */
+  void remove(long slot) {
+    int hash = spread(slab.orderIdHash(slot));
+    int i = hash & mask;
+    while ((entry(i) & SLOT_MASK) != slot + 1) {
+      i = (i + 1) & mask;
+    }
+    // pull back every later entry of the run that may sit at or before the
+    // gap, so probes never stop early
+    for (int j = (i + 1) & mask;; j = (j + 1) & mask) {
+      long entry = entry(j);
+      if (entry == 0) {
+        break;
+      }
+      int home = spread(slab.orderIdHash((entry & SLOT_MASK) - 1)) & mask;
+      if (((j - home) & mask) >= ((j - i) & mask)) {
+        entry(i, entry);
+        i = j;
+      }
+    }
+    entry(i, 0);
+    size--;
+  }
+
+  private void insert(long slot) {
+    int hash = spread(slab.orderIdHash(slot));
+    int i = hash & mask;
+    while (entry(i) != 0) {
+      i = (i + 1) & mask;
+    }
+    entry(i, tag(hash) | (slot + 1));
+  }
+
+  private void grow() {
+    checkState(mask + 1 < MAX_CAPACITY, "order id index is full");
+    ByteBuffer old = entries;
+    allocate((mask + 1) * 2);
+    for (int i = 0; i < old.capacity(); i += 8) {
+      long entry = old.getLong(i);
+      if (entry != 0) {
+        insert((entry & SLOT_MASK) - 1);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    entries = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder());
+    mask = capacity - 1;
+    resizeAt = (int) (capacity * MAX_LOAD);
+  }
+
+  private long entry(int i) {
+    return entries.getLong(i << 3);
+  }
+
+  private void entry(int i, long entry) {
+    entries.putLong(i << 3, entry);
+  }
+
+  /*
+   * String.hashCode is weak in the low bits for ids that share a prefix
+   */
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  /*
+   * the low bits of the hash pick the entry, the high bits tell ids apart
+   */
+  private static long tag(int hash) {
+    return (long) (hash >>> 8) << SLOT_BITS;
+  }
+}
@@ -0,0 +1,210 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+ * resting orders as fixed size records in direct ByteBuffers, off the heap so
+ * millions of them cost the collector nothing. A record is addressed by a
+ * long slot, chunks of CHUNK_SLOTS records are allocated as they are needed
+ * and freed slots are reused, the most recently freed first
+ *
+ *   0  price            long
+ *   8  quantity         long
+ *   16 prev slot        long, NONE if first at its level
+ *   24 next slot        long, NONE if last at its level, or the next free slot
+ *   32 instrument id    int
+ *   36 order id hash    int, String.hashCode() of the order id
+ *   40 side             byte, Side.ordinal()
+ *   42 order id length  short, in chars
+ *   44 order id         UTF-16 chars, so ids compare without decoding
+ *
+ * not thread safe, the caller synchronizes
+ */
+class OrderSlab {
+
+  static final long NONE = -1;
+  /** so a chunk stays well under 2GB **/
+  static final int MAX_ORDER_ID_LENGTH = 1024;
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+
+  private static final int PRICE = 0;
+  private static final int QUANTITY = 8;
+  private static final int PREV = 16;
+  private static final int NEXT = 24;
+  private static final int INSTRUMENT = 32;
+  private static final int ORDER_ID_HASH = 36;
+  private static final int SIDE = 40;
+  private static final int ORDER_ID_LENGTH = 42;
+  private static final int ORDER_ID = 44;
+  private static final Side[] SIDES = Side.values();
+
+  private final int maxOrderIdLength;
+  private final int recordSize;
+  private ByteBuffer[] chunks = new ByteBuffer[16];
+  private int chunkCount;
+  /** slots below this have been handed out at least once **/
+  private long nextSlot;
+  /** head of the free list, linked through next **/
+  private long freeSlot = NONE;
+  private long size;
+
+  /**
+   * @param maxOrderIdLength the longest order id in chars, every record has
+   *                         room for one this long
+   */
+  OrderSlab(int maxOrderIdLength) {
+    checkArgument(maxOrderIdLength > 0 && maxOrderIdLength <= MAX_ORDER_ID_LENGTH,
+        "maxOrderIdLength must be from 1 to " + MAX_ORDER_ID_LENGTH);
+    this.maxOrderIdLength = maxOrderIdLength;
+    // keep the longs of the next record aligned
+    this.recordSize = (ORDER_ID + 2 * maxOrderIdLength + 7) & ~7;
+  }
+
+  int maxOrderIdLength() {
+    return maxOrderIdLength;
+  }
+
+  /**
+   * @return the number of records in use
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * @return bytes allocated off the heap, including free records
+   */
+  long allocatedBytes() {
+    return (long) chunkCount * CHUNK_SLOTS * recordSize;
+  }
+
+  /**
+   * take a free record and fill it in, its links are NONE
+   *
+   * @return the record's slot
+   */
+  long allocate(Order order, int instrumentId) {
+    long slot = freeSlot;
+    if (slot != NONE) {
+      freeSlot = next(slot);
+    } else {
+      slot = nextSlot++;
+      if ((slot >>> CHUNK_BITS) == chunkCount) {
+        addChunk();
+      }
+    }
+    size++;
+
+    ByteBuffer chunk = chunk(slot);
+    int offset = offset(slot);
+    String orderId = order.getOrderId();
+    chunk.putLong(offset + PRICE, order.getPrice());
+    chunk.putLong(offset + QUANTITY, order.getQuantity());
+    chunk.putLong(offset + PREV, NONE);
+    chunk.putLong(offset + NEXT, NONE);
+    chunk.putInt(offset + INSTRUMENT, instrumentId);
+    chunk.putInt(offset + ORDER_ID_HASH, orderId.hashCode());
+    chunk.put(offset + SIDE, (byte) order.getSide().ordinal());
+    chunk.putShort(offset + ORDER_ID_LENGTH, (short) orderId.length());
+    for (int i = 0; i < orderId.length(); i++) {
+      chunk.putChar(offset + ORDER_ID + 2 * i, orderId.charAt(i));
+    }
+    return slot;
+  }
+
+  /**
+   * the record can be reused by the next allocate
+   */
+  void free(long slot) {
+    next(slot, freeSlot);
+    freeSlot = slot;
+    size--;
+  }
+
+  long price(long slot) {
+    return chunk(slot).getLong(offset(slot) + PRICE);
+  }
+
+  long quantity(long slot) {
+    return chunk(slot).getLong(offset(slot) + QUANTITY);
+  }
+
+  void quantity(long slot, long quantity) {
+    chunk(slot).putLong(offset(slot) + QUANTITY, quantity);
+  }
+
+  long prev(long slot) {
+    return chunk(slot).getLong(offset(slot) + PREV);
+  }
+
+  void prev(long slot, long prev) {
+    chunk(slot).putLong(offset(slot) + PREV, prev);
+  }
+
+  long next(long slot) {
+    return chunk(slot).getLong(offset(slot) + NEXT);
+  }
+
+  void next(long slot, long next) {
+    chunk(slot).putLong(offset(slot) + NEXT, next);
+  }
+
+  int instrumentId(long slot) {
+    return chunk(slot).getInt(offset(slot) + INSTRUMENT);
+  }
+
+  int orderIdHash(long slot) {
+    return chunk(slot).getInt(offset(slot) + ORDER_ID_HASH);
+  }
+
+  Side side(long slot) {
+    return SIDES[chunk(slot).get(offset(slot) + SIDE)];
+  }
+
+  /**
+   * compare without building the stored id
+   */
+  boolean orderIdEquals(long slot, String orderId) {
+    ByteBuffer chunk = chunk(slot);
+    int offset = offset(slot);
+    if (chunk.getShort(offset + ORDER_ID_LENGTH) != orderId.length()) {
+      return false;
+    }
+    for (int i = 0; i < orderId.length(); i++) {
+      if (chunk.getChar(offset + ORDER_ID + 2 * i) != orderId.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  String orderId(long slot) {
+    ByteBuffer chunk = chunk(slot);
+    int offset = offset(slot);
+    char[] chars = new char[chunk.getShort(offset + ORDER_ID_LENGTH)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = chunk.getChar(offset + ORDER_ID + 2 * i);
+    }
+    return new String(chars);
+  }
+
+  private void addChunk() {
+    if (chunkCount == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunks.length * 2);
+    }
+    chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_SLOTS * recordSize).order(ByteOrder.nativeOrder());
+  }
+
+  private ByteBuffer chunk(long slot) {
+    return chunks[(int) (slot >>> CHUNK_BITS)];
+  }
+
+  private int offset(long slot) {
+    return (int) (slot & (CHUNK_SLOTS - 1)) * recordSize;
+  }
+}
@@ -0,0 +1,15 @@
+package com.cfbenchmarks.interview;
+
+/**
+ * Told of the orders at a level one at a time, oldest first, see
+ * {@link OrderBookManager#forEachOrderAtLevel(String, Side, long, OrderVisitor)}
+ */
+@FunctionalInterface
+public interface OrderVisitor {
+
+  /**
+   * @param order the next order at the level
+   * @return true for the next order, false to stop
+   */
+  boolean visit(Order order);
+}
@@ -0,0 +1,205 @@
+package com.cfbenchmarks.interview;
+
+import java.util.NoSuchElementException;
+
+/*
+ * an immutable sorted map of long keys, a persistent AVL tree. A put or remove
+ * returns a new map sharing every node with this one but the O(log n) on the
+ * path to the change, so old versions stay valid for as long as anyone holds
+ * them and are left to the GC after
+ *
+ * values may not be null
+ */
+final class PersistentLongMap<V> {
+
+  private static final PersistentLongMap<Object> EMPTY = new PersistentLongMap<Object>(null, 0);
+
+  private final Node<V> root;
+  private final int size;
+
+  private PersistentLongMap(Node<V> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <V> PersistentLongMap<V> empty() {
+    return (PersistentLongMap<V>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the value, null if the key isn't there
+   */
+  V get(long key) {
+    Node<V> node = root;
+    while (node != null) {
+      if (key < node.key) {
+        node = node.left;
+      } else if (key > node.key) {
+        node = node.right;
+      } else {
+        return node.value;
+      }
+    }
+    return null;
+  }
+
+  PersistentLongMap<V> put(long key, V value) {
+    return new PersistentLongMap<V>(put(root, key, value), get(key) == null ? size + 1 : size);
+  }
+
+  /**
+   * @return this map if the key isn't there
+   */
+  PersistentLongMap<V> remove(long key) {
+    if (get(key) == null) {
+      return this;
+    }
+    return new PersistentLongMap<V>(remove(root, key), size - 1);
+  }
+
+  long firstKey() {
+    checkNotEmpty();
+    Node<V> node = root;
+    while (node.left != null) {
+      node = node.left;
+    }
+    return node.key;
+  }
+
+  long lastKey() {
+    checkNotEmpty();
+    Node<V> node = root;
+    while (node.right != null) {
+      node = node.right;
+    }
+    return node.key;
+  }
+
+  /**
+   * visit the entries in key order, or reverse key order
+   *
+   * @return false if the visitor stopped
+   */
+  boolean forEach(boolean ascending, Visitor<V> visitor) {
+    return forEach(root, ascending, visitor);
+  }
+
+  interface Visitor<V> {
+    /**
+     * @return true for the next entry, false to stop
+     */
+    boolean visit(long key, V value);
+  }
+
+  private void checkNotEmpty() {
+    if (root == null) {
+      throw new NoSuchElementException("empty map");
+    }
+  }
+
+  private static <V> boolean forEach(Node<V> node, boolean ascending, Visitor<V> visitor) {
+    if (node == null) {
+      return true;
+    }
+    Node<V> first = ascending ? node.left : node.right;
+    Node<V> second = ascending ? node.right : node.left;
+    return forEach(first, ascending, visitor) && visitor.visit(node.key, node.value)
+        && forEach(second, ascending, visitor);
+  }
+
+  private static <V> Node<V> put(Node<V> node, long key, V value) {
+    if (node == null) {
+      return new Node<V>(key, value, null, null);
+    }
+    if (key < node.key) {
+      return balance(node.key, node.value, put(node.left, key, value), node.right);
+    }
+    if (key > node.key) {
+      return balance(node.key, node.value, node.left, put(node.right, key, value));
+    }
+    return new Node<V>(key, value, node.left, node.right);
+  }
+
+  private static <V> Node<V> remove(Node<V> node, long key) {
+    if (key < node.key) {
+      return balance(node.key, node.value, remove(node.left, key), node.right);
+    }
+    if (key > node.key) {
+      return balance(node.key, node.value, node.left, remove(node.right, key));
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    // replaced by its successor
+    Node<V> successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+  }
+
+  private static <V> Node<V> removeFirst(Node<V> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    return balance(node.key, node.value, removeFirst(node.left), node.right);
+  }
+
+  /*
+   * a node over two subtrees whose heights differ by at most 2, rotated back
+   * to differ by at most 1
+   */
+  private static <V> Node<V> balance(long key, V value, Node<V> left, Node<V> right) {
+    int leftHeight = height(left);
+    int rightHeight = height(right);
+    if (leftHeight > rightHeight + 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node<V>(left.key, left.value, left.left, new Node<V>(key, value, left.right, right));
+      }
+      Node<V> pivot = left.right;
+      return new Node<V>(pivot.key, pivot.value, new Node<V>(left.key, left.value, left.left, pivot.left),
+          new Node<V>(key, value, pivot.right, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node<V>(right.key, right.value, new Node<V>(key, value, left, right.left), right.right);
+      }
+      Node<V> pivot = right.left;
+      return new Node<V>(pivot.key, pivot.value, new Node<V>(key, value, left, pivot.left),
+          new Node<V>(right.key, right.value, pivot.right, right.right));
+    }
+    return new Node<V>(key, value, left, right);
+  }
+
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static final class Node<V> {
+    private final long key;
+    private final V value;
+    private final Node<V> left;
+    private final Node<V> right;
+    private final int height;
+
+    Node(long key, V value, Node<V> left, Node<V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = 1 + Math.max(height(left), height(right));
+    }
+  }
+}
@@ -0,0 +1,303 @@
+package com.cfbenchmarks.interview;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.NoSuchElementException;
+
+/*
+ * the price levels of one side of a book, kept in best price first order
+ * a skip list keyed by primitive price, insert / remove are O(log n) and the
+ * best level is always the first node so reading it is O(1). The nodes are
+ * also indexed by price in an open addressing table so get is O(1), and adds
+ * to / deletes from an existing level never walk the list
+ *
+ * not thread safe, callers must synchronize. get and peekBestPrice only ever
+ * follow links forward or probe at most the whole table, so an unsynchronized
+ * reader racing a writer always terminates, it may just see a stale or torn
+ * answer
+ */
+class PriceLevels<V> implements Levels<V> {
+
+  private static final int MAX_HEIGHT = 32;
+  private static final int MIN_INDEX_SIZE = 16;
+
+  /** which side are we, buy levels are kept highest first, sell lowest first **/
+  private final Side side;
+  /** sentinel, its price is never compared **/
+  private final Node<V> head = new Node<V>(0, null, MAX_HEIGHT);
+  /** scratch space for the nodes preceding an insert / remove **/
+  private final Node<V>[] preceding = newNodes(MAX_HEIGHT);
+  /**
+   * nodes by price, linear probing with the node as its own key so a slot is
+   * read once. Never more than half full, a power of two in size
+   **/
+  private Node<V>[] index = newNodes(MIN_INDEX_SIZE);
+  private int height = 1;
+  private int size;
+  private int seed = 0x2545F491;
+
+  PriceLevels(Side side) {
+    requireNonNull(side);
+    this.side = side;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long bestPrice() {
+    Node<V> first = head.next[0];
+    if (first == null) {
+      throw new NoSuchElementException("no price levels");
+    }
+    return first.price;
+  }
+
+  /*
+   * prices are always positive so 0 can stand in for no levels
+   */
+  @Override
+  public long peekBestPrice() {
+    Node<V> first = head.next[0];
+    return first == null ? 0 : first.price;
+  }
+
+  @Override
+  public V best() {
+    Node<V> first = head.next[0];
+    return first == null ? null : first.value;
+  }
+
+  @Override
+  public V get(long price) {
+    // read the table once, a racing writer may swap it for a bigger one
+    Node<V>[] table = index;
+    int mask = table.length - 1;
+    int slot = hash(price) & mask;
+    for (int probes = 0; probes < table.length; probes++) {
+      Node<V> node = table[slot];
+      if (node == null) {
+        return null;
+      }
+      if (node.price == price) {
+        return node.value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  @Override
+  public V put(long price, V value) {
+    requireNonNull(value);
+    Node<V> existing = indexed(price);
+    if (existing != null) {
+      V previous = existing.value;
+      existing.value = value;
+      return previous;
+    }
+
+    findPreceding(price);
+    int nodeHeight = randomHeight();
+    if (nodeHeight > height) {
+      for (int i = height; i < nodeHeight; i++) {
+        preceding[i] = head;
+      }
+      height = nodeHeight;
+    }
+    Node<V> inserted = new Node<V>(price, value, nodeHeight);
+    for (int i = 0; i < nodeHeight; i++) {
+      inserted.next[i] = preceding[i].next[i];
+      preceding[i].next[i] = inserted;
+    }
+    size++;
+    clearPreceding();
+    addToIndex(inserted);
+    return null;
+  }
+
+  @Override
+  public V remove(long price) {
+    if (indexed(price) == null) {
+      return null;
+    }
+    Node<V> node = findPreceding(price);
+    for (int i = 0; i < node.next.length; i++) {
+      preceding[i].next[i] = node.next[i];
+    }
+    clearPreceding();
+    while (height > 1 && head.next[height - 1] == null) {
+      height--;
+    }
+    size--;
+    removeFromIndex(price);
+    return node.value;
+  }
+
+  /**
+   * step through the levels without allocating, O(log n)
+   *
+   * @return the next price after this one in best first order, or 0 if there
+   *         is none. The price itself need not be a level
+   */
+  long after(long price) {
+    Node<V> node = head;
+    for (int i = height - 1; i >= 0; i--) {
+      Node<V> next = node.next[i];
+      while (next != null && !before(price, next.price)) {
+        node = next;
+        next = node.next[i];
+      }
+    }
+    Node<V> found = node.next[0];
+    return found == null ? 0 : found.price;
+  }
+
+  @Override
+  public <C> int forBest(int limit, C context, Visitor<V, C> visitor) {
+    int visited = 0;
+    for (Node<V> node = head.next[0]; node != null && visited < limit; node = node.next[0]) {
+      visitor.visit(context, node.price, node.value);
+      visited++;
+    }
+    return visited;
+  }
+
+  /*
+   * fills preceding with the last node before price at each height and returns
+   * the first node at or after the price
+   */
+  private Node<V> findPreceding(long price) {
+    Node<V> node = head;
+    for (int i = height - 1; i >= 0; i--) {
+      while (node.next[i] != null && before(node.next[i].price, price)) {
+        node = node.next[i];
+      }
+      preceding[i] = node;
+    }
+    return node.next[0];
+  }
+
+  /*
+   * don't keep references to removed nodes alive
+   */
+  private void clearPreceding() {
+    for (int i = 0; i < height; i++) {
+      preceding[i] = null;
+    }
+  }
+
+  private Node<V> indexed(long price) {
+    int mask = index.length - 1;
+    for (int slot = hash(price) & mask;; slot = (slot + 1) & mask) {
+      Node<V> node = index[slot];
+      if (node == null || node.price == price) {
+        return node;
+      }
+    }
+  }
+
+  private void addToIndex(Node<V> node) {
+    if (size * 2 > index.length) {
+      // fill a new table before publishing it, readers see the old or new one
+      Node<V>[] grown = newNodes(index.length * 2);
+      for (Node<V> existing : index) {
+        if (existing != null) {
+          insertInto(grown, existing);
+        }
+      }
+      index = grown;
+    }
+    insertInto(index, node);
+  }
+
+  private static <V> void insertInto(Node<V>[] table, Node<V> node) {
+    int mask = table.length - 1;
+    int slot = hash(node.price) & mask;
+    while (table[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = node;
+  }
+
+  /*
+   * backward shift deletion, later entries of the probe run move up into the
+   * gap so no tombstones are needed and lookups stay short
+   */
+  private void removeFromIndex(long price) {
+    Node<V>[] table = index;
+    int mask = table.length - 1;
+    int gap = hash(price) & mask;
+    while (table[gap].price != price) {
+      gap = (gap + 1) & mask;
+    }
+    for (int slot = (gap + 1) & mask;; slot = (slot + 1) & mask) {
+      Node<V> node = table[slot];
+      if (node == null) {
+        break;
+      }
+      int home = hash(node.price) & mask;
+      // move it up unless its home lies cyclically in (gap, slot]
+      if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+        table[gap] = node;
+        gap = slot;
+      }
+    }
+    table[gap] = null;
+  }
+
+  /*
+   * the one place a generic node array is made
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static <V> Node<V>[] newNodes(int size) {
+    return new Node[size];
+  }
+
+  /*
+   * prices are usually a few ticks apart, spread them over the whole table
+   */
+  private static int hash(long price) {
+    long h = price * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /*
+   * true if price a is a better price than b for our side
+   */
+  private boolean before(long a, long b) {
+    return side == Side.BUY ? a > b : a < b;
+  }
+
+  /*
+   * geometric distribution with p = 1/2 from a xorshift generator
+   */
+  private int randomHeight() {
+    int x = seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    seed = x;
+    int nodeHeight = Integer.numberOfTrailingZeros(x | (1 << (MAX_HEIGHT - 1))) + 1;
+    return Math.min(nodeHeight, MAX_HEIGHT);
+  }
+
+  private static class Node<V> {
+    final long price;
+    final Node<V>[] next;
+    V value;
+
+    Node(long price, V value, int height) {
+      this.price = price;
+      this.value = value;
+      this.next = newNodes(height);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.cfbenchmarks.interview;
+
+/*
+ * an order resting in a book, linked into the FIFO queue of its price level
+ * the links are intrusive so the order can be found through the by-id map and
+ * unlinked in O(1) without walking the queue
+ *
+ * this is the book's mutable record of the order, a modify only changes the
+ * quantity here and the public immutable Order is rebuilt when next read
+ *
+ * only touch the links, quantity and order while holding the book's write lock
+ */
+class RestingOrder {
+
+  /**
+   * the last public view of the order, its id, instrument, side and price are
+   * always right but its quantity may be stale
+   **/
+  Order order;
+  /** the current quantity **/
+  long quantity;
+  /** the book we rest in, so modify and delete need no lookup **/
+  final OrderBook book;
+  /** the order ahead of us at this level, null if we are first **/
+  RestingOrder prev;
+  /** the order behind us at this level, null if we are last **/
+  RestingOrder next;
+  /** when we joined the back of our level, our key in the book's snapshot **/
+  long sequence;
+
+  RestingOrder(Order order, OrderBook book) {
+    this.order = order;
+    this.quantity = order.getQuantity();
+    this.book = book;
+  }
+
+  /**
+   * @return the public order, rebuilt if the quantity has changed. Readers
+   *         only hold the read lock so this never writes order back
+   */
+  Order toOrder() {
+    Order view = order;
+    return view.getQuantity() == quantity ? view : view.withQuantity(quantity);
+  }
+
+  /**
+   * as toOrder but keeps the rebuilt order, only call holding the write lock
+   */
+  Order refresh() {
+    Order view = order;
+    if (view.getQuantity() != quantity) {
+      view = view.withQuantity(quantity);
+      order = view;
+    }
+    return view;
+  }
+}
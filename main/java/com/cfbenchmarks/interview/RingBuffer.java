@@ -0,0 +1,163 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * a bounded, preallocated ring of mutable entries, many producers one consumer
+ *
+ * producers claim a sequence, fill in the entry at that sequence and publish
+ * it. The consumer hands published entries to a handler in sequence order.
+ * Entries are created once up front and re-used, nothing is allocated per
+ * message
+ *
+ * claiming is lock free, one CAS per claim. The closed flag is a bit of the
+ * same counter so a claim either gets a sequence before close or is refused
+ * after it. Close then waits for every sequence handed out to be published,
+ * so a producer must always publish what it claims
+ */
+class RingBuffer<E> {
+
+  /** the bit of claimed set once closed, far above any sequence **/
+  private static final long CLOSED = 1L << 62;
+
+  private final E[] entries;
+  private final int mask;
+  /** the next sequence to hand out to a producer, with CLOSED set once closed **/
+  private final AtomicLong claimed = new AtomicLong();
+  /** the sequence published into each slot, written by producers **/
+  private final AtomicLongArray published;
+  /** the last sequence the consumer has finished with **/
+  private final AtomicLong consumed = new AtomicLong(-1);
+
+  /**
+   * @param size    number of entries, must be a power of two
+   * @param factory creates the entries up front
+   */
+  @SuppressWarnings("unchecked")
+  RingBuffer(int size, Supplier<E> factory) {
+    checkArgument(size > 0 && Integer.bitCount(size) == 1, "size must be a power of two");
+    requireNonNull(factory);
+    this.entries = (E[]) new Object[size];
+    this.mask = size - 1;
+    this.published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      entries[i] = factory.get();
+      published.set(i, -1);
+    }
+  }
+
+  int size() {
+    return entries.length;
+  }
+
+  /**
+   * claim the next sequence, spinning while the ring is full
+   *
+   * @return the claimed sequence, fill in {@link #get(long)} then
+   *         {@link #publish(long)} it. -1 if the ring is closed
+   */
+  long claim() {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if ((sequence & CLOSED) != 0) {
+        return -1;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+    long wrapPoint = sequence - entries.length;
+    while (wrapPoint > consumed.get()) {
+      // full, wait for the consumer to free the slot
+      Thread.yield();
+    }
+    return sequence;
+  }
+
+  /**
+   * @return the last sequence handed out, -1 if none has been
+   */
+  long lastClaimed() {
+    return (claimed.get() & ~CLOSED) - 1;
+  }
+
+  E get(long sequence) {
+    return entries[(int) sequence & mask];
+  }
+
+  void publish(long sequence) {
+    published.set((int) sequence & mask, sequence);
+  }
+
+  boolean isClosed() {
+    return (claimed.get() & CLOSED) != 0;
+  }
+
+  /**
+   * refuse any further claims, waiting for those in flight to be published.
+   * The consumer must still be draining or this waits for as long as a
+   * producer waits for a full ring
+   */
+  void close() {
+    long last = refuseClaims();
+    // no slot is reused after the last claim, so a slot holding less than the
+    // sequence due in it is still being filled
+    for (long sequence = Math.max(0, last - mask); sequence <= last; sequence++) {
+      while (published.get((int) sequence & mask) < sequence) {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * consumer only, close and hand everything still in the ring to the handler,
+   * for a consumer that is stopping and won't drain again
+   *
+   * @param handler called for each entry left over, e.g. to fail it
+   */
+  void close(Consumer<E> handler) {
+    long last = refuseClaims();
+    // producers may be waiting on a full ring, keep making room for them
+    while (consumed.get() < last) {
+      if (drain(handler, entries.length) == 0) {
+        Thread.yield();
+      }
+    }
+  }
+
+  /*
+   * set the closed bit, @return the last sequence handed out
+   */
+  private long refuseClaims() {
+    long next;
+    do {
+      next = claimed.get();
+    } while (!claimed.compareAndSet(next, next | CLOSED));
+    return (next & ~CLOSED) - 1;
+  }
+
+  /**
+   * consumer only, hand every published entry to the handler in order
+   *
+   * @param handler called for each entry, the entry may be re-used as soon as it
+   *                returns
+   * @param limit   the most entries to handle in one go
+   * @return the number of entries handled
+   */
+  int drain(Consumer<E> handler, int limit) {
+    long next = consumed.get() + 1;
+    int handled = 0;
+    while (handled < limit && published.get((int) next & mask) == next) {
+      handler.accept(get(next));
+      // free the slot as we go so producers are not held up by a long batch
+      consumed.lazySet(next);
+      next++;
+      handled++;
+    }
+    return handled;
+  }
+}
@@ -0,0 +1,208 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/*
+ * every call is put on a preallocated ring buffer and applied in sequence by
+ * one writer thread, so gateway threads never fight over a book's lock and
+ * the books themselves are not locked at all
+ *
+ * the async methods hand back a future for the result, the OrderBookManager
+ * methods wait for it. Queries are sequenced too so they always see every
+ * earlier write from the same caller
+ *
+ * the writer spins while there is work and backs off when idle, pin it to a
+ * core from outside the JVM (e.g. taskset) for the lowest latency
+ */
+public class SequencedOrderBookManager implements OrderBookManager, AutoCloseable {
+
+  static final int DEFAULT_RING_SIZE = 1 << 14;
+  /** most commands applied before checking if we should stop **/
+  private static final int DRAIN_LIMIT = 1024;
+  private static final int SPIN_TRIES = 1000;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /** only ever touched by the writer thread **/
+  private final OrderBookManagerImpl m_books = new OrderBookManagerImpl(true);
+  private final RingBuffer<OrderCommand> m_ring;
+  private final Consumer<OrderCommand> m_apply = this::apply;
+  private final Consumer<OrderCommand> m_reject = this::reject;
+  private final Thread m_writer;
+  private volatile boolean m_running = true;
+
+  public SequencedOrderBookManager() {
+    this(DEFAULT_RING_SIZE);
+  }
+
+  /**
+   * @param ringSize the most commands in flight, a power of two. Callers spin
+   *                 when it is full
+   */
+  public SequencedOrderBookManager(int ringSize) {
+    m_ring = new RingBuffer<OrderCommand>(ringSize, OrderCommand::new);
+    m_writer = new Thread(this::run, "order-book-writer");
+    m_writer.setDaemon(true);
+    m_writer.start();
+  }
+
+  public CompletableFuture<Void> addOrderAsync(Order order) {
+    validateArg(order, "order cannot be null");
+    CompletableFuture<Void> future = new CompletableFuture<Void>();
+    long sequence = claim();
+    m_ring.get(sequence).add(order);
+    return publish(sequence, future);
+  }
+
+  public CompletableFuture<Boolean> modifyOrderAsync(String orderId, long newQuantity) {
+    validateArg(orderId, "orderId cannot be null");
+    checkArgument(newQuantity > 0, "Quantity must be positive");
+    CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+    long sequence = claim();
+    m_ring.get(sequence).modify(orderId, newQuantity);
+    return publish(sequence, future);
+  }
+
+  public CompletableFuture<Boolean> deleteOrderAsync(String orderId) {
+    validateArg(orderId, "orderid cannot be null");
+    CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+    long sequence = claim();
+    m_ring.get(sequence).delete(orderId);
+    return publish(sequence, future);
+  }
+
+  public void addOrder(Order order) {
+    await(addOrderAsync(order));
+  }
+
+  public boolean modifyOrder(String orderId, long newQuantity) {
+    return await(modifyOrderAsync(orderId, newQuantity));
+  }
+
+  public boolean deleteOrder(String orderId) {
+    return await(deleteOrderAsync(orderId));
+  }
+
+  public Optional<Long> getBestPrice(String instrument, Side side) {
+    return await(query(OrderCommand.Type.BEST_PRICE, instrument, side, 0));
+  }
+
+  public long getOrderNumAtLevel(String instrument, Side side, long price) {
+    return this.<Long>await(query(OrderCommand.Type.ORDER_NUM, instrument, side, price));
+  }
+
+  public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+    return this.<Long>await(query(OrderCommand.Type.TOTAL_QUANTITY, instrument, side, price));
+  }
+
+  public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+    return this.<Long>await(query(OrderCommand.Type.TOTAL_VOLUME, instrument, side, price));
+  }
+
+  public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+    return await(query(OrderCommand.Type.ORDERS_AT_LEVEL, instrument, side, price));
+  }
+
+  /**
+   * stop taking commands, apply the ones already queued and stop the writer
+   */
+  @Override
+  public void close() {
+    // once the ring is closed every command claimed is published, the
+    // writer's last drain picks them all up
+    m_ring.close();
+    m_running = false;
+    try {
+      m_writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /*
+   * private methods
+   */
+
+  private <T> CompletableFuture<T> query(OrderCommand.Type type, String instrument, Side side, long price) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    long sequence = claim();
+    m_ring.get(sequence).query(type, instrument, side, price);
+    return publish(sequence, future);
+  }
+
+  /*
+   * a claimed sequence must be published or the ring stalls on it, so the
+   * callers make their future first and nothing between claim and publish
+   * can throw
+   */
+  private long claim() {
+    long sequence = m_ring.claim();
+    if (sequence < 0) {
+      throw new IllegalStateException("order book manager is closed");
+    }
+    return sequence;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> CompletableFuture<T> publish(long sequence, CompletableFuture<T> future) {
+    m_ring.get(sequence).result = (CompletableFuture<Object>) (CompletableFuture<?>) future;
+    m_ring.publish(sequence);
+    return future;
+  }
+
+  /*
+   * rethrow what the writer threw, so the sync methods throw as
+   * OrderBookManagerImpl would
+   */
+  private <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void apply(OrderCommand command) {
+    command.applyAndComplete(m_books);
+    command.clear();
+  }
+
+  private void reject(OrderCommand command) {
+    if (command.result != null) {
+      command.result.completeExceptionally(new IllegalStateException("order book manager is closed"));
+    }
+    command.clear();
+  }
+
+  private void run() {
+    try {
+      int idle = 0;
+      while (m_running) {
+        if (m_ring.drain(m_apply, DRAIN_LIMIT) > 0) {
+          idle = 0;
+        } else if (++idle > SPIN_TRIES) {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        } else {
+          Thread.yield();
+        }
+      }
+      // whatever was queued before we stopped
+      while (m_ring.drain(m_apply, DRAIN_LIMIT) > 0) {
+      }
+    } finally {
+      // nothing is left waiting on a writer that is gone, however it went
+      m_ring.close(m_reject);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * instruments are hashed over N shards, each a SequencedOrderBookManager
+ * with its own books, its own by id index and exactly one writer thread, so
+ * shards share no locks and N cores run N independent sets of books
+ *
+ * adds and queries are routed by instrument, modifies and deletes by the
+ * shard the order was added to. Order ids are unique across all shards, a
+ * deleted order's id can be reused once its delete has completed
+ */
+public class ShardedOrderBookManager implements OrderBookManager, AutoCloseable {
+
+  private final SequencedOrderBookManager[] m_shards;
+  /** the shard every resting order lives in, values are shared shard references **/
+  private final ConcurrentMap<String, SequencedOrderBookManager> m_shardByOrderId = new ConcurrentHashMap<String, SequencedOrderBookManager>();
+
+  public ShardedOrderBookManager() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public ShardedOrderBookManager(int shards) {
+    this(shards, SequencedOrderBookManager.DEFAULT_RING_SIZE);
+  }
+
+  /**
+   * @param shards   number of shards, each one starts a writer thread
+   * @param ringSize ring buffer size of each shard, a power of two
+   */
+  public ShardedOrderBookManager(int shards, int ringSize) {
+    checkArgument(shards > 0, "shards must be positive");
+    m_shards = new SequencedOrderBookManager[shards];
+    for (int i = 0; i < shards; i++) {
+      m_shards[i] = new SequencedOrderBookManager(ringSize);
+    }
+  }
+
+  public CompletableFuture<Void> addOrderAsync(Order order) {
+    validateArg(order, "order cannot be null");
+    String orderId = order.getOrderId();
+    SequencedOrderBookManager shard = shardFor(order.getInstrument());
+    // claim the id across all shards before it reaches its shard
+    checkArgument(m_shardByOrderId.putIfAbsent(orderId, shard) == null, "%s already exists", orderId);
+    CompletableFuture<Void> added;
+    try {
+      added = shard.addOrderAsync(order);
+    } catch (RuntimeException e) {
+      // a closed shard rejects the add before it is queued
+      m_shardByOrderId.remove(orderId, shard);
+      throw e;
+    }
+    return added.whenComplete((ignored, e) -> {
+      if (e != null) {
+        m_shardByOrderId.remove(orderId, shard);
+      }
+    });
+  }
+
+  public CompletableFuture<Boolean> modifyOrderAsync(String orderId, long newQuantity) {
+    validateArg(orderId, "orderId cannot be null");
+    return shardOf(orderId).modifyOrderAsync(orderId, newQuantity);
+  }
+
+  /**
+   * the id stays taken until the returned future completes, an add of the same
+   * id before then is rejected as already existing. The future only completes
+   * once the id is free again
+   */
+  public CompletableFuture<Boolean> deleteOrderAsync(String orderId) {
+    validateArg(orderId, "orderid cannot be null");
+    SequencedOrderBookManager shard = shardOf(orderId);
+    // only forget the shard once it has gone, modifies in flight still route.
+    // whenComplete's future completes after the mapping is removed
+    return shard.deleteOrderAsync(orderId).whenComplete((deleted, e) -> {
+      if (e == null && deleted) {
+        m_shardByOrderId.remove(orderId, shard);
+      }
+    });
+  }
+
+  public void addOrder(Order order) {
+    await(addOrderAsync(order));
+  }
+
+  public boolean modifyOrder(String orderId, long newQuantity) {
+    return await(modifyOrderAsync(orderId, newQuantity));
+  }
+
+  public boolean deleteOrder(String orderId) {
+    return await(deleteOrderAsync(orderId));
+  }
+
+  public Optional<Long> getBestPrice(String instrument, Side side) {
+    return shardFor(instrument).getBestPrice(instrument, side);
+  }
+
+  public long getOrderNumAtLevel(String instrument, Side side, long price) {
+    return shardFor(instrument).getOrderNumAtLevel(instrument, side, price);
+  }
+
+  public long getTotalQuantityAtLevel(String instrument, Side side, long price) {
+    return shardFor(instrument).getTotalQuantityAtLevel(instrument, side, price);
+  }
+
+  public long getTotalVolumeAtLevel(String instrument, Side side, long price) {
+    return shardFor(instrument).getTotalVolumeAtLevel(instrument, side, price);
+  }
+
+  public List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
+    return shardFor(instrument).getOrdersAtLevel(instrument, side, price);
+  }
+
+  int shardCount() {
+    return m_shards.length;
+  }
+
+  /**
+   * stop every shard, commands already queued are applied first
+   */
+  @Override
+  public void close() {
+    for (SequencedOrderBookManager shard : m_shards) {
+      shard.close();
+    }
+  }
+
+  /*
+   * private methods
+   */
+
+  private SequencedOrderBookManager shardFor(String instrument) {
+    validateArg(instrument, "instrument cannot be null");
+    int hash = instrument.hashCode();
+    // spread the high bits, instrument names often differ only at the end
+    hash ^= hash >>> 16;
+    return m_shards[Math.floorMod(hash, m_shards.length)];
+  }
+
+  private SequencedOrderBookManager shardOf(String orderId) {
+    SequencedOrderBookManager shard = m_shardByOrderId.get(orderId);
+    if (shard == null) {
+      throw new IllegalArgumentException(orderId + " does not exist");
+    }
+    return shard;
+  }
+
+  private <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,266 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.Validation.validateArg;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+ * point in time snapshots of every book of a manager, so a restart loads the
+ * last snapshot and replays only the journal records since
+ *
+ * taking a snapshot copies the books' resting orders without holding up
+ * writers for the whole copy, see OrderBookManagerImpl.copyOrders, a
+ * background thread then writes them out. A journaling manager must be built
+ * with snapshots, so the copy is of one instant to replay the journal from. A snapshot is
+ * written to a temporary file and moved into place, so a crash never leaves a
+ * partial one behind
+ *
+ * the file is a header
+ *   magic int, version int, journal sequence long, book count int
+ * then per book
+ *   instrument, side byte, order count int
+ *   then per order, best level first and oldest first within a level
+ *     order id, price long, quantity long
+ * strings are an int length then UTF-8. Adding the orders back in file order
+ * rebuilds every level's queue and the by-id index. Files are named by
+ * journal sequence, so without a journal each snapshot replaces the last
+ */
+public class Snapshotter implements AutoCloseable {
+
+  static final int MAGIC = 0x4f425353;
+  static final int VERSION = 1;
+  private static final String SUFFIX = ".snapshot";
+  private static final int HEADER = 4 + 4 + 8 + 4;
+
+  private final OrderBookManagerImpl m_manager;
+  private final Path m_directory;
+  private final ScheduledExecutorService m_executor;
+
+  private Snapshotter(Builder builder) throws IOException {
+    m_manager = builder.manager;
+    m_directory = builder.directory;
+    Files.createDirectories(m_directory);
+    m_executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "snapshot-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (builder.intervalNanos > 0) {
+      m_executor.scheduleWithFixedDelay(this::snapshotQuietly, builder.intervalNanos, builder.intervalNanos,
+          TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * copy every book now, on the calling thread, and write the copy out on the
+   * snapshot thread
+   *
+   * @return the snapshot file, once it has been written
+   */
+  public Future<Path> snapshot() {
+    List<Order> copy = new ArrayList<Order>();
+    long sequence = m_manager.copyOrders(copy);
+    return m_executor.submit(() -> write(copy, sequence));
+  }
+
+  /**
+   * stop taking snapshots once any being written are finished
+   */
+  @Override
+  public void close() {
+    m_executor.shutdown();
+    try {
+      m_executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the latest snapshot in a directory, null if there is none
+   */
+  public static Path latest(Path directory) throws IOException {
+    validateArg(directory, "directory cannot be null");
+    if (!Files.isDirectory(directory)) {
+      return null;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).max(Path::compareTo)
+          .orElse(null);
+    }
+  }
+
+  /**
+   * add every order in a snapshot to a manager, normally a fresh one. See
+   * {@link Journal#recover(Path, OrderBookManager)} to carry on from the
+   * journal
+   *
+   * @return the sequence number of the first journal record not in the
+   *         snapshot
+   */
+  public static long load(Path snapshot, OrderBookManager manager) throws IOException {
+    validateArg(snapshot, "snapshot cannot be null");
+    validateArg(manager, "manager cannot be null");
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      checkArgument(buffer.remaining() >= HEADER && buffer.getInt() == MAGIC, snapshot + " is not a snapshot");
+      int version = buffer.getInt();
+      checkArgument(version == VERSION, "unknown snapshot version " + version);
+      long sequence = buffer.getLong();
+      new Loader(manager).load(buffer, buffer.getInt());
+      return sequence;
+    }
+  }
+
+  /*
+   * private methods
+   */
+
+  private void snapshotQuietly() {
+    try {
+      List<Order> copy = new ArrayList<Order>();
+      write(copy, m_manager.copyOrders(copy));
+    } catch (IOException | RuntimeException e) {
+      // try again next time rather than stop taking snapshots
+      Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+  }
+
+  private Path write(List<Order> copy, long sequence) throws IOException {
+    // size it first so it can be written straight into a mapped file
+    long size = HEADER;
+    int books = 0;
+    Order previous = null;
+    for (Order order : copy) {
+      if (!sameBook(previous, order)) {
+        size += CommandCodec.lengthOfPrefixed(order.getInstrument()) + 1 + 4;
+        books++;
+      }
+      size += CommandCodec.lengthOfPrefixed(order.getOrderId()) + 8 + 8;
+      previous = order;
+    }
+    checkState(size <= Integer.MAX_VALUE, "snapshot is bigger than 2GB");
+
+    String name = String.format("%020d%s", sequence, SUFFIX);
+    Path temporary = m_directory.resolve(name + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(books);
+      for (int i = 0; i < copy.size();) {
+        Order first = copy.get(i);
+        int end = i + 1;
+        while (end < copy.size() && sameBook(first, copy.get(end))) {
+          end++;
+        }
+        CommandCodec.putPrefixedString(buffer, first.getInstrument());
+        buffer.put((byte) first.getSide().ordinal());
+        buffer.putInt(end - i);
+        for (; i < end; i++) {
+          Order order = copy.get(i);
+          CommandCodec.putPrefixedString(buffer, order.getOrderId());
+          buffer.putLong(order.getPrice());
+          buffer.putLong(order.getQuantity());
+        }
+      }
+      buffer.force();
+    }
+    return Files.move(temporary, m_directory.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static boolean sameBook(Order a, Order b) {
+    return a != null && a.getSide() == b.getSide() && a.getInstrument().equals(b.getInstrument());
+  }
+
+  public static class Builder {
+    private final OrderBookManagerImpl manager;
+    private final Path directory;
+    private long intervalNanos;
+
+    /**
+     * @param manager   the manager to snapshot
+     * @param directory where the snapshot files go, created if need be
+     */
+    public Builder(OrderBookManagerImpl manager, Path directory) {
+      validateArg(manager, "manager cannot be null");
+      validateArg(directory, "directory cannot be null");
+      checkArgument(manager.isCopyable(), "a journaling manager must be built with snapshots");
+      this.manager = manager;
+      this.directory = directory;
+    }
+
+    /**
+     * also take a snapshot every interval, on the snapshot thread. Off by
+     * default, snapshots are then only taken when asked for
+     */
+    public Builder setInterval(long interval, TimeUnit unit) {
+      checkArgument(interval > 0, "interval must be positive");
+      validateArg(unit, "unit cannot be null");
+      this.intervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    public Snapshotter open() {
+      try {
+        return new Snapshotter(this);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /*
+   * reads the books of one snapshot into manager calls, front to back
+   */
+  private static class Loader {
+    private final OrderBookManager manager;
+    private final Order.Builder orders = new Order.Builder();
+    private byte[] scratch = new byte[64];
+
+    Loader(OrderBookManager manager) {
+      this.manager = manager;
+    }
+
+    void load(MappedByteBuffer buffer, int books) {
+      for (int book = 0; book < books; book++) {
+        String instrument = getString(buffer);
+        Side side = Side.values()[buffer.get()];
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+          String orderId = getString(buffer);
+          long price = buffer.getLong();
+          long quantity = buffer.getLong();
+          manager.addOrder(orders.build(orderId, instrument, side, price, quantity));
+        }
+      }
+    }
+
+    private String getString(MappedByteBuffer buffer) {
+      int length = buffer.getInt();
+      if (length > scratch.length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      buffer.get(scratch, 0, length);
+      return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package com.cfbenchmarks.interview;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.NoSuchElementException;
+
+/*
+ * price levels for a liquid instrument whose prices cluster in a narrow band of
+ * ticks around the touch. Levels in the band live in a flat array indexed by
+ * (price - base) / tick with a bitset of the occupied slots, so get and put are
+ * an index calculation and finding the next best level is a bitset scan
+ *
+ * prices off the tick grid or outside the band fall back to a sparse
+ * PriceLevels. The band is recentred on the best price when the best drifts
+ * out of it, which also pulls the levels around the new best into the array
+ *
+ * not thread safe, callers must synchronize. The array never changes size so
+ * an unsynchronized get racing a writer, even a recentre, stays in bounds
+ */
+class TickLadder<V> implements Levels<V> {
+
+  /** which side are we, buy levels are best highest, sell lowest **/
+  private final Side side;
+  private final long tickSize;
+  /** the levels in the band, slot i is the price base + i * tickSize **/
+  private final Object[] band;
+  /** one bit per slot of band, set if the slot holds a level **/
+  private final long[] occupied;
+  /** levels that are off the tick grid or outside the band **/
+  private final PriceLevels<V> outside;
+  /** price of slot 0, always a multiple of tickSize **/
+  private long base;
+  private int bandCount;
+  private int size;
+  /** cached best price over the band and outside, 0 if empty **/
+  private long bestPrice;
+
+  /**
+   * @param side       buy or sell
+   * @param tickSize   prices that are a multiple of this can go in the band
+   * @param bandLevels number of ticks in the band
+   */
+  TickLadder(Side side, long tickSize, int bandLevels) {
+    requireNonNull(side);
+    checkArgument(tickSize > 0, "tickSize must be positive");
+    checkArgument(bandLevels > 0, "bandLevels must be positive");
+    this.side = side;
+    this.tickSize = tickSize;
+    this.band = new Object[bandLevels];
+    this.occupied = new long[(bandLevels + 63) >>> 6];
+    this.outside = new PriceLevels<V>(side);
+    this.base = tickSize;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long bestPrice() {
+    if (bestPrice == 0) {
+      throw new NoSuchElementException("no price levels");
+    }
+    return bestPrice;
+  }
+
+  @Override
+  public long peekBestPrice() {
+    return bestPrice;
+  }
+
+  @Override
+  public V best() {
+    return bestPrice == 0 ? null : get(bestPrice);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(long price) {
+    int slot = slotOf(price);
+    if (slot >= 0) {
+      return (V) band[slot];
+    }
+    return outside.isEmpty() ? null : outside.get(price);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V put(long price, V value) {
+    requireNonNull(value);
+    if (bandCount == 0 && price % tickSize == 0) {
+      // nothing in the band to move, centre it on the best we will have
+      recentre(bestPrice != 0 && bestPrice % tickSize == 0 && before(bestPrice, price) ? bestPrice : price);
+    }
+
+    int slot = slotOf(price);
+    if (slot >= 0) {
+      V previous = (V) band[slot];
+      band[slot] = value;
+      if (previous == null) {
+        occupied[slot >>> 6] |= 1L << slot;
+        bandCount++;
+        added(price);
+      }
+      return previous;
+    }
+
+    V previous = outside.put(price, value);
+    if (previous == null) {
+      added(price);
+      if (price == bestPrice && price % tickSize == 0) {
+        // the touch has drifted out of the band
+        recentre(price);
+      }
+    }
+    return previous;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V remove(long price) {
+    int slot = slotOf(price);
+    V removed;
+    if (slot >= 0) {
+      removed = (V) band[slot];
+      if (removed == null) {
+        return null;
+      }
+      band[slot] = null;
+      occupied[slot >>> 6] &= ~(1L << slot);
+      bandCount--;
+    } else {
+      removed = outside.remove(price);
+      if (removed == null) {
+        return null;
+      }
+    }
+
+    size--;
+    if (price == bestPrice) {
+      bestPrice = better(bandBest(), outside.peekBestPrice());
+      if (bandCount == 0 && bestPrice % tickSize == 0 && bestPrice != 0) {
+        recentre(bestPrice);
+      }
+    }
+    return removed;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <C> int forBest(int limit, C context, Visitor<V, C> visitor) {
+    // merge the band and outside, both already best first
+    int visited = 0;
+    long next = outside.peekBestPrice();
+    for (int i = 0; i < band.length && visited < limit; i++) {
+      int slot = side == Side.BUY ? band.length - 1 - i : i;
+      // read the slot once, a racing writer may clear it
+      V value = (V) band[slot];
+      if (value == null) {
+        continue;
+      }
+      long price = priceOf(slot);
+      while (next != 0 && before(next, price) && visited < limit) {
+        visitor.visit(context, next, outside.get(next));
+        visited++;
+        next = outside.after(next);
+      }
+      if (visited < limit) {
+        visitor.visit(context, price, value);
+        visited++;
+      }
+    }
+    for (; next != 0 && visited < limit; next = outside.after(next)) {
+      visitor.visit(context, next, outside.get(next));
+      visited++;
+    }
+    return visited;
+  }
+
+  /*
+   * private methods
+   */
+
+  /*
+   * the band slot of a price, or -1 if it doesn't have one
+   */
+  private int slotOf(long price) {
+    long offset = price - base;
+    long ticks = offset / tickSize;
+    if (offset < 0 || ticks * tickSize != offset) {
+      return -1;
+    }
+    return ticks < band.length ? (int) ticks : -1;
+  }
+
+  private void added(long price) {
+    size++;
+    if (bestPrice == 0 || before(price, bestPrice)) {
+      bestPrice = price;
+    }
+  }
+
+  /*
+   * the best price in the band or 0, scanning one word of the bitset at a time
+   */
+  private long bandBest() {
+    if (bandCount == 0) {
+      return 0;
+    }
+    if (side == Side.BUY) {
+      for (int word = occupied.length - 1; word >= 0; word--) {
+        if (occupied[word] != 0) {
+          return priceOf((word << 6) + 63 - Long.numberOfLeadingZeros(occupied[word]));
+        }
+      }
+    } else {
+      for (int word = 0; word < occupied.length; word++) {
+        if (occupied[word] != 0) {
+          return priceOf((word << 6) + Long.numberOfTrailingZeros(occupied[word]));
+        }
+      }
+    }
+    return 0;
+  }
+
+  private long priceOf(int slot) {
+    return base + slot * tickSize;
+  }
+
+  /*
+   * move the band so the price is in its middle. Levels that fall out of the
+   * band go outside, outside levels that now fit come in. O(levels), only
+   * happens when the touch moves half a band
+   */
+  @SuppressWarnings("unchecked")
+  private void recentre(long centre) {
+    long newBase = Math.max(tickSize, (centre / tickSize - band.length / 2) * tickSize);
+    if (newBase == base) {
+      return;
+    }
+
+    for (int slot = 0; slot < band.length && bandCount > 0; slot++) {
+      if (band[slot] != null) {
+        outside.put(priceOf(slot), (V) band[slot]);
+        band[slot] = null;
+        bandCount--;
+      }
+    }
+    for (int word = 0; word < occupied.length; word++) {
+      occupied[word] = 0;
+    }
+    base = newBase;
+
+    for (long price = outside.peekBestPrice(); price != 0;) {
+      long next = outside.after(price);
+      int slot = slotOf(price);
+      if (slot >= 0) {
+        band[slot] = outside.remove(price);
+        occupied[slot >>> 6] |= 1L << slot;
+        bandCount++;
+      }
+      price = next;
+    }
+  }
+
+  /*
+   * the better of two prices for our side, 0 means no price
+   */
+  private long better(long a, long b) {
+    if (a == 0) {
+      return b;
+    }
+    if (b == 0) {
+      return a;
+    }
+    return before(a, b) ? a : b;
+  }
+
+  /*
+   * true if price a is a better price than b for our side
+   */
+  private boolean before(long a, long b) {
+    return side == Side.BUY ? a > b : a < b;
+  }
+}
@@ -0,0 +1,109 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.cfbenchmarks.interview.BatchResults.Outcome;
+
+public class BatchTest {
+
+  private OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+  private BatchResults results = new BatchResults(16);
+
+  @Test
+  public void mixedInstruments() {
+    orderBookManager.addOrder(new Order.Builder().build("old", "BARC.L", Side.SELL, 400, 10));
+
+    OrderCommand[] commands = commands(6);
+    commands[0].add(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    commands[1].add(new Order.Builder().build("order2", "BARC.L", Side.SELL, 300, 10));
+    commands[2].add(new Order.Builder().build("order3", "VOD.L", Side.BUY, 200, 5));
+    // added earlier in this batch
+    commands[3].modify("order1", 20);
+    commands[4].delete("old");
+    commands[5].modify("order3", 5);
+    orderBookManager.applyBatch(commands, 6, results);
+
+    assertEquals(6, results.size());
+    assertEquals(0, results.rejections());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Outcome.APPLIED, results.getOutcome(i));
+    }
+    assertEquals(Outcome.UNCHANGED, results.getOutcome(5));
+
+    // order1 went to the back of the queue
+    assertEquals(25, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.BUY, 200));
+    assertEquals("order3", orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200).get(0).getOrderId());
+    assertEquals(Optional.of(300L), orderBookManager.getBestPrice("BARC.L", Side.SELL));
+    assertEquals(0, orderBookManager.getOrderNumAtLevel("BARC.L", Side.SELL, 400));
+  }
+
+  @Test
+  public void rejectionsDontStopTheBatch() {
+    OrderCommand[] commands = commands(6);
+    commands[0].add(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    commands[1].add(new Order.Builder().build("order1", "VOD.L", Side.BUY, 300, 10));
+    commands[2].modify("order1", -1);
+    commands[3].delete("not there");
+    commands[4].query(OrderCommand.Type.BEST_PRICE, "VOD.L", Side.BUY, 0);
+    commands[5].delete("order1");
+    orderBookManager.applyBatch(commands, 6, results);
+
+    assertEquals(Outcome.APPLIED, results.getOutcome(0));
+    assertNull(results.getError(0));
+    for (int i = 1; i < 5; i++) {
+      assertEquals(Outcome.REJECTED, results.getOutcome(i));
+      assertTrue(results.getError(i) instanceof IllegalArgumentException);
+    }
+    assertEquals(Outcome.APPLIED, results.getOutcome(5));
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice("VOD.L", Side.BUY));
+
+    // reuse for a smaller batch
+    commands[0].add(new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.applyBatch(commands, 1, results);
+    assertEquals(1, results.size());
+    assertEquals(0, results.rejections());
+    DataValidationTest.assertThrows(IndexOutOfBoundsException.class, () -> {
+      results.getOutcome(1);
+    });
+  }
+
+  @Test
+  public void matchingInOrder() {
+    List<String> fills = new ArrayList<String>();
+    OrderBookManagerImpl matching = new OrderBookManagerImpl((instrument, aggressorSide, aggressorOrderId,
+        restingOrderId, price, quantity) -> fills.add(aggressorOrderId + "/" + restingOrderId));
+
+    OrderCommand[] commands = commands(3);
+    commands[0].add(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    commands[1].add(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 200, 10));
+    commands[2].delete("sell1");
+    matching.applyBatch(commands, 3, results);
+
+    assertEquals(Outcome.APPLIED, results.getOutcome(0));
+    assertEquals(Outcome.APPLIED, results.getOutcome(1));
+    // already filled
+    assertEquals(Outcome.REJECTED, results.getOutcome(2));
+    assertEquals(1, fills.size());
+  }
+
+  @Test
+  public void tooBig() {
+    DataValidationTest.assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.applyBatch(commands(17), 17, results);
+    });
+  }
+
+  private static OrderCommand[] commands(int count) {
+    OrderCommand[] commands = new OrderCommand[count];
+    for (int i = 0; i < count; i++) {
+      commands[i] = new OrderCommand();
+    }
+    return commands;
+  }
+}
@@ -0,0 +1,146 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class BookSnapshotTest {
+
+  private final OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setSnapshots(true)
+      .build();
+
+  @Test
+  public void snapshotsDontChange() {
+    BookSnapshot empty = orderBookManager.getSnapshot("VOD.L", Side.BUY);
+    assertEquals(Optional.empty(), empty.getBestPrice());
+
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order3", "VOD.L", Side.BUY, 199, 10));
+    BookSnapshot before = orderBookManager.getSnapshot("VOD.L", Side.BUY);
+
+    // modify up loses its place, down keeps it
+    orderBookManager.modifyOrder("order1", 20);
+    orderBookManager.modifyOrder("order2", 5);
+    orderBookManager.deleteOrder("order3");
+    BookSnapshot after = orderBookManager.getSnapshot("VOD.L", Side.BUY);
+
+    assertEquals(3, before.getOrderCount());
+    assertEquals(2, before.getLevelCount());
+    assertEquals(Arrays.asList("order1", "order2"), orderIds(before.getOrdersAtLevel(200)));
+    assertEquals(20, before.getTotalQuantityAtLevel(200));
+    assertEquals(10, before.getTotalQuantityAtLevel(199));
+
+    assertEquals(2, after.getOrderCount());
+    assertEquals(1, after.getLevelCount());
+    assertEquals(orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200), after.getOrdersAtLevel(200));
+    assertEquals(25, after.getTotalQuantityAtLevel(200));
+    assertEquals(5000, after.getTotalVolumeAtLevel(200));
+    assertEquals(0, after.getOrderNumAtLevel(199));
+    assertEquals(Optional.of(200L), after.getBestPrice());
+    assertEquals(0, empty.getOrderCount());
+
+    assertThrows(IllegalStateException.class, () -> {
+      new OrderBookManagerImpl().getSnapshot("VOD.L", Side.BUY);
+    });
+  }
+
+  @Test
+  public void matchesTheBook() {
+    // random adds, modifies, deletes and fills, the snapshot always agrees
+    // with the live book
+    OrderBookManagerImpl matching = new OrderBookManagerImpl.Builder().setSnapshots(true).setFillListener(
+        (instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> {
+        }).build();
+    Random random = new Random(42);
+    List<String> orderIds = new ArrayList<String>();
+    for (int i = 0; i < 5000; i++) {
+      int action = random.nextInt(4);
+      if (action < 2 || orderIds.isEmpty()) {
+        String orderId = "order" + i;
+        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+        matching.addOrder(new Order.Builder().build(orderId, "VOD.L", side, 95 + random.nextInt(10), 1 + random
+            .nextInt(20)));
+        orderIds.add(orderId);
+      } else {
+        String orderId = orderIds.remove(random.nextInt(orderIds.size()));
+        try {
+          if (action == 2) {
+            matching.deleteOrder(orderId);
+          } else {
+            matching.modifyOrder(orderId, 1 + random.nextInt(20));
+            orderIds.add(orderId);
+          }
+        } catch (IllegalArgumentException e) {
+          // filled already
+        }
+      }
+      if (i % 50 == 0) {
+        assertMatches(matching, Side.BUY);
+        assertMatches(matching, Side.SELL);
+      }
+    }
+  }
+
+  @Test
+  public void walkWhileWriting() throws Exception {
+    // a reader walking full depth sees each snapshot's totals add up, whatever
+    // the writer does meanwhile
+    AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; !done.get(); i++) {
+        orderBookManager.addOrder(new Order.Builder().build("order" + i, "VOD.L", Side.SELL, 100 + i % 20, 5));
+        if (i >= 100) {
+          orderBookManager.deleteOrder("order" + (i - 100));
+        }
+      }
+    });
+    writer.start();
+    try {
+      DepthBuffer depth = new DepthBuffer(32);
+      for (int i = 0; i < 2000; i++) {
+        BookSnapshot snapshot = orderBookManager.getSnapshot("VOD.L", Side.SELL);
+        long[] quantity = new long[1];
+        int orders = snapshot.forEachOrder(order -> {
+          quantity[0] += order.getQuantity();
+          return true;
+        });
+        assertEquals(snapshot.getOrderCount(), orders);
+        assertEquals(5L * orders, quantity[0]);
+        long depthOrders = 0;
+        for (int level = 0; level < snapshot.getDepth(32, depth); level++) {
+          depthOrders += depth.getOrderNum(level);
+        }
+        assertEquals(orders, depthOrders);
+      }
+    } finally {
+      done.set(true);
+      writer.join();
+    }
+  }
+
+  private static void assertMatches(OrderBookManagerImpl manager, Side side) {
+    BookSnapshot snapshot = manager.getSnapshot("VOD.L", side);
+    assertEquals(manager.getBestPrice("VOD.L", side), snapshot.getBestPrice());
+    for (long price = 95; price < 105; price++) {
+      assertEquals(manager.getOrdersAtLevel("VOD.L", side, price), snapshot.getOrdersAtLevel(price));
+      assertEquals(manager.getTotalVolumeAtLevel("VOD.L", side, price), snapshot.getTotalVolumeAtLevel(price));
+    }
+  }
+
+  private static List<String> orderIds(List<Order> orders) {
+    List<String> orderIds = new ArrayList<String>();
+    for (Order order : orders) {
+      orderIds.add(order.getOrderId());
+    }
+    return orderIds;
+  }
+}
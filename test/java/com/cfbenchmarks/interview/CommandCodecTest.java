@@ -0,0 +1,118 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class CommandCodecTest {
+
+  private final CommandCodec codec = new CommandCodec();
+
+  @Test
+  public void addRoundTrip() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    Order order = new Order.Builder().build("order1", "VOD.L", Side.SELL, 200, 10);
+    int length = codec.wrap(buffer, 0).encodeAdd(order);
+
+    assertEquals(CommandCodec.lengthOfAdd(order), length);
+    assertEquals(CommandCodec.HEADER_LENGTH + 6 + 5, length);
+    CommandCodec decoder = new CommandCodec().wrap(buffer, 0);
+    assertEquals(CommandCodec.ADD, decoder.type());
+    assertEquals(Side.SELL, decoder.side());
+    assertEquals(200, decoder.price());
+    assertEquals(10, decoder.quantity());
+    assertEquals(length, decoder.length());
+    assertEquals(order, decoder.toOrder());
+  }
+
+  @Test
+  public void messagesBackToBack() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+    Order order = new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10);
+    int offset = 0;
+    offset += codec.wrap(buffer, offset).encodeAdd(order);
+    offset += codec.wrap(buffer, offset).encodeModify("order1", 20);
+    offset += codec.wrap(buffer, offset).encodeDelete("order1");
+
+    CommandCodec decoder = new CommandCodec();
+    OrderCommand command = new OrderCommand();
+    int position = 0;
+    decoder.wrap(buffer, position).decodeInto(command);
+    assertEquals(order, command.order);
+    position += decoder.length();
+
+    decoder.wrap(buffer, position).decodeInto(command);
+    assertEquals(OrderCommand.Type.MODIFY, command.type);
+    assertEquals("order1", command.orderId);
+    assertEquals(20, command.quantity);
+    position += decoder.length();
+
+    decoder.wrap(buffer, position).decodeInto(command);
+    assertEquals(OrderCommand.Type.DELETE, command.type);
+    assertEquals("order1", command.orderId);
+    position += decoder.length();
+    assertEquals(offset, position);
+  }
+
+  @Test
+  public void applyTo() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    codec.wrap(buffer, 0).encodeAdd(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    assertTrue(codec.applyTo(orderBookManager));
+    codec.wrap(buffer, 0).encodeModify("order1", 20);
+    assertTrue(codec.applyTo(orderBookManager));
+    assertEquals(20, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.BUY, 200));
+    codec.wrap(buffer, 0).encodeDelete("order1");
+    assertTrue(codec.applyTo(orderBookManager));
+    assertEquals(0, orderBookManager.getOrderNumAtLevel("VOD.L", Side.BUY, 200));
+  }
+
+  @Test
+  public void instrumentIsReused() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    int second = codec.wrap(buffer, 0).encodeAdd(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    codec.wrap(buffer, second).encodeAdd(new Order.Builder().build("order2", "VOD.L", Side.BUY, 201, 10));
+
+    CommandCodec decoder = new CommandCodec();
+    assertSame(decoder.wrap(buffer, 0).instrument(), decoder.wrap(buffer, second).instrument());
+  }
+
+  @Test
+  public void nonAscii() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    Order order = new Order.Builder().build("ordre-\u00e9", "BMW.DE\u20ac", Side.BUY, 200, 10);
+    int length = codec.wrap(buffer, 0).encodeAdd(order);
+    assertEquals(CommandCodec.HEADER_LENGTH + 8 + 9, length);
+    assertEquals(order, new CommandCodec().wrap(buffer, 0).toOrder());
+  }
+
+  @Test
+  public void encodeCommand() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    codec.wrap(buffer, 0).encode(new OrderCommand().modify("order1", 7));
+    assertEquals(CommandCodec.MODIFY, codec.type());
+    assertEquals(7, codec.quantity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noRoom() {
+    ByteBuffer buffer = ByteBuffer.allocate(32);
+    codec.wrap(buffer, 0).encodeAdd(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void orderIdTooLong() {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 17);
+    codec.wrap(buffer, 0).encodeDelete(new String(new char[CommandCodec.MAX_STRING_LENGTH + 1]).replace('\0', 'x'));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queriesCannotBeEncoded() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    codec.wrap(buffer, 0).encode(new OrderCommand().query(OrderCommand.Type.BEST_PRICE, "VOD.L", Side.BUY, 0));
+  }
+}
@@ -0,0 +1,79 @@
+package com.cfbenchmarks.interview;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.code.tempusfugit.concurrency.ConcurrentRule;
+import com.google.code.tempusfugit.concurrency.RepeatingRule;
+import com.google.code.tempusfugit.concurrency.annotations.Concurrent;
+import com.google.code.tempusfugit.concurrency.annotations.Repeating;
+
+public class ConcurrencyInstrumentsTest {
+
+  private static final int INSTRUMENTS = 5;
+
+  private static OrderBookManager orderBookManager;
+  private static AtomicInteger count = new AtomicInteger(0);
+  private static AtomicInteger duplicates = new AtomicInteger(0);
+
+  @Rule
+  public ConcurrentRule concurrently = new ConcurrentRule();
+  @Rule
+  public RepeatingRule repeatedly = new RepeatingRule();
+
+  @BeforeClass
+  public static void init() {
+    orderBookManager = new OrderBookManagerImpl();
+  }
+
+  @Test
+  @Concurrent(count = 10)
+  @Repeating(repetition = 200)
+  public void instruments() {
+    // spread the threads over the instruments
+    String instrument = "instrument" + (count.incrementAndGet() % INSTRUMENTS);
+
+    // one order rests, the other goes through a full lifecycle
+    addOrder(UUID.randomUUID().toString(), instrument, Side.BUY, 300, 5);
+    String orderId = UUID.randomUUID().toString();
+    addOrder(orderId, instrument, Side.SELL, 400, 5);
+    orderBookManager.modifyOrder(orderId, 6);
+    orderBookManager.modifyOrder(orderId, 2);
+
+    // the id is taken across every book
+    try {
+      addOrder(orderId, "other" + instrument, Side.BUY, 300, 5);
+    } catch (IllegalArgumentException e) {
+      duplicates.incrementAndGet();
+    }
+    orderBookManager.deleteOrder(orderId);
+  }
+
+  private static void addOrder(String orderId, String instrument, Side side, long price, long qty) {
+    orderBookManager.addOrder(new Order.Builder().build(orderId, instrument, side, price, qty));
+  }
+
+  @AfterClass
+  public static void check() {
+    // each test adds 1 resting buy order, 2000 in all
+    Assert.assertEquals(2000, count.get());
+    Assert.assertEquals(2000, duplicates.get());
+
+    for (int i = 0; i < INSTRUMENTS; i++) {
+      String instrument = "instrument" + i;
+      Assert.assertEquals(Optional.of(300L), orderBookManager.getBestPrice(instrument, Side.BUY));
+      Assert.assertEquals(400, orderBookManager.getOrderNumAtLevel(instrument, Side.BUY, 300));
+      Assert.assertEquals(2000, orderBookManager.getTotalQuantityAtLevel(instrument, Side.BUY, 300));
+
+      Assert.assertEquals(Optional.empty(), orderBookManager.getBestPrice(instrument, Side.SELL));
+      Assert.assertEquals(Optional.empty(), orderBookManager.getBestPrice("other" + instrument, Side.BUY));
+    }
+  }
+}
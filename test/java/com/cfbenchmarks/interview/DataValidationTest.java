@@ -19,8 +19,6 @@ public class DataValidationTest {
     Assert.assertEquals(Side.BUY, order.getSide());
     Assert.assertEquals(200, order.getPrice());
     Assert.assertEquals(10, order.getQuantity());
-    // check the orderBook key
-    Assert.assertEquals("test::BUY", order.getOrderBookKey());
   }
 
   @Test
@@ -38,8 +36,6 @@ public class DataValidationTest {
     Assert.assertEquals(Side.BUY, firstOrder.getSide());
     Assert.assertEquals(200, firstOrder.getPrice());
     Assert.assertEquals(10, firstOrder.getQuantity());
-    // check the orderBook key
-    Assert.assertEquals("test::BUY", firstOrder.getOrderBookKey());
 
     // check the second order is correct
     Order secondOrder = orderBuilder.get();
@@ -48,8 +44,6 @@ public class DataValidationTest {
     Assert.assertEquals(Side.SELL, secondOrder.getSide());
     Assert.assertEquals(2, secondOrder.getPrice());
     Assert.assertEquals(1, secondOrder.getQuantity());
-    // check the orderBook key
-    Assert.assertEquals("sddsfsdf::SELL", secondOrder.getOrderBookKey());
   }
 
   @Test
@@ -67,6 +61,22 @@ public class DataValidationTest {
     Assert.assertEquals(1, secondOrder.getQuantity());
   }
 
+  @Test
+  public void withQuantity() {
+    Order firstOrder = new Order.Builder().setInstrument("test").setOrderId("order1").setSide(Side.BUY).setPrice(200)
+        .setQuantity(10).get();
+
+    // only the quantity changes
+    Order secondOrder = firstOrder.withQuantity(4);
+    Assert.assertEquals(new Order.Builder().clone(firstOrder).setQuantity(4).get(), secondOrder);
+    Assert.assertEquals(10, firstOrder.getQuantity());
+
+    // qty must be positive
+    assertThrows(IllegalArgumentException.class, () -> {
+      firstOrder.withQuantity(0);
+    });
+  }
+
   @Test
   public void nullOrderArguments() {
     // instrument can't be null
@@ -109,12 +119,17 @@ public class DataValidationTest {
     assertThrows(IllegalArgumentException.class, () -> {
       new Order.Builder().setInstrument("fake").setOrderId("e").setSide(Side.BUY).setPrice(33).setQuantity(-1).get();
     });
+  }
 
-    // instrument can't have ::
-    assertThrows(IllegalArgumentException.class, () -> {
-      new Order.Builder().setInstrument("fake::bad").setOrderId("e").setSide(Side.BUY).setPrice(33).setQuantity(10)
-          .get();
-    });
+  @Test
+  public void anyInstrumentName() {
+    // books are no longer keyed by instrument::side so any name will do
+    OrderBookManager orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addOrder(new Order.Builder().build("order1", "fake::ok", Side.BUY, 33, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "fake", Side.BUY, 34, 10));
+
+    Assert.assertEquals(Optional.of(33L), orderBookManager.getBestPrice("fake::ok", Side.BUY));
+    Assert.assertEquals(Optional.of(34L), orderBookManager.getBestPrice("fake", Side.BUY));
   }
 
   @Test
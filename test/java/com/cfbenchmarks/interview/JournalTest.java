@@ -0,0 +1,242 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+
+public class JournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replayRebuildsBooks() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    applyChanges(orderBookManager, 0);
+    journal.close();
+
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl();
+    // 3 adds per round, a modify every other round, a delete every third
+    assertEquals(3 * 100 + 50 + 34, Journal.replay(directory, replayed));
+    assertSameBooks(orderBookManager, replayed);
+  }
+
+  @Test
+  public void unchangedModifiesAreNotJournaled() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    assertFalse(orderBookManager.modifyOrder("order1", 10));
+    journal.close();
+
+    assertEquals(1, Journal.replay(directory, new OrderBookManagerImpl()));
+  }
+
+  @Test
+  public void rollsToNewSegments() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).setSegmentSize(1024).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    applyChanges(orderBookManager, 0);
+    journal.close();
+
+    assertTrue(segmentCount() > 10);
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl();
+    Journal.replay(directory, replayed);
+    assertSameBooks(orderBookManager, replayed);
+  }
+
+  @Test
+  public void reopenAppendsAndReplayIsNotJournaled() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).setSegmentSize(4096).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    applyChanges(orderBookManager, 0);
+    journal.close();
+    int segments = segmentCount();
+
+    // recover into a fresh manager journaling to the same directory, then carry on
+    journal = new Journal.Builder(directory).setSegmentSize(4096).open();
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    assertEquals(3 * 100 + 50 + 34, journal.replay(recovered));
+    assertSameBooks(orderBookManager, recovered);
+    assertEquals(segments, segmentCount());
+
+    applyChanges(orderBookManager, 1000);
+    applyChanges(recovered, 1000);
+    journal.close();
+
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl();
+    // a delete for each multiple of 3 in 1000..1099
+    assertEquals(3 * 100 + 50 + 34 + 3 * 100 + 50 + 33, Journal.replay(directory, replayed));
+    assertSameBooks(orderBookManager, replayed);
+  }
+
+  @Test
+  public void replayRepeatsFills() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).open();
+    long[] filled = new long[1];
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal)
+        .setFillListener((instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> {
+          filled[0] += quantity;
+        }).build();
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("sell2", "VOD.L", Side.SELL, 201, 10));
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 201, 15));
+    orderBookManager.modifyOrder("sell2", 3);
+    journal.close();
+
+    long[] replayedFills = new long[1];
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl.Builder()
+        .setFillListener((instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> {
+          replayedFills[0] += quantity;
+        }).build();
+    // fills are not journaled
+    assertEquals(4, Journal.replay(directory, replayed));
+    assertEquals(15, replayedFills[0]);
+    assertEquals(filled[0], replayedFills[0]);
+    assertEquals(3, replayed.getTotalQuantityAtLevel("VOD.L", Side.SELL, 201));
+  }
+
+  @Test
+  public void failedJournalRefusesChanges() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).setSegmentSize(1024).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    // too big for a segment, the writer fails on it
+    orderBookManager.addOrder(new Order.Builder().build(Strings.repeat("x", 2000), "VOD.L", Side.BUY, 200,
+        10));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (true) {
+      try {
+        journal.checkHealthy();
+        assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(1);
+      } catch (IllegalStateException e) {
+        break;
+      }
+    }
+
+    // refused before the book changed
+    assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 10));
+    });
+    assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.modifyOrder("order1", 5);
+    });
+    assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.deleteOrder("order1");
+    });
+    OrderCommand[] commands = { new OrderCommand() };
+    commands[0].delete("order1");
+    BatchResults results = new BatchResults(1);
+    orderBookManager.applyBatch(commands, 1, results);
+    assertEquals(BatchResults.Outcome.REJECTED, results.getOutcome(0));
+    assertEquals(2, orderBookManager.getOrderNumAtLevel("VOD.L", Side.BUY, 200));
+    assertEquals(20, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.BUY, 200));
+    journal.close();
+  }
+
+  @Test
+  public void changesAfterCloseAreDropped() throws IOException {
+    // with a tiny ring a book would wait forever if it tried to journal
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).setRingSize(2).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    journal.close();
+    for (int i = 2; i < 10; i++) {
+      orderBookManager.addOrder(new Order.Builder().build("order" + i, "VOD.L", Side.BUY, 200, 10));
+    }
+
+    assertEquals(9, orderBookManager.getOrderNumAtLevel("VOD.L", Side.BUY, 200));
+    assertEquals(1, Journal.replay(directory, new OrderBookManagerImpl()));
+  }
+
+  @Test
+  public void flushPolicies() throws IOException {
+    for (Journal.FlushPolicy flushPolicy : Journal.FlushPolicy.values()) {
+      Path directory = folder.newFolder(flushPolicy.name()).toPath();
+      Journal journal = new Journal.Builder(directory).setFlushPolicy(flushPolicy)
+          .setFlushInterval(1, TimeUnit.MILLISECONDS).open();
+      OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+      applyChanges(orderBookManager, 0);
+      journal.close();
+
+      OrderBookManagerImpl replayed = new OrderBookManagerImpl();
+      Journal.replay(directory, replayed);
+      assertSameBooks(orderBookManager, replayed);
+    }
+  }
+
+  @Test
+  public void nonAsciiIds() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    Journal journal = new Journal.Builder(directory).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    orderBookManager.addOrder(new Order.Builder().build("ordre-\u00e9", "BMW.DE\u20ac", Side.SELL, 300, 7));
+    orderBookManager.modifyOrder("ordre-\u00e9", 4);
+    journal.close();
+
+    OrderBookManagerImpl replayed = new OrderBookManagerImpl();
+    Journal.replay(directory, replayed);
+    assertEquals(4, replayed.getTotalQuantityAtLevel("BMW.DE\u20ac", Side.SELL, 300));
+    assertEquals("ordre-\u00e9", replayed.getOrdersAtLevel("BMW.DE\u20ac", Side.SELL, 300).get(0).getOrderId());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooSmallSegment() {
+    new Journal.Builder(folder.getRoot().toPath()).setSegmentSize(100);
+  }
+
+  /*
+   * 100 rounds of three adds, modifying and deleting some of them
+   */
+  private static void applyChanges(OrderBookManager orderBookManager, int first) {
+    for (int i = first; i < first + 100; i++) {
+      String instrument = i % 2 == 0 ? "VOD.L" : "BARC.L";
+      orderBookManager.addOrder(new Order.Builder().build("buy" + i, instrument, Side.BUY, 100 + i % 10, 5 + i));
+      orderBookManager.addOrder(new Order.Builder().build("sell" + i, instrument, Side.SELL, 200 + i % 10, 5));
+      orderBookManager.addOrder(new Order.Builder().build("other" + i, instrument, Side.BUY, 100 + i % 10, 1));
+      if (i % 2 == 0) {
+        orderBookManager.modifyOrder("buy" + i, 1 + i % 4);
+      }
+      if (i % 3 == 0) {
+        orderBookManager.deleteOrder("other" + i);
+      }
+    }
+  }
+
+  private static void assertSameBooks(OrderBookManager expected, OrderBookManager actual) {
+    for (String instrument : new String[] { "VOD.L", "BARC.L" }) {
+      for (Side side : Side.values()) {
+        assertEquals(expected.getBestPrice(instrument, side), actual.getBestPrice(instrument, side));
+        long base = side == Side.BUY ? 100 : 200;
+        for (long price = base; price < base + 10; price++) {
+          assertEquals(expected.getOrdersAtLevel(instrument, side, price),
+              actual.getOrdersAtLevel(instrument, side, price));
+        }
+      }
+    }
+  }
+
+  private int segmentCount() {
+    File[] segments = folder.getRoot().listFiles((dir, name) -> name.endsWith(".journal"));
+    return segments.length;
+  }
+}
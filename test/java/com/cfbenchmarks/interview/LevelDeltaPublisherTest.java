@@ -0,0 +1,132 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LevelDeltaPublisherTest {
+
+  private LevelDeltaPublisher levelDeltas;
+  private Replica replica;
+
+  @Before
+  public void init() {
+    levelDeltas = new LevelDeltaPublisher(64);
+    replica = new Replica();
+    levelDeltas.addListener(replica);
+  }
+
+  @Test
+  public void replicaFollowsBook() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setLevelDeltas(levelDeltas).build();
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 5));
+    orderBookManager.addOrder(new Order.Builder().build("order3", "VOD.L", Side.SELL, 300, 5));
+    orderBookManager.modifyOrder("order1", 20);
+    orderBookManager.modifyOrder("order2", 1);
+    orderBookManager.deleteOrder("order3");
+    levelDeltas.close();
+
+    assertEquals(6, replica.changes);
+    assertArrayEquals(new long[] { 21, 2 }, replica.levels.get("VOD.L/BUY/200"));
+    // emptied levels are removed
+    assertEquals(1, replica.levels.size());
+  }
+
+  @Test
+  public void changesAfterCloseAreDropped() {
+    // far more changes than the ring holds, none may wait on the stopped thread
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setLevelDeltas(levelDeltas).build();
+    orderBookManager.addOrder(new Order.Builder().build("order0", "VOD.L", Side.BUY, 200, 10));
+    levelDeltas.close();
+    for (int i = 1; i < 1000; i++) {
+      orderBookManager.addOrder(new Order.Builder().build("order" + i, "VOD.L", Side.BUY, 200 + i, 10));
+    }
+
+    assertEquals(1, replica.changes);
+    assertEquals(Optional.of(1199L), orderBookManager.getBestPrice("VOD.L", Side.BUY));
+  }
+
+  @Test
+  public void fillsArePublished() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setLevelDeltas(levelDeltas)
+        .setFillListener((instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> {
+        }).build();
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("sell2", "VOD.L", Side.SELL, 201, 10));
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 201, 15));
+    levelDeltas.close();
+
+    assertEquals(1, replica.levels.size());
+    assertArrayEquals(new long[] { 5, 1 }, replica.levels.get("VOD.L/SELL/201"));
+    assertNull(replica.levels.get("VOD.L/SELL/200"));
+    assertNull(replica.levels.get("VOD.L/BUY/201"));
+  }
+
+  @Test
+  public void concurrentWriters() throws Exception {
+    // the ring is much smaller than the changes so writers wait on the publisher
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setLevelDeltas(levelDeltas).build();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      String instrument = "instrument" + i % 2;
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 2000; j++) {
+          String orderId = UUID.randomUUID().toString();
+          orderBookManager.addOrder(new Order.Builder().build(orderId, instrument, Side.BUY, 100 + j % 7, 5));
+          if (j % 3 == 0) {
+            orderBookManager.deleteOrder(orderId);
+          } else {
+            orderBookManager.modifyOrder(orderId, 1 + j % 4);
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    levelDeltas.close();
+
+    DepthBuffer depth = new DepthBuffer(10);
+    int levels = 0;
+    for (String instrument : new String[] { "instrument0", "instrument1" }) {
+      int n = orderBookManager.getDepth(instrument, Side.BUY, 10, depth);
+      levels += n;
+      for (int i = 0; i < n; i++) {
+        assertArrayEquals(new long[] { depth.getTotalQuantity(i), depth.getOrderNum(i) },
+            replica.levels.get(instrument + "/BUY/" + depth.getPrice(i)));
+      }
+    }
+    assertEquals(levels, replica.levels.size());
+  }
+
+  /*
+   * market by price rebuilt from the changes, only touched by the publisher
+   * thread until it is closed
+   */
+  private static class Replica implements LevelListener {
+    Map<String, long[]> levels = new HashMap<String, long[]>();
+    long changes;
+
+    @Override
+    public void onLevelChange(long sequence, String instrument, Side side, long price, long quantity,
+        long orderNum) {
+      assertEquals("Gap in the sequence", changes++, sequence);
+      String key = instrument + "/" + side + "/" + price;
+      if (orderNum == 0) {
+        levels.remove(key);
+      } else {
+        levels.put(key, new long[] { quantity, orderNum });
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.cfbenchmarks.interview.BatchResults.Outcome;
+
+public class LongOrderIdTest {
+
+  private final OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setLongOrderIds(true)
+      .build();
+
+  @Test
+  public void orders() {
+    Order order = new Order.Builder().build(42L, "VOD.L", Side.BUY, 200, 10);
+    assertTrue(order.hasLongOrderId());
+    assertEquals(42L, order.getLongOrderId());
+    assertEquals("42", order.getOrderId());
+    // made once, and not part of the value
+    assertSame(order.getOrderId(), order.getOrderId());
+    assertEquals(order, new Order.Builder().build(42L, "VOD.L", Side.BUY, 200, 10));
+    assertEquals(order, new Order.Builder().clone(order).get());
+    assertEquals(order.withQuantity(5), new Order.Builder().setOrderId(42L).setInstrument("VOD.L")
+        .setSide(Side.BUY).setPrice(200).setQuantity(5).get());
+    // a String id is a different order even with the same digits
+    assertNotEquals(order, new Order.Builder().build("42", "VOD.L", Side.BUY, 200, 10));
+
+    assertEquals(-7L, new Order.Builder().build("-7", "VOD.L", Side.BUY, 200, 10).getLongOrderId());
+    for (String orderId : new String[] { "order1", "007", "+7", "", "9223372036854775808" }) {
+      assertThrows(IllegalArgumentException.class, () -> {
+        new Order.Builder().build(orderId, "VOD.L", Side.BUY, 200, 10).getLongOrderId();
+      });
+    }
+  }
+
+  @Test
+  public void lifecycle() {
+    Order order1 = new Order.Builder().build(1L, "VOD.L", Side.SELL, 300, 5);
+    Order order2 = new Order.Builder().build(2L, "VOD.L", Side.SELL, 300, 5);
+    orderBookManager.addOrder(order1);
+    orderBookManager.addOrder(order2);
+    // a String id that is a long is the same id
+    orderBookManager.addOrder(new Order.Builder().build("3", "VOD.L", Side.SELL, 400, 5));
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build("2", "BARC.L", Side.BUY, 100, 5));
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build("order4", "VOD.L", Side.SELL, 400, 5));
+    });
+
+    // modify up loses its place, down keeps it
+    assertTrue(orderBookManager.modifyOrder(1L, 6));
+    assertFalse(orderBookManager.modifyOrder("2", 5));
+    assertEquals(Arrays.asList(order2, order1.withQuantity(6)), orderBookManager.getOrdersAtLevel("VOD.L",
+        Side.SELL, 300));
+    assertEquals(3300, orderBookManager.getTotalVolumeAtLevel("VOD.L", Side.SELL, 300));
+
+    assertTrue(orderBookManager.deleteOrder(2L));
+    assertTrue(orderBookManager.deleteOrder("3"));
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder(2L);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.modifyOrder("order1", 5);
+    });
+    assertEquals(Optional.of(300L), orderBookManager.getBestPrice("VOD.L", Side.SELL));
+    assertEquals(1, orderBookManager.getOrderNumAtLevel("VOD.L", Side.SELL, 300));
+  }
+
+  @Test
+  public void manyOrders() {
+    // sequential ids, then the same number spread over the negative range
+    int orders = 100000;
+    for (int i = 0; i < orders; i++) {
+      orderBookManager.addOrder(new Order.Builder().build(i, "instrument" + (i % 7), Side.BUY, 100 + i % 50, 1));
+      orderBookManager.addOrder(new Order.Builder().build(spread(i), "instrument0", Side.SELL, 1000, 1));
+    }
+    // every other one goes, the rest must still be found past the gaps
+    for (int i = 0; i < orders; i += 2) {
+      assertTrue(orderBookManager.deleteOrder(i));
+      assertTrue(orderBookManager.deleteOrder(spread(i)));
+    }
+    for (int i = 1; i < orders; i += 2) {
+      assertTrue(orderBookManager.modifyOrder(i, 2));
+      assertTrue(orderBookManager.modifyOrder(spread(i), 2));
+    }
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder(spread(2));
+    });
+    assertEquals(orders, orderBookManager.getTotalQuantityAtLevel("instrument0", Side.SELL, 1000));
+  }
+
+  @Test
+  public void fills() {
+    // long ids reach the listener as longs
+    List<String> fills = new ArrayList<String>();
+    OrderBookManager matching = new OrderBookManagerImpl.Builder().setLongOrderIds(true).setFillListener(
+        new FillListener() {
+          @Override
+          public void onFill(String instrument, Side aggressorSide, String aggressorOrderId, String restingOrderId,
+              long price, long quantity) {
+            fail("String ids for a long id fill");
+          }
+
+          @Override
+          public void onFill(String instrument, Side aggressorSide, long aggressorOrderId, long restingOrderId,
+              long price, long quantity) {
+            fills.add(aggressorOrderId + "/" + restingOrderId + "/" + quantity);
+          }
+        }).build();
+    matching.addOrder(new Order.Builder().build(1L, "VOD.L", Side.SELL, 200, 5));
+    matching.addOrder(new Order.Builder().build("2", "VOD.L", Side.SELL, 200, 5));
+    matching.addOrder(new Order.Builder().build(3L, "VOD.L", Side.BUY, 200, 7));
+    assertEquals(Arrays.asList("3/1/5", "3/2/2"), fills);
+
+    // a listener that only takes Strings still hears of them
+    fills.clear();
+    OrderBookManager strings = new OrderBookManagerImpl.Builder().setLongOrderIds(true).setFillListener(
+        (instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> fills.add(
+            aggressorOrderId + "/" + restingOrderId)).build();
+    strings.addOrder(new Order.Builder().build(1L, "VOD.L", Side.SELL, 200, 5));
+    strings.addOrder(new Order.Builder().build(3L, "VOD.L", Side.BUY, 200, 7));
+    assertEquals(Arrays.asList("3/1"), fills);
+  }
+
+  @Test
+  public void stringManager() {
+    // without long ids the long overloads use the decimal string
+    OrderBookManager strings = new OrderBookManagerImpl();
+    strings.addOrder(new Order.Builder().build(5L, "VOD.L", Side.BUY, 200, 10));
+    strings.addOrder(new Order.Builder().build("6", "VOD.L", Side.BUY, 200, 10));
+    assertTrue(strings.modifyOrder("5", 4));
+    assertTrue(strings.deleteOrder(6L));
+    assertTrue(strings.deleteOrder(5L));
+  }
+
+  @Test
+  public void batch() {
+    orderBookManager.addOrder(new Order.Builder().build(10L, "VOD.L", Side.BUY, 200, 10));
+    OrderCommand[] commands = new OrderCommand[4];
+    for (int i = 0; i < commands.length; i++) {
+      commands[i] = new OrderCommand();
+    }
+    commands[0].add(new Order.Builder().build(11L, "VOD.L", Side.BUY, 200, 10));
+    commands[1].modify("11", 20);
+    commands[2].delete("10");
+    commands[3].delete("order10");
+    BatchResults results = new BatchResults(4);
+    orderBookManager.applyBatch(commands, 4, results);
+
+    assertEquals(Outcome.APPLIED, results.getOutcome(0));
+    assertEquals(Outcome.APPLIED, results.getOutcome(1));
+    assertEquals(Outcome.APPLIED, results.getOutcome(2));
+    assertEquals(Outcome.REJECTED, results.getOutcome(3));
+    assertEquals(20, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.BUY, 200));
+  }
+
+  @Test
+  public void concurrentBooks() throws Exception {
+    // every thread its own instrument, all sharing the index
+    int threads = 4;
+    int orders = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      Future<?>[] futures = new Future<?>[threads];
+      for (int t = 0; t < threads; t++) {
+        long first = (long) t * orders;
+        String instrument = "instrument" + t;
+        futures[t] = executor.submit(() -> {
+          for (long id = first; id < first + orders; id++) {
+            orderBookManager.addOrder(new Order.Builder().build(id, instrument, Side.SELL, 100 + id % 10, 1));
+            if (id % 2 == 0) {
+              orderBookManager.modifyOrder(id, 2);
+            } else {
+              orderBookManager.deleteOrder(id);
+            }
+          }
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    for (int t = 0; t < threads; t++) {
+      long total = 0;
+      for (long price = 100; price < 110; price++) {
+        total += orderBookManager.getTotalQuantityAtLevel("instrument" + t, Side.SELL, price);
+      }
+      assertEquals(orders, total);
+    }
+  }
+
+  private static long spread(long i) {
+    return -1 - i * 0x5deece66dL;
+  }
+}
@@ -0,0 +1,124 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchingTest {
+
+  private List<String> fills;
+  private OrderBookManager orderBookManager;
+
+  @Before
+  public void init() {
+    fills = new ArrayList<String>();
+    orderBookManager = new OrderBookManagerImpl((instrument, aggressorSide, aggressorOrderId, restingOrderId, price,
+        quantity) -> fills.add(aggressorOrderId + "/" + restingOrderId + "@" + price + "x" + quantity));
+  }
+
+  @Test
+  public void noCrossRests() {
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 199, 10));
+
+    assertTrue("No fills", fills.isEmpty());
+    assertEquals(Optional.of(200L), orderBookManager.getBestPrice("VOD.L", Side.SELL));
+    assertEquals(Optional.of(199L), orderBookManager.getBestPrice("VOD.L", Side.BUY));
+  }
+
+  @Test
+  public void partialFillOfResting() {
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 200, 4));
+
+    assertEquals(Arrays.asList("buy1/sell1@200x4"), fills);
+    // the resting order keeps its place with what is left
+    assertEquals(6, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.SELL, 200));
+    assertEquals(6, orderBookManager.getOrdersAtLevel("VOD.L", Side.SELL, 200).get(0).getQuantity());
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice("VOD.L", Side.BUY));
+
+    // the aggressor was filled and never rested, its id is free again
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 100, 4));
+    assertEquals(Optional.of(100L), orderBookManager.getBestPrice("VOD.L", Side.BUY));
+  }
+
+  @Test
+  public void sweepInPriceTimePriority() {
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 200, 5));
+    orderBookManager.addOrder(new Order.Builder().build("buy2", "VOD.L", Side.BUY, 201, 5));
+    orderBookManager.addOrder(new Order.Builder().build("buy3", "VOD.L", Side.BUY, 200, 5));
+    orderBookManager.addOrder(new Order.Builder().build("buy4", "VOD.L", Side.BUY, 199, 5));
+
+    // best price first, then oldest first, the remainder rests
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 17));
+
+    assertEquals(Arrays.asList("sell1/buy2@201x5", "sell1/buy1@200x5", "sell1/buy3@200x5"), fills);
+    assertEquals(Optional.of(199L), orderBookManager.getBestPrice("VOD.L", Side.BUY));
+    assertEquals(Optional.of(200L), orderBookManager.getBestPrice("VOD.L", Side.SELL));
+    assertEquals(2, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.SELL, 200));
+
+    // filled orders are gone
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder("buy1");
+    });
+    assertTrue(orderBookManager.deleteOrder("sell1"));
+  }
+
+  @Test
+  public void duplicateIdNeverTrades() {
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 100, 10));
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 200, 10));
+    });
+    assertTrue("No fills", fills.isEmpty());
+    assertEquals(10, orderBookManager.getTotalQuantityAtLevel("VOD.L", Side.SELL, 200));
+  }
+
+  @Test
+  public void instrumentsDontTrade() {
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("buy1", "BARC.L", Side.BUY, 300, 10));
+
+    assertTrue("No fills", fills.isEmpty());
+    assertEquals(Optional.of(300L), orderBookManager.getBestPrice("BARC.L", Side.BUY));
+  }
+
+  @Test
+  public void concurrentAggressors() throws Exception {
+    AtomicLong traded = new AtomicLong();
+    OrderBookManager matching = new OrderBookManagerImpl((instrument, aggressorSide, aggressorOrderId,
+        restingOrderId, price, quantity) -> traded.addAndGet(quantity));
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      Side side = i % 2 == 0 ? Side.BUY : Side.SELL;
+      String prefix = "t" + i + "-";
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          matching.addOrder(new Order.Builder().build(prefix + j, "VOD.L", side, 100, 1 + j % 3));
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // every unit either traded on both sides or is still resting, one side only
+    long added = 8 * (1000 / 3 * 6 + 1);
+    long buys = matching.getTotalQuantityAtLevel("VOD.L", Side.BUY, 100);
+    long sells = matching.getTotalQuantityAtLevel("VOD.L", Side.SELL, 100);
+    assertEquals(added, 2 * traded.get() + buys + sells);
+    assertTrue("Book is crossed", buys == 0 || sells == 0);
+  }
+}
@@ -0,0 +1,145 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.cfbenchmarks.interview.Metrics.Operation;
+
+public class MetricsTest {
+
+  /** times every call **/
+  private final OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setMetrics(new Metrics(1))
+      .build();
+
+  @Test
+  public void countsEveryOperation() {
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 201, 10));
+    orderBookManager.modifyOrder("order1", 5);
+    orderBookManager.deleteOrder("order2");
+    orderBookManager.getBestPrice("VOD.L", Side.BUY);
+    orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200);
+    orderBookManager.getDepth("VOD.L", Side.BUY, 1, new DepthBuffer(1));
+    // rejected calls aren't counted
+    DataValidationTest.assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder("order2");
+    });
+
+    Metrics.Snapshot metrics = orderBookManager.metrics();
+    assertEquals(2, metrics.count(Operation.ADD));
+    assertEquals(1, metrics.count(Operation.MODIFY));
+    assertEquals(1, metrics.count(Operation.DELETE));
+    assertEquals(3, metrics.count(Operation.QUERY));
+    assertEquals(0, metrics.count(Operation.BATCH));
+    assertTrue(metrics.latency(Operation.ADD, 50) > 0);
+    assertTrue(metrics.latency(Operation.ADD, 100) >= metrics.latency(Operation.ADD, 50));
+    assertEquals(0, metrics.latency(Operation.BATCH, 99));
+  }
+
+  @Test
+  public void bookSizes() {
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order3", "VOD.L", Side.BUY, 199, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order4", "BARC.L", Side.SELL, 300, 10));
+    orderBookManager.deleteOrder("order3");
+    // loses its place, still one order
+    orderBookManager.modifyOrder("order1", 20);
+
+    Metrics.Snapshot metrics = orderBookManager.metrics();
+    assertEquals(2, metrics.bookCount());
+    assertEquals(2, metrics.levelCount());
+    assertEquals(3, metrics.orderCount());
+    Metrics.BookStats vod = metrics.books().get(0);
+    assertEquals("VOD.L", vod.getInstrument());
+    assertEquals(Side.BUY, vod.getSide());
+    assertEquals(1, vod.getLevels());
+    assertEquals(2, vod.getOrders());
+  }
+
+  @Test
+  public void fillsLeaveTheBook() {
+    OrderBookManagerImpl matching = new OrderBookManagerImpl.Builder().setMetrics(new Metrics())
+        .setFillListener((instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> {
+        }).build();
+    matching.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    matching.addOrder(new Order.Builder().build("sell2", "VOD.L", Side.SELL, 201, 10));
+    matching.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 201, 15));
+
+    Metrics.Snapshot metrics = matching.metrics();
+    assertEquals(1, metrics.levelCount());
+    assertEquals(1, metrics.orderCount());
+  }
+
+  @Test(timeout = 10000)
+  public void lockWaits() throws Exception {
+    CountDownLatch filling = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    OrderBookManagerImpl matching = new OrderBookManagerImpl.Builder().setMetrics(new Metrics())
+        .setFillListener((instrument, aggressorSide, aggressorOrderId, restingOrderId, price, quantity) -> {
+          // hold both of VOD.L's locks
+          filling.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }).build();
+    matching.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 10));
+    Thread aggressor = new Thread(() -> matching.addOrder(new Order.Builder().build("buy1", "VOD.L", Side.BUY, 200,
+        5)));
+    aggressor.start();
+    filling.await();
+
+    Thread deleter = new Thread(() -> matching.deleteOrder("sell1"));
+    deleter.start();
+    // parked on the lock, its wait has started
+    while (deleter.getState() != Thread.State.WAITING) {
+      Thread.yield();
+    }
+    TimeUnit.MILLISECONDS.sleep(50);
+    release.countDown();
+    aggressor.join();
+    deleter.join();
+
+    Metrics.Snapshot metrics = matching.metrics();
+    assertEquals(1, metrics.lockWaits());
+    assertTrue(metrics.lockWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void sampled() {
+    OrderBookManagerImpl sampled = new OrderBookManagerImpl.Builder().setMetrics(new Metrics(1 << 20)).build();
+    sampled.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    for (int i = 0; i < 100; i++) {
+      sampled.getBestPrice("VOD.L", Side.BUY);
+    }
+    assertEquals(100, sampled.metrics().count(Operation.QUERY));
+  }
+
+  @Test
+  public void buckets() {
+    for (long nanos : new long[] { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Metrics.HIGHEST_NANOS }) {
+      long highest = Metrics.highestInBucket(Metrics.bucket(nanos));
+      assertTrue(nanos + " in a bucket up to " + highest, highest >= nanos && highest <= nanos + nanos / 8);
+      if (nanos < Metrics.HIGHEST_NANOS) {
+        assertEquals(Metrics.bucket(nanos) + 1, Metrics.bucket(highest + 1));
+      }
+    }
+    assertEquals(Metrics.bucket(Metrics.HIGHEST_NANOS), Metrics.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void withoutMetrics() {
+    DataValidationTest.assertThrows(IllegalStateException.class, () -> {
+      new OrderBookManagerImpl().metrics();
+    });
+    DataValidationTest.assertThrows(IllegalArgumentException.class, () -> {
+      new Metrics(3);
+    });
+  }
+}
@@ -0,0 +1,120 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class OffHeapOrderBookManagerTest {
+
+  private final OffHeapOrderBookManager orderBookManager = new OffHeapOrderBookManager();
+
+  @Test
+  public void lifecycle() {
+    OrderValidater validater = new OrderValidater(orderBookManager, "microscope", Side.SELL);
+    validater.addOrder("order1", 300, 5);
+    validater.addOrder("order2", 300, 5);
+    validater.addOrder("order3", 400, 5);
+    validater.validate(300, 300, 2, 10, 3000);
+
+    // modify up loses its place, down keeps it
+    assertFalse("Same quantity is not a modify", orderBookManager.modifyOrder("order1", 5));
+    validater.modifyOrder("order1", 6);
+    validater.modifyOrder("order2", 4);
+    validater.validateOrder(300, "order2", "order1");
+    validater.deleteOrder("order2");
+    validater.validate(300, 300, 1, 6, 1800);
+    validater.deleteOrder("order1");
+    validater.validate(400, 300, 0, 0, 0);
+  }
+
+  @Test
+  public void ordersAtLevel() {
+    Order buy1 = new Order.Builder().build("buy1", "VOD.L", Side.BUY, 200, 10);
+    Order buy2 = new Order.Builder().build("buy2", "VOD.L", Side.BUY, 200, 20);
+    orderBookManager.addOrder(buy1);
+    orderBookManager.addOrder(buy2);
+    orderBookManager.addOrder(new Order.Builder().build("sell1", "VOD.L", Side.SELL, 200, 20));
+    orderBookManager.modifyOrder("buy1", 5);
+
+    assertEquals(Arrays.asList(buy1.withQuantity(5), buy2), orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200));
+    assertEquals(0, orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 199).size());
+    assertEquals(0, orderBookManager.getOrdersAtLevel("BARC.L", Side.BUY, 200).size());
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice("BARC.L", Side.SELL));
+  }
+
+  @Test
+  public void manyOrders() {
+    // past a chunk of the slab and several resizes of the index
+    List<String> orderIds = new ArrayList<String>();
+    for (int i = 0; i < 100000; i++) {
+      String orderId = UUID.randomUUID().toString();
+      orderIds.add(orderId);
+      orderBookManager.addOrder(new Order.Builder().build(orderId, "instrument" + (i % 7), i % 2 == 0 ? Side.BUY
+          : Side.SELL, 100 + i % 50, 1 + i % 10));
+    }
+    // every other order goes, its slot is reused
+    for (int i = 0; i < orderIds.size(); i += 2) {
+      assertTrue(orderBookManager.deleteOrder(orderIds.get(i)));
+    }
+    for (int i = 0; i < orderIds.size(); i++) {
+      String orderId = orderIds.get(i);
+      if (i % 2 == 0) {
+        assertThrows(IllegalArgumentException.class, () -> {
+          orderBookManager.deleteOrder(orderId);
+        });
+      } else {
+        assertTrue(orderBookManager.modifyOrder(orderId, 100));
+      }
+    }
+    for (int i = 0; i < orderIds.size(); i += 2) {
+      orderBookManager.addOrder(new Order.Builder().build(orderIds.get(i), "instrument0", Side.BUY, 1000, 1));
+    }
+    assertEquals(orderIds.size() / 2, orderBookManager.getOrderNumAtLevel("instrument0", Side.BUY, 1000));
+    assertEquals(Optional.of(1000L), orderBookManager.getBestPrice("instrument0", Side.BUY));
+  }
+
+  @Test
+  public void orderIds() {
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build("order1", "BARC.L", Side.SELL, 300, 10));
+    });
+    // not a prefix match
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.modifyOrder("order", 5);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder("order12");
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build(new String(new char[37]).replace('\0', 'x'), "VOD.L",
+          Side.BUY, 200, 10));
+    });
+    // any chars
+    orderBookManager.addOrder(new Order.Builder().build("ordre-\u00e9\u20ac", "VOD.L", Side.BUY, 200, 10));
+    assertEquals("ordre-\u00e9\u20ac", orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200).get(1).getOrderId());
+    assertTrue(orderBookManager.deleteOrder("ordre-\u00e9\u20ac"));
+  }
+
+  @Test
+  public void collidingIds() {
+    // "Aa" and "BB" have the same String.hashCode
+    OffHeapOrderBookManager small = new OffHeapOrderBookManager(8, 1);
+    String[] orderIds = { "AaAa", "AaBB", "BBAa", "BBBB" };
+    for (String orderId : orderIds) {
+      small.addOrder(new Order.Builder().build(orderId, "VOD.L", Side.BUY, 200, 10));
+    }
+    assertTrue(small.deleteOrder("AaBB"));
+    assertTrue(small.modifyOrder("BBBB", 5));
+    assertTrue(small.deleteOrder("AaAa"));
+    assertTrue(small.modifyOrder("BBAa", 6));
+    assertEquals(11, small.getTotalQuantityAtLevel("VOD.L", Side.BUY, 200));
+  }
+}
@@ -1,5 +1,11 @@
 package com.cfbenchmarks.interview;
 
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.junit.Test;
 
 public class OrderOrderTest {
@@ -91,4 +97,93 @@ public class OrderOrderTest {
     validater.modifyOrder("order3", 511);
     validater.validateOrder(300, "order2", "order1", "order3");
   }
+
+  @Test
+  public void modifyAndDeleteMixed() {
+    // create order book
+    OrderBookManager orderBookManager = new OrderBookManagerImpl();
+
+    // send orders
+    OrderValidater validater = new OrderValidater(orderBookManager, "microscope", Side.SELL);
+    validater.addOrder("order1", 300, 5);
+    validater.addOrder("order2", 300, 5);
+    validater.addOrder("order3", 300, 5);
+    validater.addOrder("order4", 300, 5);
+
+    // move the tail to the back, it stays the tail
+    validater.modifyOrder("order4", 6);
+    validater.validateOrder(300, "order1", "order2", "order3", "order4");
+
+    // delete the head, modify the new head up and down
+    validater.deleteOrder("order1");
+    validater.modifyOrder("order2", 4);
+    validater.validateOrder(300, "order2", "order3", "order4");
+    validater.modifyOrder("order2", 7);
+    validater.validateOrder(300, "order3", "order4", "order2");
+
+    // delete the middle and the tail
+    validater.deleteOrder("order4");
+    validater.validateOrder(300, "order3", "order2");
+    validater.deleteOrder("order2");
+    validater.validateOrder(300, "order3");
+
+    // level is re-used once emptied
+    validater.deleteOrder("order3");
+    validater.addOrder("order5", 300, 5);
+    validater.validateOrder(300, "order5");
+  }
+
+  @Test
+  public void modifiedOrderReadWithoutWrite() {
+    ConcurrentMap<String, RestingOrder> ordersById = new ConcurrentHashMap<String, RestingOrder>();
+    OrderBook book = new OrderBook(Side.SELL, ordersById);
+    book.attach("microscope", null, null, null, false);
+    Order added = new Order.Builder().build("order1", "microscope", Side.SELL, 300, 5);
+    book.add(added);
+    RestingOrder resting = ordersById.get("order1");
+    book.modify("order1", resting, 4);
+
+    // readers only hold the read lock so see the new quantity without keeping it
+    assertEquals(4, book.getOrdersAtLevel(300).get(0).getQuantity());
+    assertSame(added, resting.order);
+  }
+
+  @Test
+  public void recycledOrder() {
+    ConcurrentMap<String, RestingOrder> ordersById = new ConcurrentHashMap<String, RestingOrder>();
+    OrderBook book = new OrderBook(Side.SELL, ordersById);
+    book.attach("microscope", null, null, null, false);
+    book.add(new Order.Builder().build("order1", "microscope", Side.SELL, 300, 5));
+    RestingOrder stale = ordersById.get("order1");
+
+    // the deleted order's RestingOrder goes to a new order
+    assertEquals(OrderBook.CHANGED, book.delete("order1", stale));
+    book.add(new Order.Builder().build("order2", "microscope", Side.SELL, 400, 5));
+    assertSame(stale, ordersById.get("order2"));
+
+    // a modify or delete that looked order1 up before it went doesn't touch it
+    assertThrows(IllegalArgumentException.class, () -> {
+      book.modify("order1", stale, 6);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      book.delete("order1", stale);
+    });
+    assertEquals(5, book.getTotalQuantityAtLevel(400));
+    assertEquals(0, book.getOrderNumAtLevel(300));
+
+    // an emptied level is reused at another price with fresh totals
+    book.add(new Order.Builder().build("order3", "microscope", Side.SELL, 300, 7));
+    assertEquals(1, book.getOrderNumAtLevel(300));
+    assertEquals(7, book.getTotalQuantityAtLevel(300));
+    assertEquals(2100, book.getTotalVolumeAtpriceLevel(300));
+
+    // order1 added again on the other side is left for the caller to retry there
+    OrderBook buys = new OrderBook(Side.BUY, ordersById);
+    buys.attach("microscope", null, null, null, false);
+    buys.add(new Order.Builder().build("order1", "microscope", Side.BUY, 200, 5));
+    assertEquals(OrderBook.MOVED, book.modify("order1", stale, 6));
+    assertEquals(OrderBook.MOVED, book.delete("order1", stale));
+    assertEquals(5, buys.getTotalQuantityAtLevel(200));
+    assertEquals(OrderBook.CHANGED, buys.delete("order1", ordersById.get("order1")));
+  }
 }
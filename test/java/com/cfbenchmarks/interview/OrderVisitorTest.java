@@ -0,0 +1,127 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class OrderVisitorTest {
+
+  private final OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+
+  @Test
+  public void visitInOrder() {
+    try (ShardedOrderBookManager sharded = new ShardedOrderBookManager(2)) {
+      for (OrderBookManager manager : Arrays.asList(orderBookManager, new OffHeapOrderBookManager(), sharded)) {
+        visitInOrder(manager);
+      }
+    }
+  }
+
+  @Test
+  public void cursor() {
+    addOrders(orderBookManager, 5);
+    orderBookManager.modifyOrder("order3", 4);
+    OrderCursor cursor = new OrderCursor(4);
+    assertThrows(IllegalStateException.class, () -> {
+      cursor.getOrderId();
+    });
+
+    assertEquals(3, orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200, 3, cursor));
+    List<Order> read = new ArrayList<Order>();
+    while (cursor.next()) {
+      read.add(cursor.toOrder());
+    }
+    assertFalse(cursor.next());
+    assertEquals(orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200).subList(0, 3), read);
+
+    // refilled, the modified order's quantity is the current one
+    int instrumentId = orderBookManager.registerInstrument("VOD.L");
+    assertEquals(4, orderBookManager.getOrdersAtLevel(instrumentId, Side.BUY, 200, 4, cursor));
+    cursor.next();
+    cursor.next();
+    cursor.next();
+    cursor.next();
+    assertEquals("order3", cursor.getOrderId());
+    assertEquals(4, cursor.getQuantity());
+    cursor.rewind();
+    assertTrue(cursor.next());
+    assertEquals("order0", cursor.getOrderId());
+
+    assertEquals(0, orderBookManager.getOrdersAtLevel("BARC.L", Side.BUY, 200, 4, cursor));
+    assertFalse(cursor.next());
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200, 5, cursor);
+    });
+  }
+
+  @Test
+  public void consistentReads() throws Exception {
+    // the writer moves orders to the back of the queue one after another, a
+    // consistent read always sees every order exactly once
+    addOrders(orderBookManager, 50);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; !done.get(); i++) {
+        String orderId = "order" + (i % 50);
+        orderBookManager.modifyOrder(orderId, 10);
+        orderBookManager.modifyOrder(orderId, 11);
+      }
+    });
+    writer.start();
+    try {
+      OrderCursor cursor = new OrderCursor(64);
+      for (int i = 0; i < 2000; i++) {
+        assertEquals(50, orderBookManager.getOrdersAtLevel("VOD.L", Side.BUY, 200, 64, cursor));
+        Set<String> orderIds = new HashSet<String>();
+        while (cursor.next()) {
+          orderIds.add(cursor.getOrderId());
+        }
+        assertEquals(50, orderIds.size());
+
+        orderIds.clear();
+        orderBookManager.forEachOrderAtLevel("VOD.L", Side.BUY, 200, order -> orderIds.add(order.getOrderId()));
+        assertEquals(50, orderIds.size());
+      }
+    } finally {
+      done.set(true);
+      writer.join();
+    }
+  }
+
+  private static void addOrders(OrderBookManager manager, int orders) {
+    for (int i = 0; i < orders; i++) {
+      manager.addOrder(new Order.Builder().build("order" + i, "VOD.L", Side.BUY, 200, 10));
+    }
+  }
+
+  private static void visitInOrder(OrderBookManager manager) {
+    addOrders(manager, 5);
+    manager.modifyOrder("order1", 20);
+    manager.modifyOrder("order2", 3);
+
+    List<Order> visited = new ArrayList<Order>();
+    assertEquals(5, manager.forEachOrderAtLevel("VOD.L", Side.BUY, 200, visited::add));
+    assertEquals(manager.getOrdersAtLevel("VOD.L", Side.BUY, 200), visited);
+    assertEquals(3, visited.get(1).getQuantity());
+
+    // stop at the second order
+    visited.clear();
+    assertEquals(2, manager.forEachOrderAtLevel("VOD.L", Side.BUY, 200, order -> {
+      visited.add(order);
+      return visited.size() < 2;
+    }));
+    assertEquals(Arrays.asList("order0", "order2"), Arrays.asList(visited.get(0).getOrderId(), visited.get(1)
+        .getOrderId()));
+
+    assertEquals(0, manager.forEachOrderAtLevel("VOD.L", Side.BUY, 201, visited::add));
+    assertEquals(0, manager.forEachOrderAtLevel("BARC.L", Side.BUY, 200, visited::add));
+  }
+}
@@ -0,0 +1,92 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PersistentLongMapTest {
+
+  @Test
+  public void versionsAreIndependent() {
+    PersistentLongMap<String> empty = PersistentLongMap.empty();
+    PersistentLongMap<String> one = empty.put(300, "300");
+    PersistentLongMap<String> two = one.put(100, "100");
+    PersistentLongMap<String> replaced = two.put(300, "three hundred");
+    PersistentLongMap<String> removed = replaced.remove(100);
+
+    assertTrue(empty.isEmpty());
+    assertEquals(1, one.size());
+    assertEquals("300", two.get(300));
+    assertEquals(2, replaced.size());
+    assertEquals("three hundred", replaced.get(300));
+    assertNull(removed.get(100));
+    assertEquals("100", two.get(100));
+    assertSame(removed, removed.remove(100));
+    assertEquals(100, two.firstKey());
+    assertEquals(300, two.lastKey());
+  }
+
+  @Test
+  public void forEachStops() {
+    PersistentLongMap<String> map = PersistentLongMap.empty();
+    for (long key = 1; key <= 10; key++) {
+      map = map.put(key, Long.toString(key));
+    }
+    List<Long> keys = new ArrayList<Long>();
+    assertFalse(map.forEach(false, (key, value) -> {
+      keys.add(key);
+      return keys.size() < 3;
+    }));
+    assertEquals(List.of(10L, 9L, 8L), keys);
+  }
+
+  @Test
+  public void randomAgainstTreeMap() {
+    // every version kept is checked again at the end, later changes must
+    // not have touched it
+    Random random = new Random(42);
+    TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+    PersistentLongMap<Integer> map = PersistentLongMap.empty();
+    List<TreeMap<Long, Integer>> expectedVersions = new ArrayList<TreeMap<Long, Integer>>();
+    List<PersistentLongMap<Integer>> versions = new ArrayList<PersistentLongMap<Integer>>();
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(500);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.remove(key);
+      } else {
+        expected.put(key, i);
+        map = map.put(key, i);
+      }
+      if (i % 1000 == 0) {
+        expectedVersions.add(new TreeMap<Long, Integer>(expected));
+        versions.add(map);
+      }
+    }
+    expectedVersions.add(expected);
+    versions.add(map);
+    for (int i = 0; i < versions.size(); i++) {
+      assertSameEntries(expectedVersions.get(i), versions.get(i));
+    }
+  }
+
+  private static void assertSameEntries(TreeMap<Long, Integer> expected, PersistentLongMap<Integer> map) {
+    assertEquals(expected.size(), map.size());
+    List<Map.Entry<Long, Integer>> entries = new ArrayList<Map.Entry<Long, Integer>>();
+    map.forEach(true, (key, value) -> entries.add(Map.entry(key, value)));
+    assertEquals(new ArrayList<Map.Entry<Long, Integer>>(expected.entrySet()), entries);
+    for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+    if (!expected.isEmpty()) {
+      assertEquals((long) expected.firstKey(), map.firstKey());
+      assertEquals((long) expected.lastKey(), map.lastKey());
+    }
+  }
+}
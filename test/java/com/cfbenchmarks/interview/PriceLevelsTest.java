@@ -0,0 +1,112 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PriceLevelsTest {
+
+  @Test
+  public void bestPriceBuy() {
+    PriceLevels<String> levels = new PriceLevels<String>(Side.BUY);
+    assertTrue("No levels", levels.isEmpty());
+    assertNull("No best level", levels.best());
+
+    levels.put(300, "300");
+    levels.put(700, "700");
+    levels.put(100, "100");
+
+    // highest is best for buy
+    assertEquals(700, levels.bestPrice());
+    assertEquals("700", levels.best());
+
+    // remove the best and the next one takes over
+    assertEquals("700", levels.remove(700));
+    assertEquals(300, levels.bestPrice());
+    assertEquals(2, levels.size());
+  }
+
+  @Test
+  public void bestPriceSell() {
+    PriceLevels<String> levels = new PriceLevels<String>(Side.SELL);
+    levels.put(300, "300");
+    levels.put(700, "700");
+    levels.put(100, "100");
+
+    // lowest is best for sell
+    assertEquals(100, levels.bestPrice());
+
+    // removing a level behind the best leaves it alone
+    assertEquals("300", levels.remove(300));
+    assertEquals(100, levels.bestPrice());
+    assertNull("Already removed", levels.remove(300));
+
+    assertEquals("100", levels.remove(100));
+    assertEquals("700", levels.remove(700));
+    assertTrue("No levels", levels.isEmpty());
+  }
+
+  @Test
+  public void putReplaces() {
+    PriceLevels<String> levels = new PriceLevels<String>(Side.SELL);
+    assertNull(levels.put(300, "first"));
+    assertEquals("first", levels.put(300, "second"));
+    assertEquals("second", levels.get(300));
+    assertEquals(1, levels.size());
+  }
+
+  @Test
+  public void matchesTreeMap() {
+    // random adds and removes checked against a sorted map
+    for (Side side : Side.values()) {
+      PriceLevels<Long> levels = new PriceLevels<Long>(side);
+      Comparator<Long> comparator = side == Side.BUY ? Comparator.reverseOrder() : Comparator.naturalOrder();
+      TreeMap<Long, Long> expected = new TreeMap<Long, Long>(comparator);
+      Random random = new Random(42);
+
+      for (int i = 0; i < 20000; i++) {
+        long price = 1 + random.nextInt(500);
+        if (random.nextBoolean()) {
+          assertEquals(expected.put(price, price), levels.put(price, price));
+        } else {
+          assertEquals(expected.remove(price), levels.remove(price));
+        }
+        assertEquals(expected.size(), levels.size());
+        if (!expected.isEmpty()) {
+          assertEquals((long) expected.firstKey(), levels.bestPrice());
+        }
+      }
+      for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+        assertEquals(entry.getValue(), levels.get(entry.getKey()));
+      }
+    }
+  }
+
+  @Test
+  public void getAfterChurn() {
+    // tick sized prices collide in the index, every level must stay reachable
+    // as levels come and go and the index grows
+    PriceLevels<Long> levels = new PriceLevels<Long>(Side.BUY);
+    Map<Long, Long> expected = new TreeMap<Long, Long>();
+    Random random = new Random(7);
+
+    for (int i = 0; i < 5000; i++) {
+      long price = 25 * (1 + random.nextInt(200));
+      if (random.nextInt(3) > 0) {
+        assertEquals(expected.put(price, price), levels.put(price, price));
+      } else {
+        assertEquals(expected.remove(price), levels.remove(price));
+      }
+      if (i % 50 == 0) {
+        for (long p = 25; p <= 25 * 200; p += 25) {
+          assertEquals(expected.get(p), levels.get(p));
+        }
+      }
+    }
+  }
+}
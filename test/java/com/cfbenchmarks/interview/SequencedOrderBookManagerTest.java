@@ -0,0 +1,153 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SequencedOrderBookManagerTest {
+
+  private SequencedOrderBookManager orderBookManager;
+
+  @Before
+  public void init() {
+    // small ring so producers wrap it
+    orderBookManager = new SequencedOrderBookManager(16);
+  }
+
+  @After
+  public void close() {
+    orderBookManager.close();
+  }
+
+  @Test
+  public void lifecycle() {
+    // send orders
+    OrderValidater validater = new OrderValidater(orderBookManager, "microscope", Side.SELL);
+    validater.addOrder("order1", 300, 5);
+    validater.addOrder("order2", 300, 5);
+    validater.addOrder("order3", 400, 5);
+    validater.validate(300, 300, 2, 10, 3000);
+
+    // modify up and down, then delete
+    validater.modifyOrder("order1", 6);
+    validater.modifyOrder("order2", 4);
+    validater.validateOrder(300, "order2", "order1");
+    validater.deleteOrder("order2");
+    validater.validate(300, 300, 1, 6, 1800);
+  }
+
+  @Test
+  public void asyncResults() throws Exception {
+    Order order = new Order.Builder().build("order1", "microscope", Side.BUY, 300, 5);
+
+    // futures complete in sequence
+    CompletableFuture<Void> added = orderBookManager.addOrderAsync(order);
+    CompletableFuture<Boolean> same = orderBookManager.modifyOrderAsync("order1", 5);
+    CompletableFuture<Boolean> modified = orderBookManager.modifyOrderAsync("order1", 6);
+    CompletableFuture<Boolean> deleted = orderBookManager.deleteOrderAsync("order1");
+
+    assertNull(added.get());
+    assertFalse("Same quantity is not a modify", same.get());
+    assertTrue(modified.get());
+    assertTrue(deleted.get());
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice("microscope", Side.BUY));
+
+    // failures complete the future exceptionally
+    assertTrue(orderBookManager.deleteOrderAsync("order1").handle((result, e) -> e != null).get());
+  }
+
+  @Test
+  public void errorsRethrown() {
+    orderBookManager.addOrder(new Order.Builder().build("order1", "microscope", Side.BUY, 300, 5));
+
+    // thrown on the writer thread but rethrown to us as is
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.addOrder(new Order.Builder().build("order1", "microscope", Side.BUY, 300, 5));
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder("not there");
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.getOrderNumAtLevel(null, Side.BUY, 1);
+    });
+
+    // still going
+    assertEquals(1, orderBookManager.getOrderNumAtLevel("microscope", Side.BUY, 300));
+  }
+
+  @Test
+  public void closed() {
+    orderBookManager.close();
+    assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.getBestPrice("microscope", Side.BUY);
+    });
+  }
+
+  @Test
+  public void closeWhileProducing() throws Exception {
+    // every command that got in is answered, applied or failed, none is left
+    // waiting on the stopped writer
+    List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+    List<Thread> producers = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      producers.add(new Thread(() -> {
+        try {
+          while (true) {
+            CompletableFuture<Void> future = orderBookManager.addOrderAsync(new Order.Builder().build(UUID
+                .randomUUID().toString(), "microscope", Side.BUY, 300, 5));
+            synchronized (futures) {
+              futures.add(future);
+            }
+          }
+        } catch (IllegalStateException e) {
+          // closed
+        }
+      }));
+    }
+    producers.forEach(Thread::start);
+    Thread.sleep(20);
+    orderBookManager.close();
+    for (Thread producer : producers) {
+      producer.join(10000);
+      assertFalse(producer.isAlive());
+    }
+    for (CompletableFuture<Void> future : futures) {
+      future.handle((result, e) -> null).get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void manyProducers() throws Exception {
+    List<Thread> producers = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      producers.add(new Thread(() -> {
+        for (int j = 0; j < 500; j++) {
+          String orderId = UUID.randomUUID().toString();
+          orderBookManager.addOrderAsync(new Order.Builder().build(orderId, "microscope", Side.BUY, 300, 5));
+          orderBookManager.modifyOrderAsync(orderId, 6);
+          orderBookManager.addOrder(new Order.Builder().build(UUID.randomUUID().toString(), "microscope",
+              Side.SELL, 400, 5));
+          orderBookManager.deleteOrder(orderId);
+        }
+      }));
+    }
+    producers.forEach(Thread::start);
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice("microscope", Side.BUY));
+    assertEquals(4000, orderBookManager.getOrderNumAtLevel("microscope", Side.SELL, 400));
+    assertEquals(20000, orderBookManager.getTotalQuantityAtLevel("microscope", Side.SELL, 400));
+  }
+}
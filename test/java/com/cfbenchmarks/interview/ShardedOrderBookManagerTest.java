@@ -0,0 +1,125 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedOrderBookManagerTest {
+
+  private ShardedOrderBookManager orderBookManager;
+
+  @Before
+  public void init() {
+    orderBookManager = new ShardedOrderBookManager(4, 64);
+  }
+
+  @After
+  public void close() {
+    orderBookManager.close();
+  }
+
+  @Test
+  public void instrumentsAcrossShards() {
+    // enough instruments to land in every shard
+    for (int i = 0; i < 20; i++) {
+      OrderValidater validater = new OrderValidater(orderBookManager, "instrument" + i, Side.BUY);
+      validater.addOrder("order" + i + "a", 300, 5);
+      validater.addOrder("order" + i + "b", 400, 5);
+      validater.modifyOrder("order" + i + "b", 6);
+      validater.validate(400, 400, 1, 6, 2400);
+
+      validater.deleteOrder("order" + i + "b");
+      validater.validate(300, 300, 1, 5, 1500);
+      validater.validateOrder(300, "order" + i + "a");
+    }
+  }
+
+  @Test
+  public void orderIdsUniqueAcrossShards() {
+    orderBookManager.addOrder(new Order.Builder().build("order1", "instrument1", Side.BUY, 300, 5));
+
+    // whichever shard the other instrument is in, the id is taken
+    for (int i = 2; i < 10; i++) {
+      String instrument = "instrument" + i;
+      assertThrows(IllegalArgumentException.class, () -> {
+        orderBookManager.addOrder(new Order.Builder().build("order1", instrument, Side.SELL, 300, 5));
+      });
+    }
+
+    // free again once deleted
+    assertTrue(orderBookManager.deleteOrder("order1"));
+    orderBookManager.addOrder(new Order.Builder().build("order1", "instrument2", Side.SELL, 300, 5));
+    assertEquals(Optional.of(300L), orderBookManager.getBestPrice("instrument2", Side.SELL));
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice("instrument1", Side.BUY));
+
+    // and as soon as the delete's future completes
+    orderBookManager.deleteOrderAsync("order1").thenCompose(deleted -> orderBookManager.addOrderAsync(
+        new Order.Builder().build("order1", "instrument3", Side.SELL, 300, 5))).join();
+    assertEquals(Optional.of(300L), orderBookManager.getBestPrice("instrument3", Side.SELL));
+  }
+
+  @Test
+  public void addAfterClose() {
+    orderBookManager.close();
+    Order order = new Order.Builder().build("order1", "instrument1", Side.BUY, 300, 5);
+    assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.addOrder(order);
+    });
+
+    // the rejected add doesn't keep the id
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.modifyOrder("order1", 6);
+    });
+    assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.addOrder(order);
+    });
+  }
+
+  @Test
+  public void missingOrders() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.modifyOrder("not there", 5);
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.deleteOrder("not there");
+    });
+    assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.getBestPrice(null, Side.BUY);
+    });
+  }
+
+  @Test
+  public void manyProducers() throws Exception {
+    List<Thread> producers = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      String instrument = "instrument" + i;
+      producers.add(new Thread(() -> {
+        for (int j = 0; j < 500; j++) {
+          String orderId = UUID.randomUUID().toString();
+          orderBookManager.addOrder(new Order.Builder().build(orderId, instrument, Side.BUY, 300, 5));
+          orderBookManager.addOrder(new Order.Builder().build(UUID.randomUUID().toString(), instrument, Side.SELL,
+              400, 5));
+          orderBookManager.modifyOrder(orderId, 6);
+          orderBookManager.deleteOrder(orderId);
+        }
+      }));
+    }
+    producers.forEach(Thread::start);
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    for (int i = 0; i < 8; i++) {
+      assertEquals(Optional.empty(), orderBookManager.getBestPrice("instrument" + i, Side.BUY));
+      assertEquals(500, orderBookManager.getOrderNumAtLevel("instrument" + i, Side.SELL, 400));
+    }
+  }
+}
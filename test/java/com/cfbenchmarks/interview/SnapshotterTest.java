@@ -0,0 +1,202 @@
+package com.cfbenchmarks.interview;
+
+import static com.cfbenchmarks.interview.DataValidationTest.assertThrows;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void loadRebuildsQueuesAndIndex() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    Order order1 = new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10);
+    Order order2 = new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 5);
+    Order order3 = new Order.Builder().build("order3", "VOD.L", Side.BUY, 199, 5);
+    Order order4 = new Order.Builder().build("order4", "BARC.L", Side.SELL, 300, 7);
+    orderBookManager.addOrder(order1);
+    orderBookManager.addOrder(order2);
+    orderBookManager.addOrder(order3);
+    orderBookManager.addOrder(order4);
+    // order1 goes to the back of its queue
+    orderBookManager.modifyOrder("order1", 20);
+
+    Path snapshot;
+    try (Snapshotter snapshotter = new Snapshotter.Builder(orderBookManager, directory).open()) {
+      snapshot = snapshotter.snapshot().get();
+    }
+    assertEquals(snapshot, Snapshotter.latest(directory));
+
+    OrderBookManagerImpl loaded = new OrderBookManagerImpl();
+    assertEquals(0, Snapshotter.load(snapshot, loaded));
+    assertEquals(Arrays.asList(order2, order1.withQuantity(20)), loaded.getOrdersAtLevel("VOD.L", Side.BUY, 200));
+    assertEquals(Arrays.asList(order3), loaded.getOrdersAtLevel("VOD.L", Side.BUY, 199));
+    assertEquals(Arrays.asList(order4), loaded.getOrdersAtLevel("BARC.L", Side.SELL, 300));
+    // orders can be found by id
+    assertTrue(loaded.deleteOrder("order2"));
+    assertTrue(loaded.modifyOrder("order4", 1));
+  }
+
+  @Test
+  public void copyFromBookSnapshots() {
+    // the same orders in the same order whichever way the books are copied
+    OrderBookManagerImpl locked = new OrderBookManagerImpl();
+    OrderBookManagerImpl snapshots = new OrderBookManagerImpl.Builder().setSnapshots(true).build();
+    for (OrderBookManagerImpl orderBookManager : Arrays.asList(locked, snapshots)) {
+      applyChanges(orderBookManager, 0, 50);
+    }
+    List<Order> lockedCopy = new ArrayList<Order>();
+    List<Order> snapshotsCopy = new ArrayList<Order>();
+    assertEquals(0, locked.copyOrders(lockedCopy));
+    assertEquals(0, snapshots.copyOrders(snapshotsCopy));
+    assertFalse(lockedCopy.isEmpty());
+    assertEquals(lockedCopy, snapshotsCopy);
+
+    // a journaling manager's copy must be of one instant
+    Journal journal = new Journal.Builder(folder.getRoot().toPath()).open();
+    try {
+      OrderBookManagerImpl journaling = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+      assertThrows(IllegalArgumentException.class, () -> {
+        new Snapshotter.Builder(journaling, folder.getRoot().toPath());
+      });
+    } finally {
+      journal.close();
+    }
+  }
+
+  @Test
+  public void emptyManager() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    assertNull(Snapshotter.latest(directory));
+    try (Snapshotter snapshotter = new Snapshotter.Builder(new OrderBookManagerImpl(), directory).open()) {
+      Snapshotter.load(snapshotter.snapshot().get(), new OrderBookManagerImpl());
+    }
+  }
+
+  @Test
+  public void recoverFromSnapshotAndJournal() throws Exception {
+    Path journalDirectory = folder.newFolder("journal").toPath();
+    Path snapshotDirectory = folder.newFolder("snapshots").toPath();
+    Journal journal = new Journal.Builder(journalDirectory).setSegmentSize(1024).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).setSnapshots(true)
+        .build();
+    try (Snapshotter snapshotter = new Snapshotter.Builder(orderBookManager, snapshotDirectory).open()) {
+      applyChanges(orderBookManager, 0, 100);
+      snapshotter.snapshot().get();
+      applyChanges(orderBookManager, 100, 10);
+    }
+    journal.close();
+
+    journal = new Journal.Builder(journalDirectory).setSegmentSize(1024).open();
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl.Builder().setJournal(journal).build();
+    // only the 10 rounds after the snapshot are replayed, 2 adds, a modify and a delete each
+    assertEquals(40, journal.recover(Snapshotter.latest(snapshotDirectory), recovered));
+    journal.close();
+    assertSameBooks(orderBookManager, recovered);
+
+    // recovery journaled nothing, the first five rounds have no delete
+    assertEquals(4 * 110 - 5, Journal.replay(journalDirectory, new OrderBookManagerImpl()));
+  }
+
+  @Test
+  public void snapshotWhileWriting() throws Exception {
+    Path journalDirectory = folder.newFolder("journal").toPath();
+    Path snapshotDirectory = folder.newFolder("snapshots").toPath();
+    Journal journal = new Journal.Builder(journalDirectory).open();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl.Builder().setJournal(journal).setSnapshots(true)
+        .build();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      int first = i * 100000;
+      threads.add(new Thread(() -> applyChanges(orderBookManager, first, 2000)));
+    }
+    try (Snapshotter snapshotter = new Snapshotter.Builder(orderBookManager, snapshotDirectory).open()) {
+      threads.forEach(Thread::start);
+      for (int i = 0; i < 20; i++) {
+        snapshotter.snapshot().get();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+    journal.close();
+
+    // whichever instant the last snapshot caught, it and the journal since add up
+    OrderBookManagerImpl recovered = new OrderBookManagerImpl();
+    long sequence = Snapshotter.load(Snapshotter.latest(snapshotDirectory), recovered);
+    Journal.replay(journalDirectory, recovered, sequence);
+    assertSameBooks(orderBookManager, recovered);
+  }
+
+  @Test
+  public void periodicSnapshots() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    Snapshotter snapshotter = new Snapshotter.Builder(orderBookManager, directory).setInterval(10,
+        TimeUnit.MILLISECONDS).open();
+    try {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (Snapshotter.latest(directory) == null && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+    } finally {
+      snapshotter.close();
+    }
+
+    OrderBookManagerImpl loaded = new OrderBookManagerImpl();
+    Snapshotter.load(Snapshotter.latest(directory), loaded);
+    assertEquals(10, loaded.getTotalQuantityAtLevel("VOD.L", Side.BUY, 200));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notASnapshot() throws IOException {
+    Path file = folder.newFile("junk.snapshot").toPath();
+    Files.write(file, new byte[64]);
+    Snapshotter.load(file, new OrderBookManagerImpl());
+  }
+
+  /*
+   * rounds of a buy and a sell over a few instruments, modifying the buy and
+   * deleting the buy of five rounds before
+   */
+  private static void applyChanges(OrderBookManager orderBookManager, int first, int rounds) {
+    for (int i = first; i < first + rounds; i++) {
+      String instrument = "instrument" + i % 3;
+      orderBookManager.addOrder(new Order.Builder().build("buy" + i, instrument, Side.BUY, 100 + i % 10, 5));
+      orderBookManager.addOrder(new Order.Builder().build("sell" + i, instrument, Side.SELL, 200 + i % 10, 5));
+      orderBookManager.modifyOrder("buy" + i, 1 + i % 4);
+      if (i % 100000 >= 5) {
+        orderBookManager.deleteOrder("buy" + (i - 5));
+      }
+    }
+  }
+
+  private static void assertSameBooks(OrderBookManager expected, OrderBookManager actual) {
+    for (int instrument = 0; instrument < 3; instrument++) {
+      for (Side side : Side.values()) {
+        assertEquals(expected.getBestPrice("instrument" + instrument, side),
+            actual.getBestPrice("instrument" + instrument, side));
+        long base = side == Side.BUY ? 100 : 200;
+        for (long price = base; price < base + 10; price++) {
+          assertEquals(expected.getOrdersAtLevel("instrument" + instrument, side, price),
+              actual.getOrdersAtLevel("instrument" + instrument, side, price));
+        }
+      }
+    }
+  }
+}
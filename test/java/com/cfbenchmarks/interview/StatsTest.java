@@ -287,4 +287,101 @@ public class StatsTest {
     // sanity
     assertEquals("nothing at 300", 0, orderBookManager.getTotalVolumeAtLevel("microscope", Side.BUY, 300));
   }
+
+  @Test
+  public void byInstrumentId() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    int vod = orderBookManager.registerInstrument("VOD.L");
+    assertEquals("Ids are stable", vod, orderBookManager.registerInstrument("VOD.L"));
+
+    // registered but no orders yet
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice(vod, Side.BUY));
+    // never registered
+    assertEquals(0, orderBookManager.getOrderNumAtLevel(vod + 100, Side.BUY, 1));
+
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 200, 5));
+    orderBookManager.addOrder(new Order.Builder().build("order3", "BARC.L", Side.BUY, 300, 5));
+
+    assertEquals(Optional.of(200L), orderBookManager.getBestPrice(vod, Side.BUY));
+    assertEquals(Optional.empty(), orderBookManager.getBestPrice(vod, Side.SELL));
+    assertEquals(2, orderBookManager.getOrderNumAtLevel(vod, Side.BUY, 200));
+    assertEquals(15, orderBookManager.getTotalQuantityAtLevel(vod, Side.BUY, 200));
+    assertEquals(3000, orderBookManager.getTotalVolumeAtLevel(vod, Side.BUY, 200));
+    assertEquals(2, orderBookManager.getOrdersAtLevel(vod, Side.BUY, 200).size());
+
+    int barc = orderBookManager.registerInstrument("BARC.L");
+    assertNotEquals(vod, barc);
+    assertEquals(Optional.of(300L), orderBookManager.getBestPrice(barc, Side.BUY));
+
+    DataValidationTest.assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.getBestPrice(-1, Side.BUY);
+    });
+  }
+
+  @Test
+  public void tickLadder() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    orderBookManager.useTickLadder("VOD.L", 5, 16);
+
+    OrderValidater validater = new OrderValidater(orderBookManager, "VOD.L", Side.SELL);
+    validater.addOrder("order1", 200, 10);
+    validater.addOrder("order2", 200, 5);
+    // off the tick grid and far from the touch both still work
+    validater.addOrder("order3", 202, 1);
+    validater.addOrder("order4", 900, 1);
+    validater.validate(200, 200, 2, 15, 3000);
+    validater.validate(200, 900, 1, 1, 900);
+
+    validater.deleteOrder("order1");
+    validater.deleteOrder("order2");
+    validater.validate(202, 202, 1, 1, 202);
+    validater.deleteOrder("order3");
+    validater.validate(900, 900, 1, 1, 900);
+
+    DataValidationTest.assertThrows(IllegalStateException.class, () -> {
+      orderBookManager.useTickLadder("VOD.L", 5, 16);
+    });
+  }
+
+  @Test
+  public void depth() {
+    OrderBookManagerImpl orderBookManager = new OrderBookManagerImpl();
+    DepthBuffer depth = new DepthBuffer(3);
+    assertEquals("Empty book", 0, orderBookManager.getDepth("VOD.L", Side.BUY, 3, depth));
+
+    orderBookManager.addOrder(new Order.Builder().build("order1", "VOD.L", Side.BUY, 200, 10));
+    orderBookManager.addOrder(new Order.Builder().build("order2", "VOD.L", Side.BUY, 300, 5));
+    orderBookManager.addOrder(new Order.Builder().build("order3", "VOD.L", Side.BUY, 200, 1));
+    orderBookManager.addOrder(new Order.Builder().build("order4", "VOD.L", Side.BUY, 100, 2));
+    orderBookManager.addOrder(new Order.Builder().build("order5", "VOD.L", Side.BUY, 50, 2));
+
+    assertEquals(3, orderBookManager.getDepth("VOD.L", Side.BUY, 3, depth));
+    assertEquals(300, depth.getPrice(0));
+    assertEquals(1, depth.getOrderNum(0));
+    assertEquals(5, depth.getTotalQuantity(0));
+    assertEquals(1500, depth.getTotalVolume(0));
+    assertEquals(200, depth.getPrice(1));
+    assertEquals(2, depth.getOrderNum(1));
+    assertEquals(11, depth.getTotalQuantity(1));
+    assertEquals(2200, depth.getTotalVolume(1));
+    assertEquals(100, depth.getPrice(2));
+
+    // reuse the buffer for fewer levels
+    int instrumentId = orderBookManager.registerInstrument("VOD.L");
+    assertEquals(1, orderBookManager.getDepth(instrumentId, Side.BUY, 1, depth));
+    assertEquals(1, depth.levels());
+    assertEquals(300, depth.getPrice(0));
+    DataValidationTest.assertThrows(IndexOutOfBoundsException.class, () -> {
+      depth.getPrice(1);
+    });
+
+    // no more than the buffer holds
+    DataValidationTest.assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.getDepth("VOD.L", Side.BUY, 4, depth);
+    });
+    DataValidationTest.assertThrows(IllegalArgumentException.class, () -> {
+      orderBookManager.getDepth("VOD.L", Side.BUY, 1, null);
+    });
+  }
 }
@@ -0,0 +1,106 @@
+package com.cfbenchmarks.interview;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class TickLadderTest {
+
+  @Test
+  public void bestPriceInAndOutOfBand() {
+    TickLadder<String> levels = new TickLadder<String>(Side.SELL, 5, 8);
+    assertTrue("No levels", levels.isEmpty());
+    assertEquals(0, levels.peekBestPrice());
+
+    levels.put(100, "100");
+    levels.put(110, "110");
+    // far outside the band and off the tick grid
+    levels.put(1000, "1000");
+    levels.put(103, "103");
+
+    assertEquals(100, levels.bestPrice());
+    assertEquals("110", levels.get(110));
+    assertEquals("1000", levels.get(1000));
+    assertNull(levels.get(105));
+
+    // an off tick price can be the best
+    assertEquals("100", levels.remove(100));
+    assertEquals(103, levels.bestPrice());
+    assertEquals("103", levels.remove(103));
+    assertEquals(110, levels.bestPrice());
+    assertEquals("110", levels.remove(110));
+    // the band is empty, the best is now outside it
+    assertEquals(1000, levels.bestPrice());
+    assertEquals("1000", levels.best());
+    assertEquals(1, levels.size());
+  }
+
+  @Test
+  public void followsTheTouch() {
+    // the best price walks a long way up, levels behind it stay reachable
+    TickLadder<Long> levels = new TickLadder<Long>(Side.BUY, 10, 16);
+    for (long price = 1000; price <= 5000; price += 10) {
+      levels.put(price, price);
+      assertEquals(price, levels.bestPrice());
+    }
+    for (long price = 1000; price <= 5000; price += 10) {
+      assertEquals(Long.valueOf(price), levels.get(price));
+    }
+    for (long price = 5000; price >= 1000; price -= 10) {
+      assertEquals(price, levels.bestPrice());
+      assertEquals(Long.valueOf(price), levels.remove(price));
+    }
+    assertTrue("No levels", levels.isEmpty());
+  }
+
+  @Test
+  public void matchesTreeMap() {
+    // a random walk of the mid with adds and removes around it, some off tick
+    for (Side side : Side.values()) {
+      TickLadder<Long> levels = new TickLadder<Long>(side, 5, 64);
+      Comparator<Long> comparator = side == Side.BUY ? Comparator.reverseOrder() : Comparator.naturalOrder();
+      TreeMap<Long, Long> expected = new TreeMap<Long, Long>(comparator);
+      Random random = new Random(42);
+      long mid = 10000;
+
+      for (int i = 0; i < 50000; i++) {
+        mid = Math.max(1000, mid + 5 * (random.nextInt(3) - 1));
+        long price = mid + 5 * (random.nextInt(101) - 50);
+        if (random.nextInt(10) == 0) {
+          price += 1 + random.nextInt(4);
+        }
+        if (random.nextBoolean()) {
+          assertEquals(expected.put(price, price), levels.put(price, price));
+        } else {
+          assertEquals(expected.remove(price), levels.remove(price));
+        }
+        assertEquals(expected.size(), levels.size());
+        assertEquals(expected.isEmpty() ? 0 : (long) expected.firstKey(), levels.peekBestPrice());
+        assertEquals(expected.get(price), levels.get(price));
+      }
+
+      List<Long> visited = new ArrayList<Long>();
+      levels.forEach(visited, (prices, price, value) -> {
+        assertEquals(Long.valueOf(price), value);
+        prices.add(price);
+      });
+      assertEquals(new ArrayList<Long>(expected.keySet()), visited);
+
+      // a prefix of the same when limited
+      List<Long> best = new ArrayList<Long>();
+      int count = levels.forBest(10, best, (prices, price, value) -> prices.add(price));
+      assertEquals(Math.min(10, expected.size()), count);
+      assertEquals(visited.subList(0, count), best);
+      for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+        assertEquals(entry.getValue(), levels.get(entry.getKey()));
+      }
+    }
+  }
+}